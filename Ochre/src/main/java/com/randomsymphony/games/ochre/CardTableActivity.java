@@ -60,7 +60,6 @@ import okio.BufferedSink;
 public class CardTableActivity extends FragmentActivity {
 	
     private static final String TAG_GAME_ENGINE = "com.randomsymphony.games.ochre.GAME_ENGINE";
-    private static final String TAG_GAME_STATE = "com.randomsymphony.games.ochre.GAME_STATE";
     private static final String TAG_TRUMP_DISPLAY = "com.randomsymphony.games.ochre.TRUMP_DISPLAY";
     private static final String TAG_SCORE_BOARD = "com.randomsymphony.games.ochre.SCORE_DISPLAY";
     private static final String TAG_TABLE_DISPLAY = "com.randomsymphony.games.ochre.TABLE_DISPLAY";
@@ -434,12 +433,10 @@ public class CardTableActivity extends FragmentActivity {
     private void initGameState() {
         mGameState = new GameState();
 		mGameState.setPlayerFactory(new PlayerFactory());
-        mGameState.setRetainInstance(true);
-        getSupportFragmentManager().beginTransaction().add(mGameState, TAG_GAME_STATE).commit();
     }
     
     private void initTableDisplay() {
-    	mTableDisplay = TableDisplay.getInstance(4, TAG_GAME_STATE);
+    	mTableDisplay = TableDisplay.getInstance(4);
     	getSupportFragmentManager().beginTransaction().replace(R.id.table_display, mTableDisplay,
     			TAG_TABLE_DISPLAY).commit();
     }
@@ -451,7 +448,7 @@ public class CardTableActivity extends FragmentActivity {
     }
     
     private void initGameEngine() {
-    	mEngine = GameEngine.getInstance(TAG_TRUMP_DISPLAY, TAG_GAME_STATE, TAG_SCORE_BOARD,
+    	mEngine = GameEngine.getInstance(TAG_TRUMP_DISPLAY, mGameState, TAG_SCORE_BOARD,
     			TAG_TABLE_DISPLAY, Uri.parse(URL_BASE));
     	mEngine.setRetainInstance(true);
     	getSupportFragmentManager().beginTransaction().add(mEngine, TAG_GAME_ENGINE).commit();
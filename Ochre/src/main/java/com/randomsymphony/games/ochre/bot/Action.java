@@ -0,0 +1,99 @@
+package com.randomsymphony.games.ochre.bot;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.model.Card;
+
+/**
+ * One move decided by a {@link Bot}: passing, setting trump, the dealer's
+ * discard or playing a card. Actions are applied through the same entry
+ * points a person's taps go through.
+ */
+public final class Action {
+
+	public static final int TYPE_PASS = 0;
+	public static final int TYPE_SET_TRUMP = 1;
+	public static final int TYPE_DISCARD = 2;
+	public static final int TYPE_PLAY = 3;
+
+	private static final Action PASS = new Action(TYPE_PASS, false, null);
+
+	private final int mType;
+	private final boolean mAlone;
+	private final Card mCard;
+
+	private Action(int type, boolean alone, Card card) {
+		mType = type;
+		mAlone = alone;
+		mCard = card;
+	}
+
+	public static Action pass() {
+		return PASS;
+	}
+
+	/**
+	 * @param trumpCard A card of the suit to name, null when ordering up.
+	 */
+	public static Action setTrump(boolean alone, Card trumpCard) {
+		return new Action(TYPE_SET_TRUMP, alone, trumpCard);
+	}
+
+	public static Action discard(Card card) {
+		return new Action(TYPE_DISCARD, false, card);
+	}
+
+	public static Action play(Card card) {
+		return new Action(TYPE_PLAY, false, card);
+	}
+
+	public int getType() {
+		return mType;
+	}
+
+	public boolean isAlone() {
+		return mAlone;
+	}
+
+	/**
+	 * @return The card to discard or play, or whose suit to name as trump.
+	 */
+	public Card getCard() {
+		return mCard;
+	}
+
+	/**
+	 * Take the action for whoever's turn it is.
+	 */
+	public void applyTo(RulesEngine engine) {
+		switch (mType) {
+			case TYPE_PASS:
+				engine.pass();
+				break;
+			case TYPE_SET_TRUMP:
+				engine.setTrump(mAlone, mCard);
+				break;
+			case TYPE_DISCARD:
+				engine.discardCard(mCard);
+				break;
+			case TYPE_PLAY:
+				engine.playCard(engine.getNextPlayer(), mCard);
+				break;
+			default:
+				throw new IllegalStateException("Unknown action " + mType);
+		}
+	}
+
+	@Override
+	public String toString() {
+		switch (mType) {
+			case TYPE_PASS:
+				return "pass";
+			case TYPE_SET_TRUMP:
+				return "set trump" + (mCard == null ? "" : " " + mCard) + (mAlone ? " alone" : "");
+			case TYPE_DISCARD:
+				return "discard " + mCard;
+			default:
+				return "play " + mCard;
+		}
+	}
+}
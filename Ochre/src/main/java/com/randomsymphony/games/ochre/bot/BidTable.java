@@ -0,0 +1,148 @@
+package com.randomsymphony.games.ochre.bot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.randomsymphony.games.ochre.logic.DealRank;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * The points a bid is worth on average, looked up instead of searched for.
+ * The table is written by {@link BidTableGenerator} and memory mapped, so
+ * loading it reads nothing and only the pages which are looked up ever take
+ * up memory.
+ *
+ * Suits are renamed so trump is always hearts, the suit of the same colour
+ * diamonds and the other two spades and clubs in order, which makes every
+ * trump suit share the same entries. An entry is a byte per hand, turned up card, seat
+ * counted from the dealer and alone or not, in {@link #POINT_SCALE}ths of a
+ * point. A turned up card in the trump suit means it was ordered up, in
+ * another suit that it was turned down and trump named.
+ */
+public class BidTable {
+
+	static final int MAGIC = 0x4f425431;
+	/**
+	 * The magic number and the samples per entry.
+	 */
+	static final int HEADER_SIZE = 8;
+	static final int POINT_SCALE = 32;
+	static final int TRUMP = Card.SUIT_HEARTS;
+	static final int FILE_SIZE = HEADER_SIZE +
+			DealRank.HAND_COUNT * CardSet.DECK_SIZE * Round.NUMBER_OF_SEATS * 2;
+
+	private static final int SUITS = CardSet.NUMBER_OF_SUITS;
+	/**
+	 * Indexed by [trump][suit], the suit's name in the table.
+	 */
+	private static final int[] SUIT_NAMES = new int[SUITS * SUITS];
+
+	static {
+		for (int trump = 0; trump < SUITS; trump++) {
+			int other = 1;
+			for (int suit = 0; suit < SUITS; suit++) {
+				int name;
+				if (suit == trump) {
+					name = TRUMP;
+				} else if (suit == Card.SUIT_DIAMONDS - trump) {
+					// hearts and diamonds, spades and clubs add up to three
+					name = Card.SUIT_DIAMONDS;
+				} else {
+					name = other++;
+				}
+				SUIT_NAMES[trump * SUITS + suit] = name;
+			}
+		}
+	}
+
+	private final ByteBuffer mBuffer;
+
+	private BidTable(ByteBuffer buffer) {
+		mBuffer = buffer;
+	}
+
+	/**
+	 * Map a table written by {@link BidTableGenerator}.
+	 */
+	public static BidTable load(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() != FILE_SIZE) {
+				throw new IOException("Not a bid table: " + path);
+			}
+			// the mapping outlives the file being closed
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, FILE_SIZE);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a bid table: " + path);
+			}
+			return new BidTable(buffer);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return The number of deals behind every entry.
+	 */
+	public int getSamples() {
+		return mBuffer.getInt(4);
+	}
+
+	/**
+	 * @param hand The bidder's five cards as a {@link CardSet}, before the
+	 * dealer picks up.
+	 * @param turnUp The index of the turned up card.
+	 * @param trump The suit to make trump, the turned up card's suit to order
+	 * it up.
+	 * @return The points the bidder's team scores on average, negative when
+	 * the makers are set.
+	 */
+	public double getPoints(int hand, int turnUp, int trump, int seat, int dealer, boolean alone) {
+		if (CardSet.contains(hand, turnUp)) {
+			throw new IllegalArgumentException("The turned up card is in the hand.");
+		}
+		int seatFromDealer = (seat - dealer + Round.NUMBER_OF_SEATS) % Round.NUMBER_OF_SEATS;
+		int index = indexOf(rename(hand, trump), rename(CardSet.of(turnUp), trump),
+				seatFromDealer, alone);
+		return (double) mBuffer.get(index) / POINT_SCALE;
+	}
+
+	/**
+	 * @return The cards with suits renamed as in the table.
+	 */
+	static int rename(int cards, int trump) {
+		int renamed = CardSet.EMPTY;
+		for (int suit = 0; suit < SUITS; suit++) {
+			renamed |= CardSet.ofSuit(cards, suit) >>> (suit * CardSet.CARDS_PER_SUIT) <<
+					(SUIT_NAMES[trump * SUITS + suit] * CardSet.CARDS_PER_SUIT);
+		}
+		return renamed;
+	}
+
+	/**
+	 * @return The cards with the black suits swapped, which scores the same.
+	 */
+	static int mirror(int cards) {
+		int spades = CardSet.ofSuit(cards, Card.SUIT_SPADES);
+		int clubs = CardSet.ofSuit(cards, Card.SUIT_CLUBS);
+		return cards & ~(spades | clubs) | spades << CardSet.CARDS_PER_SUIT |
+				clubs >>> CardSet.CARDS_PER_SUIT;
+	}
+
+	/**
+	 * @param turnUp The turned up card as a {@link CardSet}.
+	 * @return The byte offset of the entry, hand and card renamed.
+	 */
+	static int indexOf(int hand, int turnUp, int seatFromDealer, boolean alone) {
+		int entry = (DealRank.rankHand(hand) * CardSet.DECK_SIZE + CardSet.first(turnUp)) *
+				Round.NUMBER_OF_SEATS + seatFromDealer;
+		return HEADER_SIZE + entry * 2 + (alone ? 1 : 0);
+	}
+}
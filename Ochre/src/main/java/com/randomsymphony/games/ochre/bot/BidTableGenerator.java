@@ -0,0 +1,271 @@
+package com.randomsymphony.games.ochre.bot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.randomsymphony.games.ochre.logic.DealRank;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.search.DoubleDummySolver;
+import com.randomsymphony.games.ochre.sim.TrumpCountPolicy;
+
+/**
+ * Works out every entry of a {@link BidTable} offline. For each hand, turned
+ * up card and seat it deals the other cards at random and solves the round
+ * with the {@link DoubleDummySolver}, the same way {@link PimcBot} scores a
+ * bid, once with a partner and once alone. When ordered up the dealer picks
+ * up and throws their lowest card.
+ *
+ * Hands are split over a fork/join pool and each hand gets its own
+ * generator seeded from its rank, so a table comes out the same whatever
+ * the number of threads or the ranges it was generated in. A hand and its
+ * mirror image, see {@link BidTable#mirror(int)}, are solved once when
+ * both are in the range.
+ */
+public class BidTableGenerator {
+
+	/**
+	 * Hands solved by one task without splitting further.
+	 */
+	private static final int TASK_SIZE = 16;
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	static final int DEALER = 0;
+	static final int TRUMP = BidTable.TRUMP;
+	static final int[] NO_TRICK = new int[0];
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final int mSamples;
+	private final long mSeed;
+
+	/**
+	 * @param samples The number of deals to solve for each entry.
+	 */
+	public BidTableGenerator(int samples, long seed) {
+		if (samples <= 0) {
+			throw new IllegalArgumentException("Samples must be positive.");
+		}
+		mSamples = samples;
+		mSeed = seed;
+	}
+
+	/**
+	 * Write the whole table on every core.
+	 */
+	public void generate(File path) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			generate(path, 0, DealRank.HAND_COUNT, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Write the entries of the hands ranked from first up to end into the
+	 * file, which is created if it doesn't exist. A long run can be split into
+	 * ranges run one after another into the same file.
+	 * @param first The lowest {@link DealRank#rankHand(int)} to solve.
+	 * @param end One past the highest.
+	 */
+	public void generate(File path, int first, int end, ForkJoinPool pool) throws IOException {
+		if (first < 0 || first > end || end > DealRank.HAND_COUNT) {
+			throw new IllegalArgumentException("Bad range of hands: " + first + " to " + end);
+		}
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			if (file.length() == 0) {
+				file.setLength(BidTable.FILE_SIZE);
+			} else if (file.length() != BidTable.FILE_SIZE) {
+				throw new IOException("Not a bid table: " + path);
+			}
+			MappedByteBuffer buffer = file.getChannel().map(MapMode.READ_WRITE, 0,
+					BidTable.FILE_SIZE);
+			int samples = buffer.getInt(4);
+			if (samples != 0 && samples != mSamples) {
+				throw new IOException("The table was generated with " + samples + " samples.");
+			}
+			buffer.putInt(0, BidTable.MAGIC);
+			buffer.putInt(4, mSamples);
+			pool.invoke(new Task(first, end, new Solver(first, end, buffer)));
+			buffer.force();
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Usage: file samples [first end], see
+	 * {@link #generate(File, int, int, ForkJoinPool)}.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2 && args.length != 4) {
+			throw new IllegalArgumentException("Usage: file samples [first end]");
+		}
+		BidTableGenerator generator = new BidTableGenerator(Integer.parseInt(args[1]), 0);
+		File path = new File(args[0]);
+		if (args.length == 2) {
+			generator.generate(path);
+		} else {
+			ForkJoinPool pool = new ForkJoinPool();
+			try {
+				generator.generate(path, Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+						pool);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Give the seat the hand and the other seats five random cards each from
+	 * the rest.
+	 * @param outOfPlay Cards nobody else can hold, the hand included.
+	 * @param pool Room for a deck of card indices.
+	 * @param hands Receives a {@link CardSet} per seat.
+	 */
+	static void deal(SplitMix64 random, int hand, int outOfPlay, int bidder, int[] pool,
+			int[] hands) {
+		int count = CardSet.toIndices(CardSet.FULL_DECK & ~outOfPlay, pool);
+		for (int seat = 0; seat < SEATS; seat++) {
+			if (seat == bidder) {
+				hands[seat] = hand;
+				continue;
+			}
+			int dealt = CardSet.EMPTY;
+			for (int card = 0; card < DealRank.HAND_SIZE; card++) {
+				int pick = random.nextInt(count);
+				dealt |= CardSet.of(pool[pick]);
+				pool[pick] = pool[--count];
+			}
+			hands[seat] = dealt;
+		}
+	}
+
+	/**
+	 * Solve the round bid by the maker with the dealer in seat 0 and hearts
+	 * trump, ordered up when the turned up card is a heart.
+	 * @param hands The hands as dealt, left as they are.
+	 * @param trial Receives the hands played.
+	 * @return The points the maker's team scores.
+	 */
+	static int scoreBid(DoubleDummySolver solver, int[] hands, int[] trial, int turnUp, int maker,
+			boolean alone) {
+		System.arraycopy(hands, 0, trial, 0, SEATS);
+		if (CardSet.suitOf(turnUp) == TRUMP && SeatOrder.sittingOut(maker, alone) != DEALER) {
+			int hand = trial[DEALER] | CardSet.of(turnUp);
+			trial[DEALER] = hand & ~CardSet.of(TrumpCountPolicy.lowest(hand, TRUMP, -1));
+		}
+		DoubleDummySolver.Solution solution = solver.solve(trial, TRUMP, maker, alone,
+				SeatOrder.firstLeader(DEALER, maker, alone), NO_TRICK, 0, 0, 0);
+		int team = maker % 2;
+		return PimcBot.getTeamScore(team, maker, alone, solution.getTeamTricks(team));
+	}
+
+	private class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int mFirst;
+		private final int mEnd;
+		private final Solver mRun;
+
+		/**
+		 * @param run Describes the whole run, each task solves with a copy.
+		 */
+		Task(int first, int end, Solver run) {
+			mFirst = first;
+			mEnd = end;
+			mRun = run;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mFirst <= TASK_SIZE) {
+				Solver solver = new Solver(mRun.mFirst, mRun.mEnd, mRun.mBuffer);
+				for (int rank = mFirst; rank < mEnd; rank++) {
+					solver.solveHand(rank);
+				}
+				return;
+			}
+			int middle = (mFirst + mEnd) >>> 1;
+			Task left = new Task(mFirst, middle, mRun);
+			left.fork();
+			new Task(middle, mEnd, mRun).compute();
+			left.join();
+		}
+	}
+
+	/**
+	 * Solves the entries of one hand at a time, the buffer is shared but
+	 * every entry is written by one solver.
+	 */
+	private class Solver {
+		private final int mFirst;
+		private final int mEnd;
+		private final MappedByteBuffer mBuffer;
+		private final DoubleDummySolver mSolver = new DoubleDummySolver();
+		private final int[] mHands = new int[SEATS];
+		private final int[] mTrial = new int[SEATS];
+		private final int[] mPool = new int[CardSet.DECK_SIZE];
+
+		/**
+		 * @param first The first hand of the run.
+		 * @param end One past the last hand of the run.
+		 */
+		Solver(int first, int end, MappedByteBuffer buffer) {
+			mFirst = first;
+			mEnd = end;
+			mBuffer = buffer;
+		}
+
+		void solveHand(int rank) {
+			int hand = DealRank.unrankHand(rank);
+			int mirrorHand = BidTable.mirror(hand);
+			int mirrorRank = DealRank.rankHand(mirrorHand);
+			for (int turnUp = 0; turnUp < CardSet.DECK_SIZE; turnUp++) {
+				if (CardSet.contains(hand, turnUp)) {
+					continue;
+				}
+				int mirrorTurnUp = CardSet.first(BidTable.mirror(CardSet.of(turnUp)));
+				boolean mirrorFirst = mirrorRank < rank ||
+						(mirrorRank == rank && mirrorTurnUp < turnUp);
+				if (mirrorFirst && mirrorRank >= mFirst && mirrorRank < mEnd) {
+					// solved along with its mirror image
+					continue;
+				}
+				// always deal for the first image, so the entries come out the
+				// same whichever image a run reaches
+				int firstHand = mirrorFirst ? mirrorHand : hand;
+				int firstTurnUp = mirrorFirst ? mirrorTurnUp : turnUp;
+				long key = (mirrorFirst ? mirrorRank : rank) * (long) CardSet.DECK_SIZE + firstTurnUp;
+				SplitMix64 random = new SplitMix64(mSeed + key * GOLDEN_GAMMA);
+				for (int seat = 0; seat < SEATS; seat++) {
+					long partnered = 0;
+					long alone = 0;
+					for (int sample = 0; sample < mSamples; sample++) {
+						deal(random, firstHand, firstHand | CardSet.of(firstTurnUp), seat, mPool,
+								mHands);
+						partnered += scoreBid(mSolver, mHands, mTrial, firstTurnUp, seat, false);
+						alone += scoreBid(mSolver, mHands, mTrial, firstTurnUp, seat, true);
+					}
+					put(hand, turnUp, seat, false, partnered);
+					put(hand, turnUp, seat, true, alone);
+					put(mirrorHand, mirrorTurnUp, seat, false, partnered);
+					put(mirrorHand, mirrorTurnUp, seat, true, alone);
+				}
+			}
+		}
+
+		private void put(int hand, int turnUp, int seat, boolean alone, long sum) {
+			long scaled = Math.round((double) sum * BidTable.POINT_SCALE / mSamples);
+			byte value = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, scaled));
+			mBuffer.put(BidTable.indexOf(hand, CardSet.of(turnUp), seat, alone), value);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.randomsymphony.games.ochre.bot;
+
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+
+/**
+ * A computer player. Bots only get to see what their seat sees and must be
+ * safe to call from several threads at once, any randomness should come
+ * from the generator passed in.
+ */
+public interface Bot {
+
+	/**
+	 * @return What the seat does next, in any phase which has a move for it.
+	 */
+	public Action decide(Observation observation, SplitMix64 random);
+
+	/**
+	 * Release any threads the bot holds, it can't decide anything afterwards.
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,24 @@
+package com.randomsymphony.games.ochre.bot;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.sim.SeatPolicy;
+
+/**
+ * Seats a {@link Bot} in a {@link com.randomsymphony.games.ochre.sim.Simulator}.
+ */
+public class BotPolicy implements SeatPolicy {
+
+	private final Bot mBot;
+
+	public BotPolicy(Bot bot) {
+		mBot = bot;
+	}
+
+	@Override
+	public void act(RulesEngine engine, Player player, SplitMix64 random) {
+		mBot.decide(new Observation(engine.getGameState(), player.getSeat()), random)
+				.applyTo(engine);
+	}
+}
@@ -0,0 +1,389 @@
+package com.randomsymphony.games.ochre.bot;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.randomsymphony.games.ochre.logic.DealRank;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.search.DoubleDummySolver;
+import com.randomsymphony.games.ochre.search.TranspositionTable;
+
+/**
+ * Scores the two small decisions of a round by the points they are worth on
+ * average: whether the maker goes alone and which card the dealer throws
+ * away. The hidden cards can be dealt in hundreds of millions of ways, too
+ * many to go through, so deals are sampled and solved with the
+ * {@link DoubleDummySolver} on a pool of threads, every option against the
+ * same deals.
+ *
+ * A call returns within the time budget, a frame or so, with whatever was
+ * solved by then. Results are cached by hand with suits renamed as in the
+ * {@link BidTable}, so asking again about the same kind of hand carries on
+ * where the last call stopped until {@link #getMaxSamples()} deals are
+ * solved, after which the answer is immediate.
+ */
+public class DecisionEvaluator {
+
+	/**
+	 * About a frame.
+	 */
+	public static final long DEFAULT_BUDGET_MILLIS = 16;
+	public static final int DEFAULT_MAX_SAMPLES = 512;
+	/**
+	 * The options of a go alone decision.
+	 */
+	public static final int PARTNERED = 0;
+	public static final int ALONE = 1;
+
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	private static final int DEALER = BidTableGenerator.DEALER;
+	private static final int TRUMP = BidTableGenerator.TRUMP;
+	private static final int TABLE_BITS = 16;
+	private static final long KIND_DISCARD = 0;
+	private static final long KIND_ALONE = 1;
+
+	private final long mBudgetNanos;
+	private final int mMaxSamples;
+	private final int mThreads;
+	private final ExecutorService mExecutor;
+	private final TranspositionTable mTable = new TranspositionTable(TABLE_BITS);
+	private final ConcurrentHashMap<Long, Entry> mCache = new ConcurrentHashMap<Long, Entry>();
+
+	/**
+	 * Evaluate for {@link #DEFAULT_BUDGET_MILLIS} on every core.
+	 */
+	public DecisionEvaluator() {
+		this(DEFAULT_BUDGET_MILLIS, DEFAULT_MAX_SAMPLES, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param budgetMillis How long a call may take.
+	 * @param maxSamples Deals worth solving for one kind of hand.
+	 * @param threads How many deals to solve at once.
+	 */
+	public DecisionEvaluator(long budgetMillis, int maxSamples, int threads) {
+		if (budgetMillis <= 0 || maxSamples <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Budget, samples and threads must be positive.");
+		}
+		mBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		mMaxSamples = maxSamples;
+		mThreads = threads;
+		mExecutor = PimcBot.newDaemonPool("DecisionEvaluator", threads);
+	}
+
+	/**
+	 * Stop the worker threads, nothing can be evaluated afterwards.
+	 */
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	public int getMaxSamples() {
+		return mMaxSamples;
+	}
+
+	/**
+	 * Forget every cached result.
+	 */
+	public void clearCache() {
+		mCache.clear();
+	}
+
+	/**
+	 * Score each card the dealer could throw away.
+	 * @param hand The dealer's six cards, the picked up card included.
+	 * @param maker The seat which ordered it up.
+	 * @return The options are card indices, scored for the dealer's team.
+	 */
+	public Evaluation evaluateDiscard(int hand, int trump, int dealer, int maker, boolean alone,
+			SplitMix64 random) {
+		if (CardSet.size(hand) != DealRank.HAND_SIZE + 1) {
+			throw new IllegalArgumentException("The dealer holds six cards before throwing one.");
+		}
+		if (SeatOrder.sittingOut(maker, alone) == dealer) {
+			throw new IllegalArgumentException("The dealer sits out and throws nothing.");
+		}
+		int renamed = BidTable.rename(hand, trump);
+		boolean mirrored = BidTable.mirror(renamed) < renamed;
+		if (mirrored) {
+			renamed = BidTable.mirror(renamed);
+		}
+		int makerFromDealer = (maker - dealer + SEATS) % SEATS;
+		long key = KIND_DISCARD | (long) renamed << 1 | (long) makerFromDealer << 25 |
+				(alone ? 1L : 0L) << 27;
+		Entry entry = evaluate(key, new Deal(renamed, renamed, DEALER), random,
+				new DiscardScorer(renamed, makerFromDealer, alone));
+
+		int[] options = new int[CardSet.size(hand)];
+		CardSet.toIndices(hand, options);
+		int[] slots = new int[options.length];
+		for (int ptr = 0; ptr < options.length; ptr++) {
+			int card = BidTable.rename(CardSet.of(options[ptr]), trump);
+			slots[ptr] = CardSet.first(mirrored ? BidTable.mirror(card) : card);
+		}
+		return entry.toEvaluation(options, slots);
+	}
+
+	/**
+	 * Score making trump with a partner against going alone.
+	 * @param hand The maker's five cards, before the dealer picks up.
+	 * @param turnUp The index of the turned up card.
+	 * @param trump The suit named, the turned up card's suit to order it up.
+	 * @return The options are {@link #PARTNERED} and {@link #ALONE}, scored
+	 * for the maker's team.
+	 */
+	public Evaluation evaluateAlone(int hand, int turnUp, int trump, int seat, int dealer,
+			SplitMix64 random) {
+		if (CardSet.size(hand) != DealRank.HAND_SIZE || CardSet.contains(hand, turnUp)) {
+			throw new IllegalArgumentException("Not a hand of five without the turned up card.");
+		}
+		int renamed = BidTable.rename(hand, trump);
+		int renamedTurnUp = BidTable.rename(CardSet.of(turnUp), trump);
+		int mirror = BidTable.mirror(renamed);
+		int mirrorTurnUp = BidTable.mirror(renamedTurnUp);
+		if (mirror < renamed || (mirror == renamed && mirrorTurnUp < renamedTurnUp)) {
+			renamed = mirror;
+			renamedTurnUp = mirrorTurnUp;
+		}
+		int seatFromDealer = (seat - dealer + SEATS) % SEATS;
+		int card = CardSet.first(renamedTurnUp);
+		long key = KIND_ALONE | (long) renamed << 1 | (long) card << 25 |
+				(long) seatFromDealer << 30;
+		Entry entry = evaluate(key, new Deal(renamed, renamed | renamedTurnUp, seatFromDealer),
+				random, new AloneScorer(card, seatFromDealer));
+		return entry.toEvaluation(new int[] {PARTNERED, ALONE}, new int[] {PARTNERED, ALONE});
+	}
+
+	/**
+	 * Solve deals on every thread until the budget runs out or the entry has
+	 * all the samples it needs.
+	 */
+	private Entry evaluate(long key, Deal deal, SplitMix64 random, Scorer scorer) {
+		Entry entry = mCache.get(key);
+		if (entry == null) {
+			Entry created = new Entry();
+			entry = mCache.putIfAbsent(key, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		int wanted = mMaxSamples - entry.getSamples();
+		if (wanted <= 0) {
+			return entry;
+		}
+
+		long deadline = System.nanoTime() + mBudgetNanos;
+		int quota = (wanted + mThreads - 1) / mThreads;
+		ArrayList<Future<long[]>> futures = new ArrayList<Future<long[]>>(mThreads);
+		for (int ptr = 0; ptr < mThreads; ptr++) {
+			futures.add(mExecutor.submit(new Worker(deal, scorer, random.split(), deadline,
+					quota)));
+		}
+		try {
+			for (int ptr = 0; ptr < futures.size(); ptr++) {
+				entry.add(futures.get(ptr).get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A worker failed.", e.getCause());
+		}
+		return entry;
+	}
+
+	/**
+	 * The average points of each option.
+	 */
+	public static class Evaluation {
+		private final int[] mOptions;
+		private final double[] mPoints;
+		private final int mSamples;
+
+		Evaluation(int[] options, double[] points, int samples) {
+			mOptions = options;
+			mPoints = points;
+			mSamples = samples;
+		}
+
+		public int getOptionCount() {
+			return mOptions.length;
+		}
+
+		public int getOption(int ptr) {
+			return mOptions[ptr];
+		}
+
+		/**
+		 * @return The points the option scores on average.
+		 */
+		public double getPoints(int ptr) {
+			return mPoints[ptr];
+		}
+
+		/**
+		 * @return The option scoring the most points.
+		 */
+		public int getBestOption() {
+			int best = 0;
+			for (int ptr = 1; ptr < mOptions.length; ptr++) {
+				if (mPoints[ptr] > mPoints[best]) {
+					best = ptr;
+				}
+			}
+			return mOptions[best];
+		}
+
+		/**
+		 * @return The number of deals the points are averaged over.
+		 */
+		public int getSamples() {
+			return mSamples;
+		}
+	}
+
+	/**
+	 * Point totals of one kind of hand, indexed by renamed card or by
+	 * {@link #PARTNERED} and {@link #ALONE}, plus the number of deals.
+	 */
+	private static class Entry {
+		private final long[] mSums = new long[CardSet.DECK_SIZE];
+		private int mSamples;
+
+		synchronized int getSamples() {
+			return mSamples;
+		}
+
+		/**
+		 * @param sums Totals with the number of deals in the last slot.
+		 */
+		synchronized void add(long[] sums) {
+			for (int ptr = 0; ptr < mSums.length; ptr++) {
+				mSums[ptr] += sums[ptr];
+			}
+			mSamples += (int) sums[mSums.length];
+		}
+
+		synchronized Evaluation toEvaluation(int[] options, int[] slots) {
+			double[] points = new double[options.length];
+			for (int ptr = 0; ptr < options.length; ptr++) {
+				points[ptr] = mSamples == 0 ? 0 : (double) mSums[slots[ptr]] / mSamples;
+			}
+			return new Evaluation(options, points, mSamples);
+		}
+	}
+
+	/**
+	 * A hand held by a seat, with the dealer in seat 0 and hearts trump.
+	 */
+	private static class Deal {
+		final int mHand;
+		final int mOutOfPlay;
+		final int mSeat;
+
+		Deal(int hand, int outOfPlay, int seat) {
+			mHand = hand;
+			mOutOfPlay = outOfPlay;
+			mSeat = seat;
+		}
+	}
+
+	/**
+	 * Adds the points of every option in one deal to the totals.
+	 */
+	private interface Scorer {
+		void score(DoubleDummySolver solver, int[] hands, int[] trial, long[] sums);
+	}
+
+	private static class DiscardScorer implements Scorer {
+		private final int mHand;
+		private final int mMaker;
+		private final boolean mAlone;
+
+		DiscardScorer(int hand, int maker, boolean alone) {
+			mHand = hand;
+			mMaker = maker;
+			mAlone = alone;
+		}
+
+		@Override
+		public void score(DoubleDummySolver solver, int[] hands, int[] trial, long[] sums) {
+			System.arraycopy(hands, 0, trial, 0, SEATS);
+			int leader = SeatOrder.firstLeader(DEALER, mMaker, mAlone);
+			int team = DEALER % 2;
+			for (int rest = mHand; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+				int card = CardSet.first(rest);
+				trial[DEALER] = mHand & ~CardSet.of(card);
+				DoubleDummySolver.Solution solution = solver.solve(trial, TRUMP, mMaker, mAlone,
+						leader, BidTableGenerator.NO_TRICK, 0, 0, 0);
+				sums[card] += PimcBot.getTeamScore(team, mMaker, mAlone,
+						solution.getTeamTricks(team));
+			}
+		}
+	}
+
+	private static class AloneScorer implements Scorer {
+		private final int mTurnUp;
+		private final int mMaker;
+
+		AloneScorer(int turnUp, int maker) {
+			mTurnUp = turnUp;
+			mMaker = maker;
+		}
+
+		@Override
+		public void score(DoubleDummySolver solver, int[] hands, int[] trial, long[] sums) {
+			sums[PARTNERED] += BidTableGenerator.scoreBid(solver, hands, trial, mTurnUp, mMaker,
+					false);
+			sums[ALONE] += BidTableGenerator.scoreBid(solver, hands, trial, mTurnUp, mMaker, true);
+		}
+	}
+
+	/**
+	 * Solves deals until the deadline or its quota.
+	 */
+	private class Worker implements Callable<long[]> {
+		private final Deal mDeal;
+		private final Scorer mScorer;
+		private final SplitMix64 mRandom;
+		private final long mDeadline;
+		private final int mQuota;
+
+		Worker(Deal deal, Scorer scorer, SplitMix64 random, long deadline, int quota) {
+			mDeal = deal;
+			mScorer = scorer;
+			mRandom = random;
+			mDeadline = deadline;
+			mQuota = quota;
+		}
+
+		@Override
+		public long[] call() {
+			DoubleDummySolver solver = new DoubleDummySolver(mTable);
+			int[] pool = new int[CardSet.DECK_SIZE];
+			int[] hands = new int[SEATS];
+			int[] trial = new int[SEATS];
+			// the last slot counts the deals
+			long[] sums = new long[CardSet.DECK_SIZE + 1];
+			// always solve one deal, so there is something to go on
+			for (int sample = 0; sample < mQuota; sample++) {
+				if (sample > 0 && System.nanoTime() >= mDeadline) {
+					break;
+				}
+				BidTableGenerator.deal(mRandom, mDeal.mHand, mDeal.mOutOfPlay, mDeal.mSeat, pool,
+						hands);
+				mScorer.score(solver, hands, trial, sums);
+				sums[CardSet.DECK_SIZE]++;
+			}
+			return sums;
+		}
+	}
+}
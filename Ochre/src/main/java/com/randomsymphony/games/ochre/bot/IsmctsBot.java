@@ -0,0 +1,273 @@
+package com.randomsymphony.games.ochre.bot;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Information set Monte Carlo tree search. Every iteration deals the unseen
+ * cards at random, see {@link Observation#sample(SplitMix64, int[])}, and
+ * walks a single tree whose nodes are the seat's information sets: the
+ * public actions taken since the decision, so all deals share the tree and
+ * nothing is learnt from cards the seat can't see. Only actions legal in
+ * the current deal are considered, chosen by UCB1 where a child's parent
+ * count is the number of times it was available. New nodes are played out
+ * to the end of the round with the {@link RoundModel} rule of thumb player.
+ * The dealer's discard is hidden from other seats, so for them it is made
+ * by the rule of thumb and not part of the tree.
+ *
+ * Each of several workers grows its own tree from the root, their root visit
+ * counts are added up and the most visited action wins. The search is
+ * anytime, it stops at the deadline with whatever it has.
+ */
+public class IsmctsBot implements Bot {
+
+	public static final long DEFAULT_BUDGET_MILLIS = 150;
+	/**
+	 * The UCB1 exploration constant, rewards are between 0 and 1.
+	 */
+	public static final double EXPLORATION = 0.7;
+
+	/**
+	 * Round scores run from minus this to this.
+	 */
+	private static final int MAX_SCORE = RulesEngine.NUM_POINTS_ALL_5_ALONE;
+	/**
+	 * Longer than any path through a round: eight bids, a discard and the
+	 * plays.
+	 */
+	private static final int MAX_DEPTH = 2 * Round.NUMBER_OF_SEATS + 1 + Round.MAX_PLAYS + 1;
+
+	private final long mBudgetNanos;
+	private final int mMaxIterations;
+	private final int mWorkers;
+	private final ExecutorService mExecutor;
+
+	/**
+	 * Think for {@link #DEFAULT_BUDGET_MILLIS} with a worker per core.
+	 */
+	public IsmctsBot() {
+		this(DEFAULT_BUDGET_MILLIS, Integer.MAX_VALUE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param budgetMillis How long a decision may take.
+	 * @param maxIterations Stop a worker early after this many iterations.
+	 * @param workers How many trees to grow at once.
+	 */
+	public IsmctsBot(long budgetMillis, int maxIterations, int workers) {
+		if (budgetMillis <= 0 || maxIterations <= 0 || workers <= 0) {
+			throw new IllegalArgumentException("Budget, iterations and workers must be positive.");
+		}
+		mBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		mMaxIterations = maxIterations;
+		mWorkers = workers;
+		mExecutor = PimcBot.newDaemonPool("IsmctsBot", workers);
+	}
+
+	/**
+	 * Stop the worker threads, the bot can't decide anything afterwards.
+	 */
+	@Override
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	@Override
+	public Action decide(Observation observation, SplitMix64 random) {
+		RoundModel model = new RoundModel();
+		int[] hands = new int[Round.NUMBER_OF_SEATS];
+		observation.sample(random, hands);
+		model.reset(observation, hands);
+		int[] actions = new int[RoundModel.ACTION_LIMIT];
+		int count = model.getActions(actions);
+		if (count == 1) {
+			return toAction(actions[0]);
+		}
+
+		long deadline = System.nanoTime() + mBudgetNanos;
+		ArrayList<Future<long[]>> futures = new ArrayList<Future<long[]>>(mWorkers);
+		for (int ptr = 0; ptr < mWorkers; ptr++) {
+			futures.add(mExecutor.submit(new Worker(observation, random.split(), deadline)));
+		}
+		long[] visits = new long[RoundModel.ACTION_LIMIT];
+		try {
+			for (int ptr = 0; ptr < futures.size(); ptr++) {
+				long[] workerVisits = futures.get(ptr).get();
+				for (int action = 0; action < visits.length; action++) {
+					visits[action] += workerVisits[action];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deciding.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A worker failed.", e.getCause());
+		}
+
+		int best = actions[0];
+		for (int ptr = 1; ptr < count; ptr++) {
+			if (visits[actions[ptr]] > visits[best]) {
+				best = actions[ptr];
+			}
+		}
+		return toAction(best);
+	}
+
+	private static Action toAction(int action) {
+		if (action == RoundModel.PASS) {
+			return Action.pass();
+		} else if (action >= RoundModel.NAME) {
+			int suit = (action - RoundModel.NAME) / 2;
+			return Action.setTrump((action - RoundModel.NAME) % 2 == 1,
+					Card.get(CardSet.indexOf(suit, Card.VALUE_NINE)));
+		} else if (action >= RoundModel.ORDER_UP) {
+			return Action.setTrump(action == RoundModel.ORDER_UP + 1, null);
+		} else if (action >= RoundModel.DISCARD) {
+			return Action.discard(Card.get(action - RoundModel.DISCARD));
+		}
+		return Action.play(Card.get(action));
+	}
+
+	/**
+	 * An information set, reached by an action of a seat on the team.
+	 */
+	private static final class Node {
+		final int mAction;
+		final int mTeam;
+		Node mChild;
+		Node mSibling;
+		int mVisits;
+		int mAvailable;
+		double mReward;
+
+		Node(int action, int team) {
+			mAction = action;
+			mTeam = team;
+		}
+
+		Node find(int action) {
+			for (Node child = mChild; child != null; child = child.mSibling) {
+				if (child.mAction == action) {
+					return child;
+				}
+			}
+			return null;
+		}
+
+		Node add(int action, int team) {
+			Node child = new Node(action, team);
+			child.mSibling = mChild;
+			mChild = child;
+			return child;
+		}
+	}
+
+	/**
+	 * Grows one tree until the deadline.
+	 * @return The visits of each action from the root.
+	 */
+	private class Worker implements Callable<long[]> {
+		private final Observation mObservation;
+		private final SplitMix64 mRandom;
+		private final long mDeadline;
+		private final RoundModel mModel = new RoundModel();
+		private final int[] mHands = new int[Round.NUMBER_OF_SEATS];
+		private final int[] mActions = new int[RoundModel.ACTION_LIMIT];
+		private final Node[] mPath = new Node[MAX_DEPTH];
+
+		Worker(Observation observation, SplitMix64 random, long deadline) {
+			mObservation = observation;
+			mRandom = random;
+			mDeadline = deadline;
+		}
+
+		@Override
+		public long[] call() {
+			Node root = new Node(-1, -1);
+			for (int iteration = 0; iteration < mMaxIterations; iteration++) {
+				if (iteration > 0 && System.nanoTime() >= mDeadline) {
+					break;
+				}
+				iterate(root);
+			}
+			long[] visits = new long[RoundModel.ACTION_LIMIT];
+			for (Node child = root.mChild; child != null; child = child.mSibling) {
+				visits[child.mAction] = child.mVisits;
+			}
+			return visits;
+		}
+
+		private void iterate(Node root) {
+			RoundModel model = mModel;
+			mObservation.sample(mRandom, mHands);
+			model.reset(mObservation, mHands);
+			int depth = 0;
+			Node node = root;
+			boolean expanded = false;
+
+			// select down the tree and add one node
+			while (!model.isOver() && !expanded) {
+				int actor = model.getActor();
+				if (model.mPhase == Phase.DEALER_DISCARD && actor != mObservation.getSeat()) {
+					model.apply(model.getRolloutAction());
+					continue;
+				}
+				int count = model.getActions(mActions);
+				Node next = null;
+				int untried = 0;
+				// every child that could be chosen in this deal counts as
+				// available, whether or not this visit expands
+				for (int ptr = 0; ptr < count; ptr++) {
+					Node child = node.find(mActions[ptr]);
+					if (child == null) {
+						mActions[untried++] = mActions[ptr];
+					} else {
+						child.mAvailable++;
+					}
+				}
+				if (untried > 0) {
+					int action = mActions[mRandom.nextInt(untried)];
+					next = node.add(action, actor % 2);
+					next.mAvailable = 1;
+					expanded = true;
+				} else {
+					double bestValue = Double.NEGATIVE_INFINITY;
+					for (int ptr = 0; ptr < count; ptr++) {
+						Node child = node.find(mActions[ptr]);
+						double value = child.mReward / child.mVisits + EXPLORATION *
+								Math.sqrt(Math.log(child.mAvailable) / child.mVisits);
+						if (value > bestValue) {
+							bestValue = value;
+							next = child;
+						}
+					}
+				}
+				model.apply(next.mAction);
+				mPath[depth++] = next;
+				node = next;
+			}
+
+			// play out the rest and score it
+			while (!model.isOver()) {
+				model.apply(model.getRolloutAction());
+			}
+			double teamOneReward = (model.getScore(0) + MAX_SCORE) / (2.0 * MAX_SCORE);
+			for (int ptr = 0; ptr < depth; ptr++) {
+				Node visited = mPath[ptr];
+				visited.mVisits++;
+				visited.mReward += visited.mTeam == 0 ? teamOneReward : 1 - teamOneReward;
+			}
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package com.randomsymphony.games.ochre.bot;
+
+import com.randomsymphony.games.ochre.logic.GameState;
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * What one seat knows about the current round: its own hand, the turned up
+ * card, the bidding, every card played and how many cards everyone holds.
+ * It is copied out of the game, so a bot can think about it on another
+ * thread while the game goes on.
+ *
+ * From the plays it also works out which suits a seat is known to be out of,
+ * a seat which didn't follow the suit led has none left, and it can deal the
+ * cards it can't see at random in a way which fits all of that.
+ */
+public class Observation {
+
+	/**
+	 * Deals which break a void are thrown away, after this many in a row the
+	 * voids are ignored.
+	 */
+	private static final int MAX_SAMPLE_ATTEMPTS = 64;
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+
+	private final int mSeat;
+	private final Phase mPhase;
+	private final int mDealer;
+	private final int mTurnUp;
+	/**
+	 * The trump suit or -1 while bidding.
+	 */
+	private final int mTrump;
+	private final int mMaker;
+	private final boolean mAlone;
+	private final int mTrumpPasses;
+	private final int mHand;
+	private final int[] mHandSizes = new int[SEATS];
+	/**
+	 * Indexed by seat, cards other seats are known to hold, which is the
+	 * turned up card once the dealer picked it up.
+	 */
+	private final int[] mKnown = new int[SEATS];
+	/**
+	 * Indexed by seat, the effective suits the seat is out of as bits.
+	 */
+	private final int[] mVoids = new int[SEATS];
+	private final int mPlayed;
+	private final int mLeader;
+	private final int[] mTrick = new int[SEATS];
+	private final int mTrickPlays;
+	private final int[] mTeamTricks = new int[2];
+	private final int[] mTeamPoints = new int[2];
+	/**
+	 * Cards nobody could have been dealt from this seat's point of view.
+	 */
+	private final int mUnseen;
+
+	/**
+	 * @param seat The seat whose view to take, the game must be in a round.
+	 */
+	public Observation(GameState state, int seat) {
+		Round round = state.getCurrentRound();
+		if (round == null) {
+			throw new IllegalStateException("No round is being played.");
+		}
+		Player[] players = state.getPlayers();
+		mSeat = seat;
+		mPhase = state.getGamePhase();
+		mDealer = round.getDealerSeat();
+		mTrumpPasses = round.trumpPasses;
+		mHand = players[seat].getHand();
+		for (int ptr = 0; ptr < SEATS; ptr++) {
+			mHandSizes[ptr] = players[ptr].getCardCount();
+		}
+		mTeamPoints[0] = state.getTeamPoints(0);
+		mTeamPoints[1] = state.getTeamPoints(1);
+
+		boolean trumpSet = mPhase == Phase.DEALER_DISCARD || mPhase == Phase.PLAY;
+		mTrump = trumpSet ? round.trump.getSuit() : -1;
+		mMaker = trumpSet ? round.getMakerSeat() : Player.NO_SEAT;
+		mAlone = trumpSet && round.alone;
+		mTurnUp = round.turnUp.getIndex();
+
+		int played = CardSet.EMPTY;
+		int plays = trumpSet ? round.totalPlays : 0;
+		int active = round.getActivePlayerCount();
+		int leadSuit = -1;
+		for (int play = 0; play < plays; play++) {
+			int card = round.getPlayCard(play);
+			int effective = TrickEvaluator.effectiveSuit(mTrump, card);
+			if (play % active == 0) {
+				leadSuit = effective;
+			} else if (effective != leadSuit) {
+				mVoids[round.getPlaySeat(play)] |= 1 << leadSuit;
+			}
+			played |= CardSet.of(card);
+		}
+		mPlayed = played;
+		mTrickPlays = trumpSet ? round.getCurrentTrickPlayCount() : 0;
+		for (int ptr = 0; ptr < mTrickPlays; ptr++) {
+			mTrick[ptr] = round.getPlayCard(plays - mTrickPlays + ptr);
+		}
+		mLeader = !trumpSet ? Player.NO_SEAT :
+				mTrickPlays > 0 ? round.getLeaderSeat() : round.getNextSeat();
+		mTeamTricks[0] = trumpSet ? round.getTeamTricks(0) : 0;
+		mTeamTricks[1] = trumpSet ? round.getTeamTricks(1) : 0;
+
+		// everyone saw the turned card, whether or not it was picked up
+		int turnUp = CardSet.of(mTurnUp);
+		int unseen = CardSet.FULL_DECK & ~mHand & ~played & ~turnUp;
+		if (seat == mDealer && round.discard != null) {
+			// only the dealer knows what went back under the kitty
+			unseen &= ~CardSet.of(round.discard);
+		}
+		boolean pickedUp = trumpSet && mTrumpPasses < SEATS &&
+				SeatOrder.sittingOut(mMaker, mAlone) != mDealer;
+		if (pickedUp && mDealer != seat && (played & turnUp) == CardSet.EMPTY) {
+			// the dealer picked it up, assume it wasn't thrown away again
+			mKnown[mDealer] = turnUp;
+		}
+		mUnseen = unseen;
+	}
+
+	public int getSeat() {
+		return mSeat;
+	}
+
+	public Phase getPhase() {
+		return mPhase;
+	}
+
+	public int getDealer() {
+		return mDealer;
+	}
+
+	/**
+	 * @return The index of the turned up card, also once it was turned down
+	 * and another suit named.
+	 */
+	public int getTurnUp() {
+		return mTurnUp;
+	}
+
+	/**
+	 * @return The trump suit or -1 while bidding.
+	 */
+	public int getTrump() {
+		return mTrump;
+	}
+
+	public int getMaker() {
+		return mMaker;
+	}
+
+	public boolean isAlone() {
+		return mAlone;
+	}
+
+	public int getTrumpPasses() {
+		return mTrumpPasses;
+	}
+
+	/**
+	 * @return false for the dealer when everyone else passed twice.
+	 */
+	public boolean canPass() {
+		return mPhase == Phase.ORDER_UP ||
+				(mPhase == Phase.PICK_TRUMP && mTrumpPasses < 2 * SEATS - 1);
+	}
+
+	/**
+	 * @return The seat's own hand as a {@link CardSet}.
+	 */
+	public int getHand() {
+		return mHand;
+	}
+
+	/**
+	 * @return The cards the seat may play, empty outside of
+	 * {@link Phase#PLAY}.
+	 */
+	public int getLegalMoves() {
+		if (mPhase != Phase.PLAY) {
+			return CardSet.EMPTY;
+		}
+		return TrickEvaluator.legalMoves(mHand, mTrump, mTrickPlays > 0 ? mTrick[0] : -1);
+	}
+
+	/**
+	 * @return The seat which leads, or led, the trick in progress.
+	 */
+	public int getLeader() {
+		return mLeader;
+	}
+
+	/**
+	 * @param trick Receives the cards played to the trick in progress.
+	 * @return The number of cards.
+	 */
+	public int getTrick(int[] trick) {
+		System.arraycopy(mTrick, 0, trick, 0, mTrickPlays);
+		return mTrickPlays;
+	}
+
+	public int getTrickPlays() {
+		return mTrickPlays;
+	}
+
+	/**
+	 * @return The cards played in the round so far, the trick in progress
+	 * included.
+	 */
+	public int getPlayed() {
+		return mPlayed;
+	}
+
+	public int getTeamTricks(int team) {
+		return mTeamTricks[team];
+	}
+
+	public int getTeamPoints(int team) {
+		return mTeamPoints[team];
+	}
+
+	/**
+	 * @return The effective suits the seat has shown to be out of, as bits.
+	 */
+	public int getVoids(int seat) {
+		return mVoids[seat];
+	}
+
+	/**
+	 * Deal the cards this seat can't see to the other seats at random, giving
+	 * each the number of cards it holds. Known cards go where they are known
+	 * to be and no seat gets a suit it has shown to be out of, the leftovers
+	 * are the cards buried at the start of the round. Seats get a card in
+	 * proportion to the room they have left for it, which keeps the deals
+	 * close to uniform.
+	 * @param hands Receives a {@link CardSet} per seat, the seat's own hand
+	 * included.
+	 */
+	public void sample(SplitMix64 random, int[] hands) {
+		int[] room = new int[SEATS];
+		int[] forbidden = new int[SEATS];
+		int[] pool = new int[CardSet.DECK_SIZE];
+		int poolSize = CardSet.toIndices(mUnseen, pool);
+		for (int attempt = 0; ; attempt++) {
+			boolean useVoids = attempt < MAX_SAMPLE_ATTEMPTS;
+			for (int seat = 0; seat < SEATS; seat++) {
+				hands[seat] = seat == mSeat ? mHand : mKnown[seat];
+				room[seat] = seat == mSeat ? 0 : mHandSizes[seat] - CardSet.size(mKnown[seat]);
+				forbidden[seat] = CardSet.EMPTY;
+				if (useVoids) {
+					for (int suit = 0; suit < CardSet.NUMBER_OF_SUITS; suit++) {
+						if ((mVoids[seat] & 1 << suit) != 0) {
+							forbidden[seat] |= TrickEvaluator.suitMask(mTrump, suit);
+						}
+					}
+				}
+			}
+			int buried = poolSize;
+			for (int seat = 0; seat < SEATS; seat++) {
+				buried -= room[seat];
+			}
+			if (buried < 0) {
+				throw new IllegalStateException("More cards in hands than out of sight.");
+			}
+
+			boolean stuck = false;
+			for (int left = poolSize; left > 0; left--) {
+				// take a random card which hasn't been placed
+				int pick = random.nextInt(left);
+				int card = pool[pick];
+				pool[pick] = pool[left - 1];
+				pool[left - 1] = card;
+
+				int bit = CardSet.of(card);
+				int total = buried;
+				for (int seat = 0; seat < SEATS; seat++) {
+					if ((forbidden[seat] & bit) == CardSet.EMPTY) {
+						total += room[seat];
+					}
+				}
+				if (total == 0) {
+					stuck = true;
+					break;
+				}
+				int slot = random.nextInt(total);
+				if (slot < buried) {
+					buried--;
+					continue;
+				}
+				slot -= buried;
+				for (int seat = 0; seat < SEATS; seat++) {
+					if ((forbidden[seat] & bit) != CardSet.EMPTY) {
+						continue;
+					}
+					if (slot < room[seat]) {
+						hands[seat] |= bit;
+						room[seat]--;
+						break;
+					}
+					slot -= room[seat];
+				}
+			}
+			if (!stuck) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The seat sitting out of the round, or {@link Player#NO_SEAT}.
+	 */
+	public int getSittingOut() {
+		return SeatOrder.sittingOut(mMaker, mAlone);
+	}
+}
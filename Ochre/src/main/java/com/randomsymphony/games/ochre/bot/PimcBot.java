@@ -0,0 +1,349 @@
+package com.randomsymphony.games.ochre.bot;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.search.DoubleDummySolver;
+import com.randomsymphony.games.ochre.search.TranspositionTable;
+import com.randomsymphony.games.ochre.sim.TrumpCountPolicy;
+
+/**
+ * Perfect information Monte Carlo: deal the cards the seat can't see at
+ * random in ways which fit what it has seen, solve every deal with the
+ * {@link DoubleDummySolver} as if all hands were open and pick the move which
+ * scores the most points on average. Bids are scored by solving the round
+ * from the first lead with the bot as maker, alone or not, against passing
+ * which counts as no points, the dealer's discard by solving the round once
+ * per card thrown. With a {@link BidTable} set bids are looked up instead.
+ *
+ * Deals are solved on a pool of threads, one per core by default, which
+ * share a transposition table. A decision stops at its time budget or once
+ * enough deals are solved, whichever comes first.
+ */
+public class PimcBot implements Bot {
+
+	public static final long DEFAULT_BUDGET_MILLIS = 150;
+	/**
+	 * More deals than this barely ever change the choice.
+	 */
+	public static final int DEFAULT_MAX_SAMPLES = 1000;
+	/**
+	 * Solving with all hands open flatters the makers, a bid must be worth at
+	 * least this many points on average.
+	 */
+	public static final double MIN_BID_POINTS = 0.25;
+
+	private static final int TABLE_BITS = 16;
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	/**
+	 * Passing, the other options are cards or suit * 2 + alone.
+	 */
+	private static final int OPTION_PASS = -1;
+	/**
+	 * Points are scaled by this so tricks can break ties between moves
+	 * scoring the same points.
+	 */
+	private static final int POINT_SCALE = 8;
+	private static final int[] NO_TRICK = new int[0];
+
+	private final long mBudgetNanos;
+	private final int mMaxSamples;
+	private final int mThreads;
+	private final ExecutorService mExecutor;
+	private final TranspositionTable mTable = new TranspositionTable(TABLE_BITS);
+	private volatile BidTable mBidTable;
+
+	/**
+	 * Think for {@link #DEFAULT_BUDGET_MILLIS} on every core.
+	 */
+	public PimcBot() {
+		this(DEFAULT_BUDGET_MILLIS, DEFAULT_MAX_SAMPLES, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param budgetMillis How long a decision may take.
+	 * @param maxSamples Stop early after solving this many deals.
+	 * @param threads How many deals to solve at once.
+	 */
+	public PimcBot(long budgetMillis, int maxSamples, int threads) {
+		if (budgetMillis <= 0 || maxSamples <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Budget, samples and threads must be positive.");
+		}
+		mBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+		mMaxSamples = maxSamples;
+		mThreads = threads;
+		mExecutor = newDaemonPool("PimcBot", threads);
+	}
+
+	/**
+	 * @return A pool of threads which never keep the app alive.
+	 */
+	static ExecutorService newDaemonPool(final String name, int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Look bids up in the table instead of solving deals, or solve them again
+	 * with null.
+	 */
+	public void setBidTable(BidTable table) {
+		mBidTable = table;
+	}
+
+	/**
+	 * Stop the worker threads, the bot can't decide anything afterwards.
+	 */
+	@Override
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	@Override
+	public Action decide(Observation observation, SplitMix64 random) {
+		int[] options = getOptions(observation);
+		if (options.length == 1) {
+			return toAction(observation, options[0]);
+		}
+		BidTable table = mBidTable;
+		if (table != null && observation.getTrump() < 0) {
+			return lookUpBid(observation, options, table);
+		}
+
+		long deadline = System.nanoTime() + mBudgetNanos;
+		int quota = (mMaxSamples + mThreads - 1) / mThreads;
+		ArrayList<Future<long[]>> futures = new ArrayList<Future<long[]>>(mThreads);
+		for (int ptr = 0; ptr < mThreads; ptr++) {
+			futures.add(mExecutor.submit(new Worker(observation, options, random.split(), deadline,
+					quota)));
+		}
+		// the last slot counts the deals
+		long[] totals = new long[options.length + 1];
+		try {
+			for (int ptr = 0; ptr < futures.size(); ptr++) {
+				long[] sums = futures.get(ptr).get();
+				for (int option = 0; option < totals.length; option++) {
+					totals[option] += sums[option];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deciding.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A worker failed.", e.getCause());
+		}
+
+		long samples = totals[options.length];
+		int best = 0;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int option = 0; option < options.length; option++) {
+			double value;
+			if (options[option] == OPTION_PASS) {
+				value = MIN_BID_POINTS * POINT_SCALE;
+			} else {
+				value = (double) totals[option] / samples;
+			}
+			if (value > bestValue) {
+				best = option;
+				bestValue = value;
+			}
+		}
+		return toAction(observation, options[best]);
+	}
+
+	private static Action lookUpBid(Observation observation, int[] options, BidTable table) {
+		int best = 0;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int option = 0; option < options.length; option++) {
+			double value;
+			if (options[option] == OPTION_PASS) {
+				value = MIN_BID_POINTS;
+			} else {
+				value = table.getPoints(observation.getHand(), observation.getTurnUp(),
+						options[option] / 2, observation.getSeat(), observation.getDealer(),
+						options[option] % 2 == 1);
+			}
+			if (value > bestValue) {
+				best = option;
+				bestValue = value;
+			}
+		}
+		return toAction(observation, options[best]);
+	}
+
+	/**
+	 * @return The moves worth comparing, see {@link #OPTION_PASS}.
+	 */
+	private static int[] getOptions(Observation observation) {
+		int cards;
+		switch (observation.getPhase()) {
+			case PLAY:
+				cards = observation.getLegalMoves();
+				break;
+			case DEALER_DISCARD:
+				cards = observation.getHand();
+				break;
+			case ORDER_UP: {
+				int suit = CardSet.suitOf(observation.getTurnUp());
+				return new int[] {OPTION_PASS, suit * 2, suit * 2 + 1};
+			}
+			case PICK_TRUMP: {
+				int turnedDown = CardSet.suitOf(observation.getTurnUp());
+				boolean canPass = observation.canPass();
+				int[] options = new int[(CardSet.NUMBER_OF_SUITS - 1) * 2 + (canPass ? 1 : 0)];
+				int count = 0;
+				if (canPass) {
+					options[count++] = OPTION_PASS;
+				}
+				for (int suit = 0; suit < CardSet.NUMBER_OF_SUITS; suit++) {
+					if (suit != turnedDown) {
+						options[count++] = suit * 2;
+						options[count++] = suit * 2 + 1;
+					}
+				}
+				return options;
+			}
+			default:
+				throw new IllegalStateException("No decision in phase " + observation.getPhase());
+		}
+		int[] options = new int[CardSet.size(cards)];
+		CardSet.toIndices(cards, options);
+		return options;
+	}
+
+	private static Action toAction(Observation observation, int option) {
+		switch (observation.getPhase()) {
+			case PLAY:
+				return Action.play(Card.get(option));
+			case DEALER_DISCARD:
+				return Action.discard(Card.get(option));
+			case ORDER_UP:
+				return option == OPTION_PASS ? Action.pass() : Action.setTrump(option % 2 == 1, null);
+			default:
+				return option == OPTION_PASS ? Action.pass() : Action.setTrump(option % 2 == 1,
+						Card.get(CardSet.indexOf(option / 2, Card.VALUE_NINE)));
+		}
+	}
+
+	/**
+	 * @return The points the team scores in the round, negative when the
+	 * other team scores.
+	 */
+	static int getTeamScore(int team, int maker, boolean alone, int teamTricks) {
+		int makerTeam = maker % 2;
+		int makerTricks = team == makerTeam ? teamTricks : Round.NUMBER_OF_TRICKS - teamTricks;
+		int points = RulesEngine.getMakerPoints(makerTricks, alone);
+		int makerScore = points > 0 ? points : -RulesEngine.NUM_POINTS_SET;
+		return team == makerTeam ? makerScore : -makerScore;
+	}
+
+	/**
+	 * Solves deals until the deadline or its quota and sums up the score of
+	 * every option.
+	 */
+	private class Worker implements Callable<long[]> {
+		private final Observation mObservation;
+		private final int[] mOptions;
+		private final SplitMix64 mRandom;
+		private final long mDeadline;
+		private final int mQuota;
+		private final DoubleDummySolver mSolver = new DoubleDummySolver(mTable);
+		private final int[] mHands = new int[SEATS];
+		private final int[] mTrial = new int[SEATS];
+
+		Worker(Observation observation, int[] options, SplitMix64 random, long deadline,
+				int quota) {
+			mObservation = observation;
+			mOptions = options;
+			mRandom = random;
+			mDeadline = deadline;
+			mQuota = quota;
+		}
+
+		@Override
+		public long[] call() {
+			long[] sums = new long[mOptions.length + 1];
+			int[] trick = new int[SEATS];
+			int trickPlays = mObservation.getTrick(trick);
+			int team = mObservation.getSeat() % 2;
+			// always solve one deal, so there is something to go on
+			for (int sample = 0; sample < mQuota; sample++) {
+				if (sample > 0 && System.nanoTime() >= mDeadline) {
+					break;
+				}
+				mObservation.sample(mRandom, mHands);
+				if (mObservation.getPhase() == Phase.PLAY) {
+					DoubleDummySolver.Solution solution = mSolver.solve(mHands,
+							mObservation.getTrump(), mObservation.getMaker(), mObservation.isAlone(),
+							mObservation.getLeader(), trick, trickPlays,
+							mObservation.getTeamTricks(0), mObservation.getTeamTricks(1));
+					for (int option = 0; option < mOptions.length; option++) {
+						int tricks = solution.getTricks(mOptions[option]);
+						sums[option] += getTeamScore(team, mObservation.getMaker(),
+								mObservation.isAlone(), tricks) * POINT_SCALE + tricks;
+					}
+				} else {
+					for (int option = 0; option < mOptions.length; option++) {
+						if (mOptions[option] != OPTION_PASS) {
+							sums[option] += scoreRound(mOptions[option]) * POINT_SCALE;
+						}
+					}
+				}
+				sums[mOptions.length]++;
+			}
+			return sums;
+		}
+
+		/**
+		 * @param option A bid or a card to discard.
+		 * @return The points the bot's team scores solving the whole round.
+		 */
+		private int scoreRound(int option) {
+			int seat = mObservation.getSeat();
+			int dealer = mObservation.getDealer();
+			System.arraycopy(mHands, 0, mTrial, 0, SEATS);
+			int trump;
+			int maker;
+			boolean alone;
+			if (mObservation.getPhase() == Phase.DEALER_DISCARD) {
+				trump = mObservation.getTrump();
+				maker = mObservation.getMaker();
+				alone = mObservation.isAlone();
+				mTrial[dealer] &= ~CardSet.of(option);
+			} else {
+				trump = option / 2;
+				maker = seat;
+				alone = option % 2 == 1;
+				if (mObservation.getPhase() == Phase.ORDER_UP &&
+						SeatOrder.sittingOut(maker, alone) != dealer) {
+					// the dealer picks up and throws their worst card
+					int hand = mTrial[dealer] | CardSet.of(mObservation.getTurnUp());
+					mTrial[dealer] = hand & ~CardSet.of(TrumpCountPolicy.lowest(hand, trump, -1));
+				}
+			}
+			DoubleDummySolver.Solution solution = mSolver.solve(mTrial, trump, maker, alone,
+					SeatOrder.firstLeader(dealer, maker, alone), NO_TRICK, 0, 0, 0);
+			int team = seat % 2;
+			return getTeamScore(team, maker, alone, solution.getTeamTricks(team));
+		}
+	}
+}
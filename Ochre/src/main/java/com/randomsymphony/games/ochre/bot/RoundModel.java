@@ -0,0 +1,244 @@
+package com.randomsymphony.games.ochre.bot;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.sim.TrumpCountPolicy;
+
+/**
+ * A round reduced to a few ints, from the bidding to the last trick, for
+ * searches which play it out many thousand times. It follows the same rules
+ * as the {@link RulesEngine} but keeps no history and tells no one.
+ *
+ * Actions are ints: a card index to play it, {@link #DISCARD} plus a card
+ * index to throw it, {@link #PASS}, {@link #ORDER_UP} plus one to go alone,
+ * and {@link #NAME} plus suit * 2, plus one to go alone.
+ */
+class RoundModel {
+
+	static final int DISCARD = 32;
+	static final int PASS = 64;
+	static final int ORDER_UP = 66;
+	static final int NAME = 68;
+	/**
+	 * One past the largest action.
+	 */
+	static final int ACTION_LIMIT = NAME + 2 * CardSet.NUMBER_OF_SUITS;
+
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	/**
+	 * Rollouts order up or name a suit holding this many trump.
+	 */
+	private static final int ROLLOUT_MIN_TRUMP = 3;
+	private static final int ROLLOUT_ALONE_TRUMP = 5;
+
+	final int[] mHands = new int[SEATS];
+	Phase mPhase;
+	int mDealer;
+	int mTurnUp;
+	int mPasses;
+	int mTrump;
+	int mMaker;
+	boolean mAlone;
+	int mNext;
+	int mLeadCard;
+	int mLeadSuit;
+	int mWinningSeat;
+	int mWinningCard;
+	int mWinningRank;
+	int mTrickPlays;
+	final int[] mTeamTricks = new int[2];
+
+	/**
+	 * Set up the position the observation describes, with these hands.
+	 */
+	void reset(Observation observation, int[] hands) {
+		System.arraycopy(hands, 0, mHands, 0, SEATS);
+		mPhase = observation.getPhase();
+		mDealer = observation.getDealer();
+		mTurnUp = observation.getTurnUp();
+		mPasses = observation.getTrumpPasses();
+		mTrump = observation.getTrump();
+		mMaker = observation.getMaker();
+		mAlone = observation.isAlone();
+		mTeamTricks[0] = observation.getTeamTricks(0);
+		mTeamTricks[1] = observation.getTeamTricks(1);
+		mLeadCard = -1;
+		mTrickPlays = 0;
+		switch (mPhase) {
+			case ORDER_UP:
+			case PICK_TRUMP:
+				mNext = SeatOrder.bidder(mDealer, mPasses);
+				break;
+			case DEALER_DISCARD:
+				mNext = mDealer;
+				break;
+			default:
+				mNext = observation.getLeader();
+				int[] trick = new int[SEATS];
+				int plays = observation.getTrick(trick);
+				for (int ptr = 0; ptr < plays; ptr++) {
+					// the cards are already out of the hands
+					mHands[mNext] |= CardSet.of(trick[ptr]);
+					apply(trick[ptr]);
+				}
+		}
+	}
+
+	boolean isOver() {
+		return mPhase == Phase.NONE;
+	}
+
+	/**
+	 * @return The seat to act.
+	 */
+	int getActor() {
+		return mNext;
+	}
+
+	/**
+	 * @return The number of actions written to actions.
+	 */
+	int getActions(int[] actions) {
+		int count = 0;
+		switch (mPhase) {
+			case ORDER_UP:
+				actions[count++] = PASS;
+				actions[count++] = ORDER_UP;
+				actions[count++] = ORDER_UP + 1;
+				break;
+			case PICK_TRUMP:
+				if (mPasses < 2 * SEATS - 1) {
+					actions[count++] = PASS;
+				}
+				for (int suit = 0; suit < CardSet.NUMBER_OF_SUITS; suit++) {
+					if (suit != CardSet.suitOf(mTurnUp)) {
+						actions[count++] = NAME + suit * 2;
+						actions[count++] = NAME + suit * 2 + 1;
+					}
+				}
+				break;
+			case DEALER_DISCARD:
+				for (int rest = mHands[mDealer]; rest != CardSet.EMPTY; rest &= rest - 1) {
+					actions[count++] = DISCARD + CardSet.first(rest);
+				}
+				break;
+			case PLAY:
+				for (int rest = getLegalPlays(); rest != CardSet.EMPTY; rest &= rest - 1) {
+					actions[count++] = CardSet.first(rest);
+				}
+				break;
+			default:
+				break;
+		}
+		return count;
+	}
+
+	private int getLegalPlays() {
+		return TrickEvaluator.legalMoves(mHands[mNext], mTrump, mLeadCard);
+	}
+
+	void apply(int action) {
+		if (action == PASS) {
+			mPasses++;
+			if (mPasses == SEATS) {
+				mPhase = Phase.PICK_TRUMP;
+			}
+			mNext = SeatOrder.bidder(mDealer, mPasses);
+		} else if (action >= ORDER_UP && action < NAME) {
+			setTrump(CardSet.suitOf(mTurnUp), action == ORDER_UP + 1);
+			if (SeatOrder.sittingOut(mMaker, mAlone) != mDealer) {
+				mHands[mDealer] |= CardSet.of(mTurnUp);
+				mPhase = Phase.DEALER_DISCARD;
+				mNext = mDealer;
+			}
+		} else if (action >= NAME) {
+			setTrump((action - NAME) / 2, (action - NAME) % 2 == 1);
+		} else if (action >= DISCARD) {
+			mHands[mDealer] &= ~CardSet.of(action - DISCARD);
+			mPhase = Phase.PLAY;
+			mNext = SeatOrder.firstLeader(mDealer, mMaker, mAlone);
+		} else {
+			play(action);
+		}
+	}
+
+	private void setTrump(int trump, boolean alone) {
+		mMaker = SeatOrder.bidder(mDealer, mPasses);
+		mTrump = trump;
+		mAlone = alone;
+		mPhase = Phase.PLAY;
+		mNext = SeatOrder.firstLeader(mDealer, mMaker, alone);
+	}
+
+	private void play(int card) {
+		mHands[mNext] &= ~CardSet.of(card);
+		if (mTrickPlays == 0) {
+			mLeadCard = card;
+			mLeadSuit = TrickEvaluator.effectiveSuit(mTrump, card);
+			mWinningSeat = mNext;
+			mWinningCard = card;
+			mWinningRank = TrickEvaluator.rank(mTrump, mLeadSuit, card);
+		} else {
+			int rank = TrickEvaluator.rank(mTrump, mLeadSuit, card);
+			if (rank > mWinningRank) {
+				mWinningSeat = mNext;
+				mWinningCard = card;
+				mWinningRank = rank;
+			}
+		}
+		if (++mTrickPlays == (mAlone ? SEATS - 1 : SEATS)) {
+			mTeamTricks[mWinningSeat % 2]++;
+			mNext = mWinningSeat;
+			mTrickPlays = 0;
+			mLeadCard = -1;
+			if (mHands[mNext] == CardSet.EMPTY) {
+				mPhase = Phase.NONE;
+			}
+		} else {
+			mNext = SeatOrder.nextSeat(mNext, mMaker, mAlone);
+		}
+	}
+
+	/**
+	 * @return The action a quick rule of thumb player takes, see
+	 * {@link TrumpCountPolicy}.
+	 */
+	int getRolloutAction() {
+		int hand = mHands[mNext];
+		switch (mPhase) {
+			case ORDER_UP: {
+				int count = TrumpCountPolicy.countTrump(hand, CardSet.suitOf(mTurnUp)) +
+						(mNext == mDealer ? 1 : 0);
+				if (count < ROLLOUT_MIN_TRUMP) {
+					return PASS;
+				}
+				return ORDER_UP + (count >= ROLLOUT_ALONE_TRUMP ? 1 : 0);
+			}
+			case PICK_TRUMP: {
+				int suit = TrumpCountPolicy.bestSuit(hand, CardSet.suitOf(mTurnUp));
+				int count = TrumpCountPolicy.countTrump(hand, suit);
+				if (count < ROLLOUT_MIN_TRUMP && mPasses < 2 * SEATS - 1) {
+					return PASS;
+				}
+				return NAME + suit * 2 + (count >= ROLLOUT_ALONE_TRUMP ? 1 : 0);
+			}
+			case DEALER_DISCARD:
+				return DISCARD + TrumpCountPolicy.lowest(hand, mTrump, -1);
+			default:
+				return TrumpCountPolicy.choosePlay(getLegalPlays(), mTrump, mLeadCard,
+						mWinningSeat, mWinningCard, mNext);
+		}
+	}
+
+	/**
+	 * @return The points the team scores in the finished round, negative
+	 * when the other team scores.
+	 */
+	int getScore(int team) {
+		return PimcBot.getTeamScore(team, mMaker, mAlone, mTeamTricks[team]);
+	}
+}
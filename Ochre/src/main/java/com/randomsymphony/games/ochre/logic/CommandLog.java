@@ -0,0 +1,322 @@
+package com.randomsymphony.games.ochre.logic;
+
+import java.util.Arrays;
+
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.Play;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * An append-only log of the actions taken in a game, recorded by listening to
+ * a {@link RulesEngine}. Replaying the log onto the snapshot it started from
+ * rebuilds the game, which gives undo and redo and lets a game move between
+ * devices as a handful of ints instead of its full state.
+ *
+ * Each action is one int holding its type, the acting seat, a card and the
+ * alone flag. A deal is followed by {@link #DEAL_SIZE} ints holding the four
+ * hands and the turned up card so replays don't depend on the shuffle. When
+ * the last play of a round makes the engine deal by itself the deal is
+ * attached to that play, the pair is undone and redone as one action.
+ */
+public class CommandLog implements RulesEngine.Listener {
+
+	public static final int TYPE_DEAL = 0;
+	public static final int TYPE_PASS = 1;
+	public static final int TYPE_SET_TRUMP = 2;
+	public static final int TYPE_DISCARD = 3;
+	public static final int TYPE_PLAY = 4;
+
+	private static final int TYPE_MASK = 0x7;
+	private static final int SEAT_SHIFT = 3;
+	private static final int SEAT_MASK = 0x3;
+	private static final int CARD_SHIFT = 5;
+	private static final int CARD_MASK = 0x1F;
+	private static final int FLAG_ALONE = 1 << 10;
+	/**
+	 * Set when the command is followed by a deal.
+	 */
+	private static final int FLAG_DEAL = 1 << 11;
+	/**
+	 * Four hands and the turned up card.
+	 */
+	private static final int DEAL_SIZE = Round.NUMBER_OF_SEATS + 1;
+
+	private final GameSnapshot mBase;
+	private int[] mCommands;
+	/**
+	 * Where each action starts in {@link #mCommands}.
+	 */
+	private int[] mOffsets;
+	private int mLength;
+	/**
+	 * Actions recorded, including any undone ones which can be redone.
+	 */
+	private int mSize;
+	/**
+	 * Actions currently applied, the rest are waiting to be redone.
+	 */
+	private int mPosition;
+	private int mLastPlay = -1;
+	private boolean mRoundScored;
+	private boolean mReplaying;
+
+	/**
+	 * @param base The game as it was before the first action to record.
+	 */
+	public CommandLog(GameSnapshot base) {
+		this(base, new int[0]);
+	}
+
+	/**
+	 * Recreate a log from {@link #toArray()}, typically one sent from another
+	 * device.
+	 * @throws IllegalArgumentException if the commands are truncated.
+	 */
+	public CommandLog(GameSnapshot base, int[] commands) {
+		mBase = base;
+		mCommands = Arrays.copyOf(commands, Math.max(commands.length, 64));
+		mOffsets = new int[16];
+		for (int ptr = 0; ptr < commands.length; ptr++) {
+			if (mSize == mOffsets.length) {
+				mOffsets = Arrays.copyOf(mOffsets, mSize * 2);
+			}
+			mOffsets[mSize++] = ptr;
+			if ((commands[ptr] & FLAG_DEAL) != 0) {
+				ptr += DEAL_SIZE;
+			}
+		}
+		if (mSize > 0 && mOffsets[mSize - 1] + sizeOf(commands[mOffsets[mSize - 1]]) !=
+				commands.length) {
+			throw new IllegalArgumentException("Command log is truncated.");
+		}
+		mLength = commands.length;
+		mPosition = mSize;
+	}
+
+	public GameSnapshot getBase() {
+		return mBase;
+	}
+
+	/**
+	 * @return The number of actions applied to the game.
+	 */
+	public int getPosition() {
+		return mPosition;
+	}
+
+	/**
+	 * @return The number of actions recorded, including undone ones.
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	public boolean canUndo() {
+		return mPosition > 0;
+	}
+
+	public boolean canRedo() {
+		return mPosition < mSize;
+	}
+
+	/**
+	 * @return The type of the nth action, one of the TYPE constants.
+	 */
+	public int getType(int action) {
+		return mCommands[mOffsets[action]] & TYPE_MASK;
+	}
+
+	/**
+	 * @return The seat which took the nth action.
+	 */
+	public int getSeat(int action) {
+		return (mCommands[mOffsets[action]] >> SEAT_SHIFT) & SEAT_MASK;
+	}
+
+	/**
+	 * @return The applied actions, which together with {@link #getBase()}
+	 * describe the game.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(mCommands, mPosition == mSize ? mLength : mOffsets[mPosition]);
+	}
+
+	/**
+	 * Rebuild the game as it was after the first count actions. The result
+	 * shares nothing with the live game.
+	 */
+	public GameState replay(int count) {
+		if (count < 0 || count > mSize) {
+			throw new IllegalArgumentException("No action " + count + " in the log.");
+		}
+		GameState state = GameState.restore(mBase);
+		RulesEngine engine = new RulesEngine(state);
+		for (int action = 0; action < count; action++) {
+			apply(engine, action);
+		}
+		return state;
+	}
+
+	/**
+	 * Step back one action.
+	 * @return The rebuilt game, install it in place of the live one, or null if
+	 * there is nothing to undo.
+	 */
+	public GameState undo() {
+		if (mPosition == 0) {
+			return null;
+		}
+		mPosition--;
+		mLastPlay = -1;
+		mRoundScored = false;
+		return replay(mPosition);
+	}
+
+	/**
+	 * Apply the next undone action to the live game.
+	 * @return false if there is nothing to redo.
+	 */
+	public boolean redo(RulesEngine engine) {
+		if (mPosition == mSize) {
+			return false;
+		}
+		mReplaying = true;
+		try {
+			apply(engine, mPosition);
+		} finally {
+			mReplaying = false;
+		}
+		mPosition++;
+		return true;
+	}
+
+	/**
+	 * Apply the nth action to the game the engine drives.
+	 * @return The snapshot the action left behind.
+	 */
+	GameSnapshot apply(RulesEngine engine, int action) {
+		int offset = mOffsets[action];
+		int command = mCommands[offset];
+		if ((command & FLAG_DEAL) != 0) {
+			int[] hands = Arrays.copyOfRange(mCommands, offset + 1,
+					offset + 1 + Round.NUMBER_OF_SEATS);
+			engine.setNextDeal(hands, Card.get(mCommands[offset + DEAL_SIZE]));
+		}
+
+		Card card = Card.get((command >> CARD_SHIFT) & CARD_MASK);
+		switch (command & TYPE_MASK) {
+			case TYPE_DEAL:
+				return engine.newRound();
+			case TYPE_PASS:
+				return engine.pass();
+			case TYPE_SET_TRUMP:
+				return engine.setTrump((command & FLAG_ALONE) != 0, card);
+			case TYPE_DISCARD:
+				return engine.discardCard(card);
+			case TYPE_PLAY:
+				Player player = engine.getGameState().getPlayers()[
+						(command >> SEAT_SHIFT) & SEAT_MASK];
+				return engine.playCard(player, card);
+			default:
+				throw new IllegalStateException("Unknown command " + command);
+		}
+	}
+
+	private static int sizeOf(int command) {
+		return (command & FLAG_DEAL) != 0 ? 1 + DEAL_SIZE : 1;
+	}
+
+	/**
+	 * Append an action, dropping any undone actions first.
+	 * @return The offset of the command.
+	 */
+	private int record(int type, int seat, int cardIndex, boolean alone) {
+		if (mPosition < mSize) {
+			mLength = mOffsets[mPosition];
+			mSize = mPosition;
+		}
+		ensureCapacity(1);
+		if (mSize == mOffsets.length) {
+			mOffsets = Arrays.copyOf(mOffsets, mSize * 2);
+		}
+		int offset = mLength;
+		mCommands[mLength++] = type | (seat << SEAT_SHIFT) | (cardIndex << CARD_SHIFT) |
+				(alone ? FLAG_ALONE : 0);
+		mOffsets[mSize++] = offset;
+		mPosition = mSize;
+		return offset;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (mLength + extra > mCommands.length) {
+			mCommands = Arrays.copyOf(mCommands, Math.max(mCommands.length * 2, mLength + extra));
+		}
+	}
+
+	@Override
+	public void onRoundDealt(Round round, Card possibleTrump) {
+		if (mReplaying) {
+			return;
+		}
+		int offset;
+		if (mRoundScored && mLastPlay >= 0) {
+			// the engine dealt by itself, keep the deal with the play
+			offset = mLastPlay;
+		} else {
+			offset = record(TYPE_DEAL, round.getDealerSeat(), possibleTrump.getIndex(), false);
+		}
+		mRoundScored = false;
+		mLastPlay = -1;
+
+		mCommands[offset] |= FLAG_DEAL;
+		ensureCapacity(DEAL_SIZE);
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			mCommands[mLength++] = round.getPlayer(seat).getHand();
+		}
+		mCommands[mLength++] = possibleTrump.getIndex();
+	}
+
+	@Override
+	public void onTrumpPassed(Round round, Player passer) {
+		if (!mReplaying) {
+			record(TYPE_PASS, passer.getSeat(), 0, false);
+		}
+	}
+
+	@Override
+	public void onTrumpSet(Round round, Player maker) {
+		if (!mReplaying) {
+			record(TYPE_SET_TRUMP, maker.getSeat(), round.trump.getIndex(), round.alone);
+		}
+	}
+
+	@Override
+	public void onDealerDiscarded(Round round, Player dealer, Card card) {
+		if (!mReplaying) {
+			record(TYPE_DISCARD, dealer.getSeat(), card.getIndex(), false);
+		}
+	}
+
+	@Override
+	public void onCardPlayed(Round round, Play play) {
+		if (!mReplaying) {
+			mLastPlay = record(TYPE_PLAY, play.player.getSeat(), play.card.getIndex(), false);
+		}
+	}
+
+	@Override
+	public void onTrickComplete(Round round, Play winningPlay, int tricksCaptured) {
+	}
+
+	@Override
+	public void onRoundScored(Round round, int teamOneScore, int teamTwoScore) {
+		if (!mReplaying) {
+			mRoundScored = true;
+		}
+	}
+
+	@Override
+	public void onNextPlayer(Player player) {
+	}
+}
@@ -0,0 +1,177 @@
+package com.randomsymphony.games.ochre.logic;
+
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Numbers every deal, four hands of five plus the turned up card, from 0 up
+ * to {@link #COUNT}, so a deal can be stored, compared or sampled as a single
+ * long. Each hand is ranked among the cards the earlier seats didn't get
+ * using the combinatorial number system and the ranks are combined as digits
+ * of a mixed radix number, seat 0 most significant.
+ */
+public final class DealRank {
+
+	public static final int HAND_SIZE = GamePlayUtils.MAX_CARDS;
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+
+	/**
+	 * Indexed by [n][k], n choose k.
+	 */
+	private static final long[][] CHOOSE = new long[CardSet.DECK_SIZE + 1][HAND_SIZE + 1];
+	/**
+	 * The number of ways to deal each seat's hand from what is left.
+	 */
+	private static final long[] HAND_RADIX = new long[SEATS];
+	/**
+	 * The number of cards left to turn up once the hands are dealt.
+	 */
+	private static final int KITTY_SIZE = CardSet.DECK_SIZE - SEATS * HAND_SIZE;
+
+	/**
+	 * The number of different deals.
+	 */
+	public static final long COUNT;
+	/**
+	 * The number of different hands of five.
+	 */
+	public static final int HAND_COUNT;
+
+	static {
+		for (int n = 0; n <= CardSet.DECK_SIZE; n++) {
+			CHOOSE[n][0] = 1;
+			for (int k = 1; k <= HAND_SIZE && k <= n; k++) {
+				CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+			}
+		}
+
+		long count = KITTY_SIZE;
+		for (int seat = 0; seat < SEATS; seat++) {
+			HAND_RADIX[seat] = CHOOSE[CardSet.DECK_SIZE - seat * HAND_SIZE][HAND_SIZE];
+			count *= HAND_RADIX[seat];
+		}
+		COUNT = count;
+		HAND_COUNT = (int) HAND_RADIX[0];
+	}
+
+	/**
+	 * Do not instantiate!
+	 */
+	private DealRank() {
+	}
+
+	/**
+	 * @param hands The hand of each seat as a {@link CardSet}, five cards each
+	 * and no card in two hands.
+	 * @param turnUp The index of the turned up card, in none of the hands.
+	 * @return The rank of the deal, 0 to {@link #COUNT} - 1.
+	 */
+	public static long rank(int[] hands, int turnUp) {
+		long rank = 0;
+		int remaining = CardSet.FULL_DECK;
+		for (int seat = 0; seat < SEATS; seat++) {
+			int hand = hands[seat];
+			if (CardSet.size(hand) != HAND_SIZE || (hand & ~remaining) != 0) {
+				throw new IllegalArgumentException("Not a valid deal: " +
+						CardSet.toString(hand) + " for seat " + seat);
+			}
+			rank = rank * HAND_RADIX[seat] + rankSubset(hand, remaining);
+			remaining &= ~hand;
+		}
+		if (!CardSet.contains(remaining, turnUp)) {
+			throw new IllegalArgumentException("Turned up card was dealt: " + turnUp);
+		}
+		return rank * KITTY_SIZE + position(turnUp, remaining);
+	}
+
+	/**
+	 * @param hands Receives the hand of each seat as a {@link CardSet}.
+	 * @return The index of the turned up card.
+	 */
+	public static int unrank(long rank, int[] hands) {
+		if (rank < 0 || rank >= COUNT) {
+			throw new IllegalArgumentException("No deal has rank " + rank);
+		}
+		int turnUpPosition = (int) (rank % KITTY_SIZE);
+		rank /= KITTY_SIZE;
+
+		// peel the hand ranks off, last seat first
+		long[] handRanks = new long[SEATS];
+		for (int seat = SEATS - 1; seat >= 0; seat--) {
+			handRanks[seat] = rank % HAND_RADIX[seat];
+			rank /= HAND_RADIX[seat];
+		}
+
+		int remaining = CardSet.FULL_DECK;
+		for (int seat = 0; seat < SEATS; seat++) {
+			hands[seat] = unrankSubset(handRanks[seat], remaining);
+			remaining &= ~hands[seat];
+		}
+		return CardSet.nth(remaining, turnUpPosition);
+	}
+
+	/**
+	 * @param hands Receives the hand of each seat as a {@link CardSet}.
+	 * @return The index of the turned up card of a deal picked uniformly at
+	 * random.
+	 */
+	public static int sample(SplitMix64 random, int[] hands) {
+		return unrank(random.nextLong(COUNT), hands);
+	}
+
+	/**
+	 * @param hand Five cards as a {@link CardSet}.
+	 * @return The rank of the hand among all hands, 0 to
+	 * {@link #HAND_COUNT} - 1.
+	 */
+	public static int rankHand(int hand) {
+		if (CardSet.size(hand) != HAND_SIZE) {
+			throw new IllegalArgumentException("Not a hand: " + CardSet.toString(hand));
+		}
+		return (int) rankSubset(hand, CardSet.FULL_DECK);
+	}
+
+	/**
+	 * @return The hand with the rank as a {@link CardSet}.
+	 */
+	public static int unrankHand(int rank) {
+		if (rank < 0 || rank >= HAND_COUNT) {
+			throw new IllegalArgumentException("No hand has rank " + rank);
+		}
+		return unrankSubset(rank, CardSet.FULL_DECK);
+	}
+
+	/**
+	 * @return The number of cards in the set below this one.
+	 */
+	private static int position(int cardIndex, int set) {
+		return Integer.bitCount(set & ((1 << cardIndex) - 1));
+	}
+
+	/**
+	 * Colex rank of the subset with cards renumbered by their position in
+	 * the set they come from.
+	 */
+	private static long rankSubset(int subset, int from) {
+		long rank = 0;
+		int k = 1;
+		for (int rest = subset; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			rank += CHOOSE[position(CardSet.first(rest), from)][k++];
+		}
+		return rank;
+	}
+
+	private static int unrankSubset(long rank, int from) {
+		int subset = CardSet.EMPTY;
+		int position = CardSet.size(from);
+		for (int k = HAND_SIZE; k > 0; k--) {
+			// the largest position whose binomial still fits
+			do {
+				position--;
+			} while (CHOOSE[position][k] > rank);
+			rank -= CHOOSE[position][k];
+			subset = CardSet.add(subset, CardSet.nth(from, position));
+		}
+		return subset;
+	}
+}
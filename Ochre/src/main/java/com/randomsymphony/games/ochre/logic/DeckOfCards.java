@@ -1,64 +1,71 @@
 package com.randomsymphony.games.ochre.logic;
 
-import java.util.ArrayList;
-import java.util.Random;
-
-import android.util.Log;
-
 import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
 
 public class DeckOfCards {
 
-	private ArrayList<Card> mDeck = new ArrayList<Card>();
-	private final Random mRandomizer = new Random();
-	private Card[] ALL_CARDS = new Card[] {
-		new Card(Card.SUIT_CLUBS, Card.VALUE_NINE),
-		new Card(Card.SUIT_CLUBS, Card.VALUE_TEN),
-		new Card(Card.SUIT_CLUBS, Card.VALUE_JACK),
-		new Card(Card.SUIT_CLUBS, Card.VALUE_QUEEN),
-		new Card(Card.SUIT_CLUBS, Card.VALUE_KING),
-		new Card(Card.SUIT_CLUBS, Card.VALUE_ACE),
-		
-		new Card(Card.SUIT_HEARTS, Card.VALUE_NINE),
-		new Card(Card.SUIT_HEARTS, Card.VALUE_TEN),
-		new Card(Card.SUIT_HEARTS, Card.VALUE_JACK),
-		new Card(Card.SUIT_HEARTS, Card.VALUE_QUEEN),
-		new Card(Card.SUIT_HEARTS, Card.VALUE_KING),
-		new Card(Card.SUIT_HEARTS, Card.VALUE_ACE),
-		
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_NINE),
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_TEN),
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_JACK),
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_QUEEN),
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_KING),
-		new Card(Card.SUIT_DIAMONDS, Card.VALUE_ACE),
-		
-		new Card(Card.SUIT_SPADES, Card.VALUE_NINE),
-		new Card(Card.SUIT_SPADES, Card.VALUE_TEN),
-		new Card(Card.SUIT_SPADES, Card.VALUE_JACK),
-		new Card(Card.SUIT_SPADES, Card.VALUE_QUEEN),
-		new Card(Card.SUIT_SPADES, Card.VALUE_KING),
-		new Card(Card.SUIT_SPADES, Card.VALUE_ACE),
-	};
-	
+	/**
+	 * Card indexes in deal order, see {@link Card#getIndex()}.
+	 */
+	private final byte[] mDeck = new byte[CardSet.DECK_SIZE];
+	/**
+	 * Position in {@link #mDeck} of the next card to deal, cards before this
+	 * have already been dealt.
+	 */
+	private int mNextCard = 0;
+	/**
+	 * The cards which have not been dealt yet as a {@link CardSet}.
+	 */
+	private int mRemaining = CardSet.EMPTY;
+	private final SplitMix64 mRandomizer;
+
 	public DeckOfCards() {
+		this(new SplitMix64());
+	}
+
+	/**
+	 * @param random Drives the shuffles and the deal, a seeded generator makes
+	 * every deal reproducible.
+	 */
+	public DeckOfCards(SplitMix64 random) {
+		mRandomizer = random;
 		shuffle();
 	}
-	
+
+	/**
+	 * @return The generator behind this deck, dealing uses it too.
+	 */
+	public SplitMix64 getRandom() {
+		return mRandomizer;
+	}
+
+	/**
+	 * Gather every card and shuffle in place with Fisher-Yates, this does not
+	 * allocate.
+	 */
 	public void shuffle() {
-		mDeck.clear();
-		for (int ptr = 0; ptr < ALL_CARDS.length; ptr++) {
-			mDeck.add(ALL_CARDS[ptr]);
+		for (int ptr = 0; ptr < mDeck.length; ptr++) {
+			mDeck[ptr] = (byte) ptr;
 		}
-		
-		// randomize
-		for (int ptr = 0, limit = mDeck.size(); ptr < limit; ptr++) {
-			// the ptr position serves as the divider between the randomized
-			// and unrandomized portion of the deck.
-			int rand = mRandomizer.nextInt(limit - ptr);
-			Card card = mDeck.remove(ptr + rand);
-			mDeck.add(ptr, card);
+
+		// the cards above ptr are already in their final random order
+		for (int ptr = mDeck.length - 1; ptr > 0; ptr--) {
+			int rand = mRandomizer.nextInt(ptr + 1);
+			byte card = mDeck[rand];
+			mDeck[rand] = mDeck[ptr];
+			mDeck[ptr] = card;
 		}
+
+		mNextCard = 0;
+		mRemaining = CardSet.FULL_DECK;
+	}
+
+	/**
+	 * @return The cards which have not been dealt yet as a {@link CardSet}.
+	 */
+	public int getRemaining() {
+		return mRemaining;
 	}
 	
 	/**
@@ -68,12 +75,30 @@ public class DeckOfCards {
 	 * not that many cards remaining.
 	 */
 	public Card[] deal(int howMany) {
+		howMany = Math.min(howMany, mDeck.length - mNextCard);
 		Card[] dealtCards = new Card[howMany];
 		
 		for (int ptr = 0; ptr < howMany; ptr++) {
-			dealtCards[ptr] = mDeck.remove(0);
+			dealtCards[ptr] = Card.get(mDeck[mNextCard++]);
+			mRemaining = CardSet.remove(mRemaining, dealtCards[ptr]);
 		}
 		
 		return dealtCards;
 	}
+
+	/**
+	 * Deal a number of cards from the deck without allocating.
+	 * @param howMany The number of cards you would like.
+	 * @return The dealt cards as a {@link CardSet}, holding fewer than
+	 * howMany cards if there are not that many remaining.
+	 */
+	public int dealSet(int howMany) {
+		int dealt = CardSet.EMPTY;
+		for (int limit = Math.min(mNextCard + howMany, mDeck.length); mNextCard < limit;
+				mNextCard++) {
+			dealt = CardSet.add(dealt, mDeck[mNextCard]);
+		}
+		mRemaining &= ~dealt;
+		return dealt;
+	}
 }
@@ -4,13 +4,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.randomsymphony.games.ochre.CardTableActivity;
+import com.randomsymphony.games.ochre.bot.Action;
+import com.randomsymphony.games.ochre.bot.Bot;
+import com.randomsymphony.games.ochre.bot.Observation;
 import com.randomsymphony.games.ochre.logic.GameState.Phase;
 import com.randomsymphony.games.ochre.model.Card;
 import com.randomsymphony.games.ochre.model.Play;
@@ -26,37 +28,39 @@ import com.randomsymphony.games.ochre.ui.TrumpDisplay;
 
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.Fragment;
-import android.util.Base64;
 import android.util.JsonWriter;
 import android.util.Log;
 
-public class GameEngine extends Fragment implements StateListener {
+/**
+ * Connects the {@link RulesEngine} to the displays and to the
+ * {@link GameStreamer} which shares state with other devices. All game rules
+ * live in the {@link RulesEngine}, this class only translates UI actions into
+ * engine actions and engine events into display updates.
+ */
+public class GameEngine extends Fragment implements StateListener, RulesEngine.Listener {
 
-	public static final int NUMBER_OF_TRICKS = 5;
-	private static final int WIN_THRESHOLD = 3;
-	// number of points for making the round normally
-	private static final int NUM_POINTS_MAKE = 1;
-	private static final int NUM_POINTS_ALL_5 = 2;
-	private static final int NUM_POINTS_ALL_5_ALONE = 4;
-	private static final int NUM_POINTS_SET = 2;
-	
 	private static final String TAG_TRUMP_DISPLAY = "trump_display";
-	private static final String TAG_GAME_STATE = "game_state";
 	private static final String TAG_SCORE_DISPLAY = "score_board";
 	private static final String TAG_TABLE_DISPLAY = "table_display";
 	private static final String ARG_URL_BASE = "url_base";
 	
-	public static GameEngine getInstance(String trumpDisplayTag, String gameStateTag,
+	/**
+	 * @param initialState The state the engine starts with once it is
+	 * created, {@link GameState} is not a Fragment so it can't be found by tag.
+	 */
+	public static GameEngine getInstance(String trumpDisplayTag, GameState initialState,
 			String scoreBoardTag, String tableDisplayTag, Uri uriBase) {
 		Bundle args = new Bundle();
 		args.putString(TAG_TRUMP_DISPLAY, trumpDisplayTag);
-		args.putString(TAG_GAME_STATE, gameStateTag);
 		args.putString(TAG_SCORE_DISPLAY, scoreBoardTag);
 		args.putString(TAG_TABLE_DISPLAY, tableDisplayTag);
 		args.putParcelable(ARG_URL_BASE, uriBase);
 		GameEngine instance = new GameEngine();
 		instance.setArguments(args);
+		instance.mInitialState = initialState;
 		return instance;
 	}
 	
@@ -66,6 +70,12 @@ public class GameEngine extends Fragment implements StateListener {
 	 */
 	private HashMap<Integer, PlayerDisplay> mPlayerDisplays = new HashMap<Integer, PlayerDisplay>();
 	private GameState mState;
+	private GameState mInitialState;
+	private final RulesEngine mRules = new RulesEngine();
+	/**
+	 * Actions taken since the current game was installed, for undo and redo.
+	 */
+	private CommandLog mCommandLog;
 	private TrumpDisplay mTrumpDisplay;
 	private ScoreBoard mScoreBoard;
 	private ArrayList<StateListener> mStateListeners = new ArrayList<StateListener>();
@@ -73,12 +83,38 @@ public class GameEngine extends Fragment implements StateListener {
     // TODO (have another class that listens to game state changes from
     // a GameState object and GameEngine had upload and refreshes.
 	private GameStreamer mStateShuttle;
-    private ArrayList<byte[]> mOutboundStateHashes = new ArrayList<byte[]>();
-    private byte[] mLastInboundHash = new byte[0];
+    /**
+     * Fingerprints of states we uploaded which the server has not echoed
+     * back yet, see {@link GameState#getFingerprint()}.
+     */
+    private ArrayList<Long> mOutboundFingerprints = new ArrayList<Long>();
+    private long mLastInboundFingerprint;
+    /**
+     * Rejects impossible states pushed by other devices.
+     */
+    private final StateValidator mValidator = new StateValidator();
     /**
      * Tracks whether someone has currently set the 'updates blocked' bit
      */
     private boolean mBlocked = false;
+    /**
+     * Indexed by seat, the computer players, null for people.
+     */
+    private final Bot[] mBots = new Bot[Round.NUMBER_OF_SEATS];
+    /**
+     * Bots think here, their moves are posted back to the main thread.
+     */
+    private ExecutorService mBotThread;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final SplitMix64 mBotRandom = new SplitMix64(System.nanoTime());
+    /**
+     * Set in {@link #onDestroy()}, after which no bot moves are made.
+     */
+    private boolean mDestroyed = false;
+
+	public GameEngine() {
+		mRules.registerListener(this);
+	}
 
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
@@ -91,8 +127,8 @@ public class GameEngine extends Fragment implements StateListener {
         mScoreBoard = (ScoreBoard) getFragmentManager().findFragmentByTag(
                 args.getString(TAG_SCORE_DISPLAY));
         mBaseUri = args.getParcelable(ARG_URL_BASE);
-		setGameState((GameState) getFragmentManager().findFragmentByTag(
-                args.getString(TAG_GAME_STATE)));
+		setGameState(mInitialState);
+		mInitialState = null;
 	}
 
     @Override
@@ -111,6 +147,29 @@ public class GameEngine extends Fragment implements StateListener {
     public void onDestroy() {
         super.onDestroy();
         mStateShuttle.stop();
+        mDestroyed = true;
+        mMainHandler.removeCallbacksAndMessages(null);
+        if (mBotThread != null) {
+            mBotThread.shutdownNow();
+            mBotThread = null;
+        }
+        for (int seat = 0; seat < mBots.length; seat++) {
+            if (mBots[seat] != null) {
+                mBots[seat].shutdown();
+                mBots[seat] = null;
+            }
+        }
+    }
+
+    /**
+     * Let a computer play a seat, its moves go through the same methods as
+     * a person's. Bots still seated are shut down in {@link #onDestroy()}, a
+     * bot taken off its seat here is the caller's to shut down.
+     * @param bot The bot or null to hand the seat back to a person.
+     */
+    public void setBot(int seat, Bot bot) {
+        mBots[seat] = bot;
+        scheduleBotMove();
     }
 
 	public void registerStateListener(StateListener listener) {
@@ -131,16 +190,29 @@ public class GameEngine extends Fragment implements StateListener {
 	}
 	
 	public void setGameState(GameState state) {
-        setGameState(state, true);
+        setGameState(state, true, true);
 	}
 
-    private void setGameState(GameState state, boolean pushUpdate) {
+    /**
+     * @param restartLog Start a new {@link CommandLog} from this state, false
+     * when the state was rebuilt from the current log.
+     */
+    private void setGameState(GameState state, boolean pushUpdate, boolean restartLog) {
         boolean unblock = blockUpdates();
 
         Log.d("JMATT", "Game has id: " + state.getGameId().toString());
         GameState oldState = mState;
         mState = state;
         mState.setPhaseListener(this);
+        mRules.setGameState(mState);
+
+        if (restartLog) {
+            if (mCommandLog != null) {
+                mRules.unregisterListener(mCommandLog);
+            }
+            mCommandLog = new CommandLog(mState.snapshot());
+            mRules.registerListener(mCommandLog);
+        }
 
         updateTrumpDisplay();
 
@@ -163,6 +235,8 @@ public class GameEngine extends Fragment implements StateListener {
 
         onStateChange(mState.getGamePhase());
 
+        scheduleBotMove();
+
         updateLocalStateHash();
 
         if (oldState == null || !state.getGameId().equals(oldState.getGameId())) {
@@ -175,47 +249,48 @@ public class GameEngine extends Fragment implements StateListener {
             mStateShuttle.startPolling(new GameStreamer.GameUpdateListener() {
                 @Override
                 public void onNewState(String jsonState) {
+                    if (jsonState == null) {
+                        return;
+                    }
+                    GameState received;
                     try {
-                        if (jsonState == null) {
-                            return;
-                        }
-                        MessageDigest digest = MessageDigest.getInstance("SHA-1");
-                        byte[] strBytes = jsonState.getBytes();
-                        digest.update(strBytes, 0, strBytes.length);
-                        byte[] hash = digest.digest();
-
-                        boolean matchesInbound = false;
-                        if (Arrays.equals(hash, mLastInboundHash)) {
-                            matchesInbound = true;
-                        } else {
-                            Log.d("JMATT", "New hash " + Base64.encodeToString(hash, 0) +
-                                    " old hash " + Base64.encodeToString(mLastInboundHash, 0));
-                        }
+                        received = CardTableActivity.fromReader(new StringReader(jsonState));
+                        mValidator.validate(received);
+                    } catch (IllegalArgumentException e) {
+                        Log.w("JMATT", "Ignoring received state. " + e.getMessage());
+                        return;
+                    }
+                    long fingerprint = received.getFingerprint();
+
+                    boolean matchesInbound = false;
+                    if (fingerprint == mLastInboundFingerprint) {
+                        matchesInbound = true;
+                    } else {
+                        Log.d("JMATT", "New fingerprint " + Long.toHexString(fingerprint) +
+                                " old fingerprint " + Long.toHexString(mLastInboundFingerprint));
+                    }
 
-                        mLastInboundHash = hash;
-
-                        // see if this hash matches any we sent previously.
-                        boolean matchesOutbound = false;
-                        for (int ptr = 0, limit = mOutboundStateHashes.size();
-                             ptr < limit;
-                             ptr++) {
-                            if (Arrays.equals(hash, mOutboundStateHashes.get(ptr))) {
-                                for (; ptr > -1; ptr--) {
-                                    mOutboundStateHashes.remove(ptr);
-                                }
-                                matchesOutbound = true;
-                                limit = mOutboundStateHashes.size();
+                    mLastInboundFingerprint = fingerprint;
+
+                    // see if this fingerprint matches any we sent previously.
+                    boolean matchesOutbound = false;
+                    for (int ptr = 0, limit = mOutboundFingerprints.size();
+                         ptr < limit;
+                         ptr++) {
+                        if (fingerprint == mOutboundFingerprints.get(ptr)) {
+                            for (; ptr > -1; ptr--) {
+                                mOutboundFingerprints.remove(ptr);
                             }
+                            matchesOutbound = true;
+                            limit = mOutboundFingerprints.size();
                         }
+                    }
 
-                        if (matchesInbound || matchesOutbound) {
-                            return;
-                        }
-                    } catch (NoSuchAlgorithmException e) {
-                        e.printStackTrace();
+                    if (matchesInbound || matchesOutbound) {
+                        return;
                     }
                     Log.d("JMATT", "State changed on server.");
-                    setGameState(CardTableActivity.fromReader(new StringReader(jsonState)), false);
+                    setGameState(received, false, true);
                 }
             });
 
@@ -238,7 +313,7 @@ public class GameEngine extends Fragment implements StateListener {
         boolean unblock = blockUpdates();
 
         setTeamNames();
-		newRound();
+		mRules.startGame();
 		((CardTableActivity) getActivity()).allowNewGame(false);
 
         if (unblock) {
@@ -250,35 +325,7 @@ public class GameEngine extends Fragment implements StateListener {
 	public void newRound() {
         boolean unblock = blockUpdates();
 
-        mState.getDeck().shuffle();
-    	Player[] players = mState.getPlayers();
-    	for (int ptr = 0; ptr < players.length; ptr++) {
-    		players[ptr].discardHand();
-    	}
-    	
-        GamePlayUtils.dealHand(mState.getDeck(), mState.getPlayers());
-        
-        // deal the possible trump card
-        Card possibleTrump = mState.getDeck().deal(1)[0];
-        mCardTable.setTrumpCard(possibleTrump);
-
-        redrawAllPlayers();
-
-        Round newRound = mState.createNewRound();
-        for (PlayerDisplay display : mPlayerDisplays.values()) {
-			display.setDealer(false);
-			display.setMaker(false);
-		}
-		
-		getPlayerDisplay(newRound.dealer).setDealer(true);
-		// speculatively set the trump
-		newRound.trump = possibleTrump;
-        mState.setGamePhase(GameState.Phase.ORDER_UP);
-
-        setPlayerDisplayEnabled(getNextPlayer(), true);
-		
-		mTrumpDisplay.setToOrderUpMode();
-		mCardTable.clearPlayedCards();
+        mRules.newRound();
 
         if (unblock) {
             pushStateUpdate();
@@ -289,59 +336,49 @@ public class GameEngine extends Fragment implements StateListener {
 	public void playCard(Player player, Card card) {
         boolean unblock = blockUpdates();
 
-        Round currentRound = mState.getCurrentRound();
-        currentRound.addPlay(new Play(player, card));
-        Log.d("JMATT", player.getName() + " played " + card.toString());
+        mRules.playCard(player, card);
 
-        player.discardCard(card);
-        // this is wasteful, would be better to just redraw one player
-        redrawAllPlayers();
-
-        if (currentRound.totalPlays % currentRound.getActivePlayerCount() == 1) {
-            mCardTable.clearPlayedCards();
+        if (unblock) {
+            pushStateUpdate();
+            unblockUpdates();
         }
+    }
 
-        mCardTable.playCard(card, player);
+    /**
+     * Take back the last action by rebuilding the game from the command log.
+     * @return false if there was nothing to undo.
+     */
+    public boolean undo() {
+        GameState previous = mCommandLog.undo();
+        if (previous == null) {
+            return false;
+        }
+        setGameState(previous, true, false);
+        return true;
+    }
 
-        //oops, need to add the card first. this logic is a little wrong
+    /**
+     * Apply the last action undone again.
+     * @return false if there was nothing to redo.
+     */
+    public boolean redo() {
+        boolean unblock = blockUpdates();
 
-        if (currentRound.totalPlays > 0 && currentRound.isCurrentTrickComplete()) {
-            finishTrick();
-        }
+        boolean redone = mCommandLog.redo(mRules);
 
-        activateNextPlayerDisplay();
         if (unblock) {
             pushStateUpdate();
             unblockUpdates();
         }
+        return redone;
     }
 
     /**
-     * Called when a trick has been completed.
+     * @return The cards the player may play right now as a
+     * {@link com.randomsymphony.games.ochre.model.CardSet}.
      */
-    private void finishTrick() {
-        Round currentRound = mState.getCurrentRound();
-        Play winningPlay = scoreTrick(currentRound.getLastCompletedTrick(),
-                currentRound.trump.getSuit());
-        int totalTricks = currentRound.addCapturedTrick(winningPlay.player);
-        getPlayerDisplay(winningPlay.player).setTrickCount(totalTricks);
-        Log.d("JMATT", "And the winner is: " + winningPlay.card.toString());
-
-        if (isRoundComplete()) {
-            scoreRound();
-            // time for a new round
-            newRound();
-        } else {
-            Log.d("JMATT", "Current trick is complete, starting new one.");
-            // TODO we should actually only do this after trump is set and the
-            // maker decides to go alone or not
-            currentRound.tricks.add(new Play[currentRound.getActivePlayerCount()]);
-        }
-    }
-
-    private boolean isRoundComplete() {
-        Round currentRound = mState.getCurrentRound();
-        return currentRound.totalPlays == currentRound.getActivePlayerCount() * NUMBER_OF_TRICKS;
+    public int getLegalMoves(Player player) {
+        return mRules.getLegalMoves(player);
     }
 
     /**
@@ -353,16 +390,26 @@ public class GameEngine extends Fragment implements StateListener {
             display.setActive(false);
         }
 
-        setPlayerDisplayEnabled(getNextPlayer(), true);
+        Player next = mRules.getNextPlayer();
+        if (next != null) {
+            setPlayerDisplayEnabled(next, true);
+        }
     }
 
+	/**
+	 * A card was selected in a hand, in pick trump mode its suit becomes the
+	 * suit to name unless it was turned down.
+	 */
 	public void setCurrentCandidateTrump(Card card) {
 		// do nothing unless we're in "pick trump" phase
 		if (mState.getGamePhase() != GameState.Phase.PICK_TRUMP) {
 			return;
 		}
-		// card is ignored for now
-		mTrumpDisplay.enableSetTrump();
+		if (card == null || card.getSuit() == mState.getCurrentRound().turnUp.getSuit()) {
+			mTrumpDisplay.disableSetTrump();
+		} else {
+			mTrumpDisplay.selectSuit(card.getSuit());
+		}
 	}
 	
 	/**
@@ -371,30 +418,7 @@ public class GameEngine extends Fragment implements StateListener {
 	public void pass() {
         boolean unblock = blockUpdates();
 
-		if (mState.getGamePhase() != GameState.Phase.ORDER_UP &&
-				mState.getGamePhase() != GameState.Phase.PICK_TRUMP) {
-			throw new IllegalStateException("State is invalid for this operation.");
-		}
-		
-		Round currentRound = mState.getCurrentRound();
-		currentRound.trumpPasses++;
-		
-		// check if enough people have passed that we changed phases
-		if (currentRound.trumpPasses == currentRound.getActivePlayerCount()) {
-			if (mState.getGamePhase() != GameState.Phase.ORDER_UP) {
-				throw new IllegalStateException("In the wrong phase to tranisition to PICK_TRUMP");
-			}
-			
-			mState.setGamePhase(GameState.Phase.PICK_TRUMP);
-			mTrumpDisplay.setToPickMode();
-		} else if (currentRound.trumpPasses == currentRound.getActivePlayerCount() * 2 - 1) {
-			// disable the pass button if the next player is the dealer and
-			// this is the 7th pass
-			mTrumpDisplay.disablePass();
-		}
-
-        enableNextTrumpPicker();
-		redrawAllPlayers();
+        mRules.pass();
 
         if (unblock) {
             pushStateUpdate();
@@ -403,49 +427,31 @@ public class GameEngine extends Fragment implements StateListener {
 	}
 
 	public void pushStateUpdate() {
-        String updateJson = stateToJsonString(mState);
-        if (updateJson != null) {
-            byte[] hash = hashFromJsonState(updateJson);
+        // the fingerprint is always current, only serialize what we'll send
+        long fingerprint = mState.getFingerprint();
 
-            if (Arrays.equals(mLastInboundHash, hash)) {
-                Log.d("JMATT", "Outbound matches inbound, not pushing!");
-                return;
-            }
+        if (fingerprint == mLastInboundFingerprint) {
+            Log.d("JMATT", "Outbound matches inbound, not pushing!");
+            return;
+        }
 
-            if (hash != null) {
-                for (byte[] outbound : mOutboundStateHashes) {
-                    if (Arrays.equals(outbound, hash)) {
-                        Log.d("JMATT", "matches other outbound, ignoring duplicate.");
-                        return;
-                    }
-                }
-                mOutboundStateHashes.add(hash);
-                mStateShuttle.uploadState(updateJson);
+        for (int ptr = 0, limit = mOutboundFingerprints.size(); ptr < limit; ptr++) {
+            if (fingerprint == mOutboundFingerprints.get(ptr)) {
+                Log.d("JMATT", "matches other outbound, ignoring duplicate.");
+                return;
             }
         }
-	}
 
-	private void updateLocalStateHash() {
         String updateJson = stateToJsonString(mState);
         if (updateJson != null) {
-            byte[] hash = hashFromJsonState(updateJson);
-            if (hash != null) {
-                mLastInboundHash = hash;
-            }
+            mOutboundFingerprints.add(fingerprint);
+            mStateShuttle.uploadState(updateJson);
         }
 	}
 
-    private byte[] hashFromJsonState(String state) {
-        try {
-            MessageDigest digester = MessageDigest.getInstance("SHA-1");
-            byte[] strBytes = state.getBytes();
-            digester.update(strBytes, 0, strBytes.length);
-            return digester.digest();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
+	private void updateLocalStateHash() {
+        mLastInboundFingerprint = mState.getFingerprint();
+	}
 
     private String stateToJsonString(GameState state) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
@@ -468,61 +474,28 @@ public class GameEngine extends Fragment implements StateListener {
 	 * @param alone Maker is going alone.
 	 */
 	public void setTrump(boolean alone) {
+        // in pick trump mode the maker names any suit but the turned down one
+        Card selected = null;
+        if (mState.getGamePhase() == GameState.Phase.PICK_TRUMP) {
+            int suit = mTrumpDisplay.getSelectedSuit();
+            if (suit < 0) {
+                Log.w("JMATT", "No suit selected to name.");
+                return;
+            }
+            selected = Card.get(suit, Card.VALUE_NINE);
+        }
+        setTrump(alone, selected);
+	}
+
+	/**
+	 * @param trumpCard A card of the suit to name in pick trump mode, ignored
+	 * when ordering up.
+	 */
+	public void setTrump(boolean alone, Card trumpCard) {
         boolean unblock = blockUpdates();
 
-		if (mState.getGamePhase() != GameState.Phase.ORDER_UP &&
-				mState.getGamePhase() != GameState.Phase.PICK_TRUMP) {
-			throw new IllegalStateException("State is invalid for this operation.");
-		}
+        mRules.setTrump(alone, trumpCard);
 
-		Round currentRound = mState.getCurrentRound();
-
-		// the trump setters position from the dealer, the first person to have
-		// an option to set trump is one position from the dealer
-		int positionFromDealer = currentRound.trumpPasses + 1;
-		Player maker = getNthPlayerInTrick(currentRound.dealer, positionFromDealer,
-				currentRound);
-		
-		// set alone-ness after we compute which player set trump
-		currentRound.alone = alone;
-		currentRound.tricks.add(new Play[currentRound.getActivePlayerCount()]);
-		
-		// disable display of order-er
-		setPlayerDisplayEnabled(maker, false);
-		
-		// set trump
-		if (mState.getGamePhase() == GameState.Phase.ORDER_UP) {
-            // trump has already been set optimistically to the dealt trump
-			// card's suit, don't need to do anything else if the dealer's
-			// partner is going alone
-
-            if (!currentRound.alone || (currentRound.alone && currentRound.trumpPasses != 1)) {
-				// enable display of dealer to pick a discard card
-				currentRound.dealer.addCard(currentRound.trump);
-				PlayerDisplay display = getPlayerDisplay(currentRound.dealer);
-				display.showDiscardCard();
-				setPlayerDisplayEnabled(currentRound.dealer, true);
-                mState.setGamePhase(Phase.DEALER_DISCARD);
-			} else {
-				startRound();
-			}
-		} else {
-			currentRound.trump = getPlayerDisplay(maker).getSelectedCard();
-			Log.d("JMATT", "trump is " + getPlayerDisplay(maker).getSelectedCard().toString());
-			mState.setGamePhase(GameState.Phase.PLAY);
-			startRound();
-		}
-		
-		// set maker
-		currentRound.maker = maker;
-		getPlayerDisplay(currentRound.maker).setMaker(true);
-		Log.d("JMATT", "Maker is: " + maker.getName());
-		
-		// disable trump display
-		mTrumpDisplay.setToPlayMode();
-		
-		redrawAllPlayers();
-		mCardTable.setTrumpSuit(currentRound.trump.getSuit());
         if (unblock) {
             pushStateUpdate();
             unblockUpdates();
@@ -532,14 +505,7 @@ public class GameEngine extends Fragment implements StateListener {
 	public void discardCard(Card card) {
         boolean unblock = blockUpdates();
 
-		Round currentRound = mState.getCurrentRound();
-		currentRound.dealer.removeCard(card);
-		PlayerDisplay dealer = getPlayerDisplay(currentRound.dealer);
-        dealer.hideDiscardCard();
-		dealer.redraw();
-		
-		setPlayerDisplayEnabled(currentRound.dealer, false);
-		startRound();
+        mRules.discardCard(card);
 
         if (unblock) {
             pushStateUpdate();
@@ -547,6 +513,153 @@ public class GameEngine extends Fragment implements StateListener {
         }
 	}
 
+    @Override
+    public void onRoundDealt(Round round, Card possibleTrump) {
+        mCardTable.setTrumpCard(possibleTrump);
+        redrawAllPlayers();
+
+        for (PlayerDisplay display : mPlayerDisplays.values()) {
+            display.setDealer(false);
+            display.setMaker(false);
+        }
+        getPlayerDisplay(round.dealer).setDealer(true);
+
+        mTrumpDisplay.setToOrderUpMode();
+        mCardTable.clearPlayedCards();
+    }
+
+    @Override
+    public void onTrumpPassed(Round round, Player passer) {
+        if (mState.getGamePhase() == GameState.Phase.PICK_TRUMP &&
+                round.trumpPasses == round.getActivePlayerCount()) {
+            mTrumpDisplay.setToPickMode(round.turnUp.getSuit());
+        } else if (!mRules.canPass()) {
+            // disable the pass button if the next player is the dealer and
+            // this is the 7th pass
+            mTrumpDisplay.disablePass();
+        }
+        redrawAllPlayers();
+    }
+
+    @Override
+    public void onTrumpSet(Round round, Player maker) {
+        if (mState.getGamePhase() == GameState.Phase.DEALER_DISCARD) {
+            // enable display of dealer to pick a discard card
+            getPlayerDisplay(round.dealer).showDiscardCard();
+        }
+
+        getPlayerDisplay(maker).setMaker(true);
+        Log.d("JMATT", "Maker is: " + maker.getName());
+
+        // disable trump display
+        mTrumpDisplay.setToPlayMode();
+
+        redrawAllPlayers();
+        mCardTable.setTrumpSuit(round.trump.getSuit());
+    }
+
+    @Override
+    public void onDealerDiscarded(Round round, Player dealer, Card card) {
+        PlayerDisplay display = getPlayerDisplay(dealer);
+        display.hideDiscardCard();
+        display.redraw();
+    }
+
+    @Override
+    public void onCardPlayed(Round round, Play play) {
+        Log.d("JMATT", play.player.getName() + " played " + play.card.toString());
+        // this is wasteful, would be better to just redraw one player
+        redrawAllPlayers();
+
+        if (round.totalPlays % round.getActivePlayerCount() == 1) {
+            mCardTable.clearPlayedCards();
+        }
+
+        mCardTable.playCard(play.card, play.player);
+    }
+
+    @Override
+    public void onTrickComplete(Round round, Play winningPlay, int tricksCaptured) {
+        getPlayerDisplay(winningPlay.player).setTrickCount(tricksCaptured);
+        Log.d("JMATT", "And the winner is: " + winningPlay.card.toString());
+    }
+
+    @Override
+    public void onRoundScored(Round round, int teamOneScore, int teamTwoScore) {
+        mScoreBoard.setTeamOneScore(teamOneScore);
+        mScoreBoard.setTeamTwoScore(teamTwoScore);
+    }
+
+    @Override
+    public void onNextPlayer(Player player) {
+        activateNextPlayerDisplay();
+        scheduleBotMove();
+    }
+
+    /**
+     * If a bot is to act, let it think on the bot thread. Its move is only
+     * made if nothing changed in the meantime, otherwise the new state
+     * schedules another decision.
+     */
+    private void scheduleBotMove() {
+        if (mState == null || mDestroyed) {
+            return;
+        }
+        Player next = mRules.getNextPlayer();
+        if (next == null || mBots[next.getSeat()] == null) {
+            return;
+        }
+        final Bot bot = mBots[next.getSeat()];
+        final Observation observation = new Observation(mState, next.getSeat());
+        final SplitMix64 random = mBotRandom.split();
+        final long fingerprint = mState.getFingerprint();
+        if (mBotThread == null) {
+            mBotThread = Executors.newSingleThreadExecutor();
+        }
+        mBotThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Action action;
+                try {
+                    action = bot.decide(observation, random);
+                } catch (RuntimeException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // shut down by onDestroy, a bot shut down under us
+                        // may also refuse new work, drop the move
+                        return;
+                    }
+                    throw e;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mDestroyed && isAdded() && mState.getFingerprint() == fingerprint) {
+                            applyBotAction(action);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyBotAction(Action action) {
+        Log.d("JMATT", mRules.getNextPlayer().getName() + " decided to " + action);
+        switch (action.getType()) {
+            case Action.TYPE_PASS:
+                pass();
+                break;
+            case Action.TYPE_SET_TRUMP:
+                setTrump(action.isAlone(), action.getCard());
+                break;
+            case Action.TYPE_DISCARD:
+                discardCard(action.getCard());
+                break;
+            case Action.TYPE_PLAY:
+                playCard(mRules.getNextPlayer(), action.getCard());
+                break;
+        }
+    }
+
     @Override
     public void onStateChange(Phase newPhase) {
 		for (int ptr = 0, limit = mStateListeners.size(); ptr < limit; ptr++) {
@@ -554,196 +667,19 @@ public class GameEngine extends Fragment implements StateListener {
 		}
 	}
 	
-	private void startRound() {
-        mState.setGamePhase(GameState.Phase.PLAY);
-		Player roundStarter = getNextPlayer();
-		setPlayerDisplayEnabled(roundStarter, true);
-	}
-	
 	private PlayerDisplay getPlayerDisplay(Player forPlayer) {
-		for (PlayerDisplay playerDisplay : mPlayerDisplays.values()) {
-			if (playerDisplay.getPlayer() == forPlayer) {
-				return playerDisplay;
-			}
+		// displays are keyed by seat
+		PlayerDisplay playerDisplay = mPlayerDisplays.get(forPlayer.getSeat());
+		if (playerDisplay == null || playerDisplay.getPlayer() != forPlayer) {
+			throw new RuntimeException("We shouldn't have gotten here.");
 		}
-		
-		throw new RuntimeException("We shouldn't have gotten here.");
+		return playerDisplay;
 	}
 	
 	private void setPlayerDisplayEnabled(Player player, boolean enabled) {
 		getPlayerDisplay(player).setActive(enabled);
 	}
 	
-	private Player getNextPlayer() {
-		Round currentRound = mState.getCurrentRound();
-
-        // while in dealer discard, the next player is always the dealer
-        if (mState.getGamePhase() == Phase.DEALER_DISCARD) {
-            return currentRound.dealer;
-        }
-
-		if (currentRound.isCurrentTrickComplete() && 
-				currentRound.totalPlays >= currentRound.getActivePlayerCount()) {
-			// the next player is the winner of the last trick
-			return scoreTrick(currentRound.getLastCompletedTrick(),
-					mState.getCurrentRound().trump.getSuit()).player;
-		} else {
-			// next player is the winner of the previous trick, plus number of
-			// plays in this one
-			if (currentRound.totalPlays < currentRound.getActivePlayerCount()) {
-				Player roundStarter = currentRound.dealer;
-				int playOffset = currentRound.totalPlays + 1;
-				
-				// deal with the case that the dealer is sitting out
-				if (currentRound.alone && currentRound.maker != currentRound.dealer) {
-					Player[] allPlayers = mState.getPlayers();
-					int dealerOffset = -1;
-					int makerOffset = -1;
-					
-					for (int ptr = 0; ptr < allPlayers.length; ptr++) {
-						if (allPlayers[ptr] == currentRound.maker) {
-							makerOffset = ptr;
-						} else if (allPlayers[ptr] == currentRound.dealer) {
-							dealerOffset = ptr;
-						}
-					}
-					
-					// dealer's partner is going alone, treat player to left 
-					// of dealer as the anchor point and produce an offset from there
-					if (dealerOffset  % (allPlayers.length / 2) ==
-							makerOffset % (allPlayers.length / 2)) {
-						roundStarter = allPlayers[(dealerOffset + 1) % allPlayers.length];
-						playOffset--;
-					}
-				}
-				
-				// we're still in the first trick, offset is from dealer's left
-				return getNthPlayerInTrick(roundStarter, playOffset, currentRound);
-			} else {
-				Play lastTrickWinner = scoreTrick(currentRound.getLastCompletedTrick(),
-						currentRound.trump.getSuit());
-				return getNthPlayerInTrick(lastTrickWinner.player, 
-						currentRound.totalPlays % currentRound.getActivePlayerCount(),
-                        currentRound);
-			}
-		}
-	}
-	
-	/**
-	 * Returns the nth player from the start Player in a round. In doing this
-	 * we consider if any players are going alone.
-	 * @param start The player started the Trick
-	 * @param seatsLeft How many seats to the left the desired player sits
-	 * @param round The active round.
-	 * @return
-	 */
-	private Player getNthPlayerInTrick(Player start, int seatsLeft, Round round) {
-		ArrayList<Player> activePlayers = new ArrayList<Player>();
-		Player[] players = mState.getPlayers();
-		for (int ptr = 0; ptr < players.length; ptr++) {
-			activePlayers.add(players[ptr]);
-		}
-		
-		if (round.alone) {
-			for (int loneWolf = 0; loneWolf < activePlayers.size(); loneWolf++) {
-				if (activePlayers.get(loneWolf) == round.maker) {
-					activePlayers.remove((loneWolf + 2) % activePlayers.size());
-					break;
-				}
-			}
-		}
-		
-		// find offset of the starter
-		for (int ptr = 0; ptr < activePlayers.size(); ptr++) {
-			if (activePlayers.get(ptr) == start) {
-				return activePlayers.get((ptr + seatsLeft) % activePlayers.size());
-			}
-		}
-		
-		// dealer's partner must be going alone, return the player "behind"
-		// the loaner
-		for (int loneWolf = 0; loneWolf < activePlayers.size(); loneWolf++) {
-			if (activePlayers.get(loneWolf) == round.maker) {
-				return activePlayers.get((loneWolf + 2) % activePlayers.size());
-			}
-		}
-		
-		throw new RuntimeException("We should never have gotten here.");
-	}
-	
-	private Play scoreTrick(Play[] trick, int trump) {
-		Play winningPlay = trick[0];
-		for (int ptr = 1; ptr < trick.length; ptr++) {
-			if (GamePlayUtils.isGreater(trick[ptr].card, winningPlay.card,
-					trick[0].card.getSuit(), trump)) {
-				winningPlay = trick[ptr];
-			}
-		}
-		
-		return winningPlay;
-	}
-	
-	private void scoreRound() {
-		// TODO the round is actually tracking the number of tricks captured
-		// by each player, look at that which will allow us to do less work here
-		Round finishedRound = mState.getCurrentRound();
-		
-		HashMap<Player, Integer> winCount = new HashMap<Player, Integer>();
-		// for all the tricks in the round, determine the winner
-		for (int ptr = 0, limit = finishedRound.tricks.size(); ptr < limit; ptr++) {
-			Play[] trick = finishedRound.tricks.get(ptr);
-			Play winningPlay = scoreTrick(trick, finishedRound.trump.getSuit());
-			if (winCount.containsKey(winningPlay.player)) {
-				winCount.put(winningPlay.player, winCount.get(winningPlay.player) + 1);
-			} else {
-				winCount.put(winningPlay.player, 1);
-			}
-		}
-
-		// we've got the totals, add them up for the partners
-		Player[] players = mState.getPlayers();
-		int makerPosition = -1;
-		int[] scores = new int[players.length / 2];
-		for (int ptr = 0; ptr < players.length; ptr++) {
-			if (winCount.containsKey(players[ptr])) {
-				scores[ptr % 2] += winCount.get(players[ptr]);
-			}
-			if (players[ptr] == finishedRound.maker) {
-				makerPosition = ptr;
-			}
-		}
-
-		if (makerPosition == -1) {
-			throw new RuntimeException("Scoring error, maker not found.");
-		}
-		
-		// determine position of the maker
-		boolean wasSet = false;
-		if (scores[makerPosition % 2] < WIN_THRESHOLD) {
-			wasSet = true;
-		}
-		
-		if (!wasSet) {
-			int numberOfPoints;
-			// check how many points the winning team got
-			if (scores[makerPosition % 2] == NUMBER_OF_TRICKS) {
-				if (finishedRound.alone) {
-					numberOfPoints = NUM_POINTS_ALL_5_ALONE;
-				} else {
-					numberOfPoints = NUM_POINTS_ALL_5;
-				}
-			} else {
-				numberOfPoints = NUM_POINTS_MAKE;
-			}
-			mState.addPoints(players[makerPosition % 2], numberOfPoints);
-		} else {
-			mState.addPoints(players[(makerPosition + 1) % 2], NUM_POINTS_SET);
-		}
-		
-		mScoreBoard.setTeamOneScore(mState.getPointsForPlayer(players[0]));
-		mScoreBoard.setTeamTwoScore(mState.getPointsForPlayer(players[1]));
-	}
-	
 	private void redrawAllPlayers() {
 		for (PlayerDisplay display : mPlayerDisplays.values()) {
 			// this is wasteful, would be better to just redraw one player
@@ -766,10 +702,6 @@ public class GameEngine extends Fragment implements StateListener {
         if (activeRound != null) {
             GameState.Phase currentPhase = mState.getGamePhase();
             switch (currentPhase) {
-                case PICK_TRUMP:
-                case ORDER_UP:
-                    enableNextTrumpPicker();
-                    break;
                 case DEALER_DISCARD:
                     PlayerDisplay display = getPlayerDisplay(activeRound.dealer);
                     display.showDiscardCard();
@@ -783,13 +715,8 @@ public class GameEngine extends Fragment implements StateListener {
     }
 
     private void updateScores() {
-        Player[] players = mState.getPlayers();
-        int team1 = mState.getPointsForPlayer(players[0]);
-        team1 += mState.getPointsForPlayer(players[2]);
-        int team2 = mState.getPointsForPlayer(players[1]);
-        team2 += mState.getPointsForPlayer(players[3]);
-        mScoreBoard.setTeamOneScore(team1);
-        mScoreBoard.setTeamTwoScore(team2);
+        mScoreBoard.setTeamOneScore(mState.getTeamPoints(0));
+        mScoreBoard.setTeamTwoScore(mState.getTeamPoints(1));
     }
 
     /**
@@ -802,31 +729,29 @@ public class GameEngine extends Fragment implements StateListener {
         // redraw should be automatic
         GameState.Phase phase = mState.getGamePhase();
         boolean makerSet = phase == Phase.PLAY || phase == Phase.DEALER_DISCARD;
-        String makerId = activeRound == null ? null : activeRound.maker.getId();
-        String dealerId = activeRound == null ? null : activeRound.dealer.getId();
+        int makerSeat = activeRound == null ? Player.NO_SEAT : activeRound.getMakerSeat();
+        int dealerSeat = activeRound == null ? Player.NO_SEAT : activeRound.getDealerSeat();
 
         for (int ptr = 0, limit = players.length; ptr < limit; ptr++) {
             Player target = players[ptr];
             PlayerDisplay display = mPlayerDisplays.get(ptr);
             display.setPlayer(target);
             if (activeRound != null) {
-                // value may be null, beware auto-unboxing with null pointers!
-                Integer trickCount = activeRound.mCapturedTrickCount.get(target);
+                int trickCount = activeRound.getCapturedTricks(ptr);
 
                 // the player may have no captured tricks, in which case the
-                // player wasn't present in the map, and a null was returned
-                // for the count above.
-                if (trickCount != null) {
+                // display keeps whatever it shows by default
+                if (trickCount != 0) {
                     display.setTrickCount(trickCount);
                 }
 
-                if (makerSet && makerId.equals(display.getPlayer().getId())) {
+                if (makerSet && makerSeat == ptr) {
                     display.setMaker(true);
                 } else {
                     display.setMaker(false);
                 }
 
-                display.setDealer(dealerId.equals(display.getPlayer().getId()));
+                display.setDealer(dealerSeat == ptr);
             }
         }
     }
@@ -835,7 +760,10 @@ public class GameEngine extends Fragment implements StateListener {
         // configure trump display
         switch (mState.getGamePhase()) {
             case PICK_TRUMP:
-                mTrumpDisplay.setToPickMode();
+                mTrumpDisplay.setToPickMode(mState.getCurrentRound().turnUp.getSuit());
+                if (!mRules.canPass()) {
+                    mTrumpDisplay.disablePass();
+                }
                 break;
             case ORDER_UP:
                 mTrumpDisplay.setToOrderUpMode();
@@ -879,13 +807,7 @@ public class GameEngine extends Fragment implements StateListener {
 
         Play[] currentTrick = activeRound.getCurrentTrick();
         if (currentTrick != null) {
-            int playCount = 0;
-
-            for (int ptr = 0, limit = currentTrick.length; ptr < limit; ptr++) {
-                if (currentTrick[ptr] != null) {
-                    playCount++;
-                }
-            }
+            int playCount = activeRound.getCurrentTrickPlayCount();
 
             // if this is the first play of a new trick, clear old cards
             if (playCount == 1) {
@@ -922,24 +844,6 @@ public class GameEngine extends Fragment implements StateListener {
     }
 
 
-    private void enableNextTrumpPicker() {
-        Round currentRound = mState.getCurrentRound();
-        Player currentPlayer = getNthPlayerInTrick(currentRound.dealer,
-                currentRound.trumpPasses, currentRound);
-
-        // the next player is trumpPasses + 1 positions from the dealer because
-        // the first passer is one position left of the dealer
-        int positionFromDealer = currentRound.trumpPasses + 1;
-        Player nextPlayer = getNthPlayerInTrick(currentRound.dealer, positionFromDealer,
-                currentRound);
-
-        // disable current player
-        setPlayerDisplayEnabled(currentPlayer, false);
-
-        // activate the next player
-        setPlayerDisplayEnabled(nextPlayer, true);
-    }
-
     /**
      * Sets {@link #mBlocked} to true if it is not already. This can be used if
      * a code sequence is promising to push a state update after making various
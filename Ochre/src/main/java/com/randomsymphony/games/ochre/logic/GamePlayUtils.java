@@ -14,17 +14,13 @@ public class GamePlayUtils {
 	}
 	
 	public static void dealToPlayer(DeckOfCards cards, Player player) {
-		int numCards = player.getCurrentCards().length;
-		Card[] newCards;
+		int numCards = player.getCardCount();
 		if (numCards == 0) {
 			// no cards dealt yet
-			boolean twoCards = Math.round(Math.random()) == 0;
-			newCards = cards.deal(twoCards ? 2 : 3);
+			boolean twoCards = cards.getRandom().nextBoolean();
+			player.addCards(cards.dealSet(twoCards ? 2 : 3));
 		} else {
-			newCards = cards.deal(MAX_CARDS - numCards);
-		}
-		for (int ptr = 0; ptr < newCards.length; ptr++) {
-			player.addCard(newCards[ptr]);
+			player.addCards(cards.dealSet(MAX_CARDS - numCards));
 		}
 	}
 	
@@ -52,52 +48,11 @@ public class GamePlayUtils {
 						(trump == Card.SUIT_SPADES && card.getSuit() == Card.SUIT_CLUBS));
 	}
 	
+	/**
+	 * @return true if left beats right in a trick where leadSuit was led,
+	 * see {@link TrickEvaluator#isGreater(Card, Card, int, int)}.
+	 */
 	public static boolean isGreater(Card left, Card right, int leadSuit, int trump) {
-		boolean rightIsTrump = isTrump(trump, right);
-		boolean leftIsTrump = isTrump(trump, left);
-		
-		if (rightIsTrump || leftIsTrump) {
-			// special rules for trump
-			if (rightIsTrump != leftIsTrump) {
-				// only one card is trump
-				return leftIsTrump;
-			} else {
-				// they're both trump
-				if (left.getValue() == Card.VALUE_JACK || right.getValue() == Card.VALUE_JACK) {
-					// one of the cards is a jack, special rules apply
-					if (isRightBauer(trump, left)) {
-						// right bauer always wins
-						return true;
-					} else if (isRightBauer(trump, right)) {
-						// left loses to the right bauer on the right
-						return false;
-					} else {
-						// neither is the right bauer, only one card is a jack,
-						// whichever is the left bauer wins
-						return isLeftBauer(trump, left);
-					}
-				} else {
-					// no jacks, this is easy
-					return left.getValue() > right.getValue();
-				}
-			}
-		} else {
-			// no trump, easier scoring
-			
-			// if suits are the same, whichever is greater
-			if (left.getSuit() == right.getSuit()) {
-				return left.getValue() > right.getValue();
-			} else {
-				// suits are different
-				if (left.getSuit() == leadSuit || right.getSuit() == leadSuit) {
-					return left.getSuit() == leadSuit;
-				} else {
-					// neither is the lead suit, scoring doesn't really matter
-					// because whoever played the lead card will beat both of
-					// these cards
-					return true;
-				}
-			}
-		}
+		return TrickEvaluator.isGreater(left, right, leadSuit, trump);
 	}
 }
@@ -0,0 +1,143 @@
+package com.randomsymphony.games.ochre.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.model.RoundSnapshot;
+
+/**
+ * Moves back and forth through a recorded game. Building the replay plays the
+ * {@link CommandLog} once and keeps a {@link GameSnapshot} at the start of
+ * every round and after every trick, so any position is at most a trick's
+ * worth of actions (or a round of bidding) away from a checkpoint no matter
+ * how long the game is. Snapshots share their round history, so the
+ * checkpoints of a long game cost little more than the game itself.
+ *
+ * Position n is the game after the first n actions of the log, position 0 is
+ * the log's base.
+ */
+public class GameReplay {
+
+	private final CommandLog mLog;
+	private final ArrayList<GameSnapshot> mCheckpoints = new ArrayList<GameSnapshot>();
+	/**
+	 * The position of each checkpoint, ascending.
+	 */
+	private int[] mCheckpointPositions = new int[16];
+
+	/**
+	 * The game at {@link #mPosition}, stepping forward continues from it.
+	 */
+	private GameState mState;
+	private RulesEngine mEngine;
+	private GameSnapshot mCurrent;
+	private int mPosition;
+
+	/**
+	 * @param log The log to replay, actions recorded after this are not seen.
+	 */
+	public GameReplay(CommandLog log) {
+		mLog = log;
+		GameSnapshot base = log.getBase();
+		addCheckpoint(0, base);
+
+		mState = GameState.restore(base);
+		mEngine = new RulesEngine(mState);
+		GameSnapshot current = base;
+		for (int action = 0, limit = log.getPosition(); action < limit; action++) {
+			current = log.apply(mEngine, action);
+			if (isCheckpoint(log.getType(action), current)) {
+				addCheckpoint(action + 1, current);
+			}
+		}
+		mCurrent = current;
+		mPosition = log.getPosition();
+	}
+
+	/**
+	 * @return The number of actions in the replay, the last position.
+	 */
+	public int size() {
+		return mLog.getPosition();
+	}
+
+	public int getPosition() {
+		return mPosition;
+	}
+
+	public GameSnapshot getCurrent() {
+		return mCurrent;
+	}
+
+	public int getCheckpointCount() {
+		return mCheckpoints.size();
+	}
+
+	/**
+	 * Move to the game after the first position actions.
+	 */
+	public GameSnapshot seek(int position) {
+		if (position < 0 || position > size()) {
+			throw new IllegalArgumentException("No position " + position + " in the replay.");
+		}
+		if (position == mPosition) {
+			return mCurrent;
+		}
+
+		int found = Arrays.binarySearch(mCheckpointPositions, 0, mCheckpoints.size(), position);
+		int checkpoint = found >= 0 ? found : -found - 2;
+		int checkpointPosition = mCheckpointPositions[checkpoint];
+
+		// keep going from where we are when no checkpoint lies in between
+		if (mPosition > position || mPosition < checkpointPosition) {
+			mCurrent = mCheckpoints.get(checkpoint);
+			mState = GameState.restore(mCurrent);
+			mEngine = new RulesEngine(mState);
+			mPosition = checkpointPosition;
+		}
+		while (mPosition < position) {
+			mCurrent = mLog.apply(mEngine, mPosition++);
+		}
+		return mCurrent;
+	}
+
+	/**
+	 * @return The next position or the current one at the end of the game.
+	 */
+	public GameSnapshot stepForward() {
+		return mPosition < size() ? seek(mPosition + 1) : mCurrent;
+	}
+
+	/**
+	 * @return The previous position or the current one at the start.
+	 */
+	public GameSnapshot stepBack() {
+		return mPosition > 0 ? seek(mPosition - 1) : mCurrent;
+	}
+
+	/**
+	 * Deals start a round, plays which complete a trick (and possibly the
+	 * round, dealing the next one) end a trick.
+	 */
+	private static boolean isCheckpoint(int type, GameSnapshot snapshot) {
+		if (type == CommandLog.TYPE_DEAL) {
+			return true;
+		}
+		if (type != CommandLog.TYPE_PLAY) {
+			return false;
+		}
+		RoundSnapshot round = snapshot.getCurrentRound();
+		int activePlayers = round.isAlone() ? Round.NUMBER_OF_SEATS - 1 : Round.NUMBER_OF_SEATS;
+		return round.getTotalPlays() % activePlayers == 0;
+	}
+
+	private void addCheckpoint(int position, GameSnapshot snapshot) {
+		int count = mCheckpoints.size();
+		if (count == mCheckpointPositions.length) {
+			mCheckpointPositions = Arrays.copyOf(mCheckpointPositions, count * 2);
+		}
+		mCheckpointPositions[count] = position;
+		mCheckpoints.add(snapshot);
+	}
+}
@@ -0,0 +1,106 @@
+package com.randomsymphony.games.ochre.logic;
+
+import java.util.UUID;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.model.RoundSnapshot;
+
+/**
+ * An immutable view of a {@link GameState} at one moment. Snapshots can be
+ * handed to other threads and read without locking. Taking one copies only
+ * the hands, scores and current round, rounds that are already over are
+ * shared with the game and with every other snapshot, so keeping a long
+ * history of snapshots costs little more than the current round of each.
+ */
+public final class GameSnapshot {
+
+	private final UUID mGameId;
+	private final Phase mPhase;
+	private final Player[] mPlayers;
+	private final int[] mHands = new int[Round.NUMBER_OF_SEATS];
+	private final int[] mVisibleCards = new int[Round.NUMBER_OF_SEATS];
+	private final int mTeamOneScore;
+	private final int mTeamTwoScore;
+	private final RoundSnapshot mCurrentRound;
+	private final long mFingerprint;
+
+	GameSnapshot(UUID gameId, Phase phase, Player[] players, int teamOneScore,
+			int teamTwoScore, RoundSnapshot currentRound, long fingerprint) {
+		mGameId = gameId;
+		mPhase = phase;
+		mPlayers = players;
+		for (int ptr = 0; ptr < Round.NUMBER_OF_SEATS; ptr++) {
+			if (players[ptr] != null) {
+				mHands[ptr] = players[ptr].getHand();
+				mVisibleCards[ptr] = players[ptr].getVisibleCards();
+			}
+		}
+		mTeamOneScore = teamOneScore;
+		mTeamTwoScore = teamTwoScore;
+		mCurrentRound = currentRound;
+		mFingerprint = fingerprint;
+	}
+
+	/**
+	 * @return {@link GameState#getFingerprint()} at the time of the snapshot.
+	 */
+	public long getFingerprint() {
+		return mFingerprint;
+	}
+
+	public UUID getGameId() {
+		return mGameId;
+	}
+
+	public Phase getGamePhase() {
+		return mPhase;
+	}
+
+	public Player getPlayer(int seat) {
+		return mPlayers[seat];
+	}
+
+	/**
+	 * @return The hand of the player in the seat as a
+	 * {@link com.randomsymphony.games.ochre.model.CardSet}.
+	 */
+	public int getHand(int seat) {
+		return mHands[seat];
+	}
+
+	public int getVisibleCards(int seat) {
+		return mVisibleCards[seat];
+	}
+
+	/**
+	 * @param team 0 for the team of seats 0 and 2, 1 for seats 1 and 3.
+	 */
+	public int getTeamPoints(int team) {
+		return team == 0 ? mTeamOneScore : mTeamTwoScore;
+	}
+
+	/**
+	 * @return The round in progress or null if none was dealt yet, earlier
+	 * rounds are reached through {@link RoundSnapshot#getPrevious()}.
+	 */
+	public RoundSnapshot getCurrentRound() {
+		return mCurrentRound;
+	}
+
+	public int getRoundCount() {
+		return mCurrentRound == null ? 0 : mCurrentRound.getNumber() + 1;
+	}
+
+	/**
+	 * @return All rounds, oldest first. This walks the whole history.
+	 */
+	public RoundSnapshot[] getRounds() {
+		RoundSnapshot[] rounds = new RoundSnapshot[getRoundCount()];
+		for (RoundSnapshot round = mCurrentRound; round != null; round = round.getPrevious()) {
+			rounds[round.getNumber()] = round;
+		}
+		return rounds;
+	}
+}
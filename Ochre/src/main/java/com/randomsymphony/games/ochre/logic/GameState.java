@@ -3,13 +3,19 @@ package com.randomsymphony.games.ochre.logic;
 import java.util.ArrayList;
 import java.util.UUID;
 
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
 import com.randomsymphony.games.ochre.model.Player;
 import com.randomsymphony.games.ochre.model.Round;
+import com.randomsymphony.games.ochre.model.RoundSnapshot;
+import com.randomsymphony.games.ochre.model.Zobrist;
 
-import android.support.v4.app.Fragment;
-import android.util.Log;
-
-public class GameState extends Fragment {
+/**
+ * All of the data that describes a game: the players, their scores, the
+ * rounds played so far and the current {@link Phase}. This is plain data, the
+ * rules that move it from one phase to the next live in {@link RulesEngine}.
+ */
+public class GameState {
 
 	// TODO enums are inefficient, convert to static constants
 	public enum Phase {
@@ -36,19 +42,81 @@ public class GameState extends Fragment {
 	}
 	
 	private Player[] mPlayers = new Player[4];
-	private int[] mScores = new int[] {0, 0, 0, 0};
+	/**
+	 * Points per team, the team of a seat is seat % 2.
+	 */
+	private int[] mTeamScores = new int[] {0, 0};
 	private PlayerFactory mPlayerSource;
 	private DeckOfCards mDeck;
 	private ArrayList<Round> mRounds = new ArrayList<Round>();
+	/**
+	 * Snapshots of every round before the current one, newest first. These
+	 * rounds are over, so the snapshots are shared by all game snapshots.
+	 */
+	private RoundSnapshot mFinishedRounds;
+	/**
+	 * XOR of the {@link Zobrist} fingerprints of every round before the
+	 * current one, these rounds no longer change.
+	 */
+	private long mFinishedRoundsFingerprint;
 	private int mDealerOffset = -1;
 	private Phase mGamePhase = Phase.NONE;
 	private StateListener mStateListener;
 	private UUID mGameId;
 
 	public GameState() {
-        super();
-		mDeck = new DeckOfCards();
-		mGameId = UUID.randomUUID();
+		this(new SplitMix64(), UUID.randomUUID());
+	}
+
+	/**
+	 * A game whose deals all follow from the seed, for reproducing a game.
+	 */
+	public GameState(long seed) {
+		this(new SplitMix64(seed));
+	}
+
+	/**
+	 * @param random Drives every shuffle and deal of the game, the game id
+	 * comes from it too so a seeded game is reproduced in full.
+	 */
+	public GameState(SplitMix64 random) {
+		this(random, new UUID(random.nextLong(), random.nextLong()));
+	}
+
+	private GameState(SplitMix64 random, UUID gameId) {
+		mDeck = new DeckOfCards(random);
+		mGameId = gameId;
+	}
+
+	/**
+	 * Build a new game equal to the snapshot. The game gets its own copies of
+	 * the players, so it can be played on without touching the game the
+	 * snapshot was taken from.
+	 */
+	public static GameState restore(GameSnapshot snapshot) {
+		GameState state = new GameState(new SplitMix64(), snapshot.getGameId());
+
+		ArrayList<Player> players = new ArrayList<Player>(Round.NUMBER_OF_SEATS);
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			Player original = snapshot.getPlayer(seat);
+			Player copy = new Player(original.getName(), new Card[0], original.getUuid());
+			copy.addCards(snapshot.getHand(seat));
+			for (int rest = snapshot.getVisibleCards(seat); rest != CardSet.EMPTY;
+					rest = CardSet.removeFirst(rest)) {
+				copy.setCardVisible(Card.get(CardSet.first(rest)), true);
+			}
+			players.add(copy);
+		}
+		state.setPlayerFactory(new PlayerListFactory(players));
+
+		RoundSnapshot[] rounds = snapshot.getRounds();
+		for (int ptr = 0; ptr < rounds.length; ptr++) {
+			state.addRound(rounds[ptr].toRound(state.mPlayers));
+		}
+		state.mTeamScores[0] = snapshot.getTeamPoints(0);
+		state.mTeamScores[1] = snapshot.getTeamPoints(1);
+		state.mGamePhase = snapshot.getGamePhase();
+		return state;
 	}
 
     public void setPlayerFactory(PlayerFactory source) {
@@ -71,7 +139,7 @@ public class GameState extends Fragment {
 	public Round createNewRound() {
 		// create a new round, assigning the next dealer as the dealer
 		int newDealer = mDealerOffset + 1;
-		Round newRound = new Round(mPlayers[newDealer % mPlayers.length]);
+		Round newRound = new Round(mPlayers, mPlayers[newDealer % mPlayers.length]);
 		// set the default maker to the player to the right of the dealer
 		newRound.maker = mPlayers[(newDealer + 1) % mPlayers.length];
 		addRound(newRound);
@@ -84,8 +152,13 @@ public class GameState extends Fragment {
 	 * @param round The round to add
 	 */
 	public void addRound(Round round) {
+		Round previous = getCurrentRound();
+		if (previous != null) {
+			mFinishedRounds = new RoundSnapshot(previous, mPlayers, mFinishedRounds);
+			mFinishedRoundsFingerprint ^= Zobrist.part(Zobrist.TAG_ROUND, mRounds.size() - 1,
+					previous.getFingerprint());
+		}
 		mDealerOffset++;
-		Log.d("JMATT", "Dealer for this round is: " + round.dealer.getName());
 		mRounds.add(round);
 	}
 	
@@ -100,6 +173,103 @@ public class GameState extends Fragment {
 		return rounds;
 	}
 	
+	/**
+	 * @return Every round of the game packed back to back, each one
+	 * {@link Round#PACKED_SIZE} bytes long.
+	 */
+	public byte[] packRounds() {
+		byte[] packed = new byte[mRounds.size() * Round.PACKED_SIZE];
+		for (int ptr = 0, limit = mRounds.size(); ptr < limit; ptr++) {
+			mRounds.get(ptr).pack(packed, ptr * Round.PACKED_SIZE);
+		}
+		return packed;
+	}
+
+	/**
+	 * Replace the rounds of the game with ones written by
+	 * {@link #packRounds()}. The dealer advances as if each round had been
+	 * added with {@link #addRound(Round)}.
+	 */
+	public void unpackRounds(byte[] packed) {
+		if (packed.length % Round.PACKED_SIZE != 0) {
+			throw new IllegalArgumentException("Packed rounds have the wrong length.");
+		}
+		mRounds.clear();
+		mFinishedRounds = null;
+		mFinishedRoundsFingerprint = 0L;
+		mDealerOffset = -1;
+		for (int offset = 0; offset < packed.length; offset += Round.PACKED_SIZE) {
+			addRound(Round.unpack(mPlayers, packed, offset));
+		}
+	}
+
+	/**
+	 * @return An immutable copy of the game as it is now. This takes the same
+	 * small amount of work however many rounds have been played.
+	 */
+	public GameSnapshot snapshot() {
+		Round current = getCurrentRound();
+		RoundSnapshot currentRound = current == null ?
+				null : new RoundSnapshot(current, mPlayers, mFinishedRounds);
+		return new GameSnapshot(mGameId, mGamePhase, mPlayers, mTeamScores[0],
+				mTeamScores[1], currentRound, getFingerprint());
+	}
+
+	/**
+	 * @return A 64-bit {@link Zobrist} fingerprint of everything that is sent
+	 * to other devices: the game id, phase, scores, names, hands and rounds. Equal
+	 * games have equal fingerprints on every device. Hands and rounds keep
+	 * their parts up to date as they change, so this takes the same small
+	 * amount of work at any point in the game.
+	 */
+	public long getFingerprint() {
+		long fingerprint = mFinishedRoundsFingerprint ^ getFieldFingerprint();
+		for (int ptr = 0; ptr < mPlayers.length; ptr++) {
+			if (mPlayers[ptr] != null) {
+				fingerprint ^= Zobrist.part(Zobrist.TAG_SEAT, ptr,
+						mPlayers[ptr].getFingerprint() ^ mPlayers[ptr].getNameFingerprint());
+			}
+		}
+		Round current = getCurrentRound();
+		if (current != null) {
+			fingerprint ^= Zobrist.part(Zobrist.TAG_ROUND, mRounds.size() - 1,
+					current.getFingerprint());
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @return The same value as {@link #getFingerprint()} computed from
+	 * scratch, useful to check the incremental one.
+	 */
+	public long computeFingerprint() {
+		long fingerprint = getFieldFingerprint();
+		for (int ptr = 0; ptr < mPlayers.length; ptr++) {
+			Player player = mPlayers[ptr];
+			if (player != null) {
+				fingerprint ^= Zobrist.part(Zobrist.TAG_SEAT, ptr,
+						Zobrist.hand(player.getHand(), player.getVisibleCards()) ^
+						Zobrist.name(player.getName()));
+			}
+		}
+		for (int ptr = 0, limit = mRounds.size(); ptr < limit; ptr++) {
+			fingerprint ^= Zobrist.part(Zobrist.TAG_ROUND, ptr,
+					mRounds.get(ptr).computeFingerprint());
+		}
+		return fingerprint;
+	}
+
+	private long getFieldFingerprint() {
+		long fingerprint = Zobrist.feature(Zobrist.TAG_PHASE, mGamePhase.ordinal())
+				^ Zobrist.feature(Zobrist.TAG_TEAM_SCORE,
+						((long) mTeamScores[0] << 32) | (mTeamScores[1] & 0xFFFFFFFFL));
+		if (mGameId != null) {
+			fingerprint ^= Zobrist.feature(Zobrist.TAG_GAME_ID, mGameId.getMostSignificantBits() ^
+					Zobrist.mix(mGameId.getLeastSignificantBits()));
+		}
+		return fingerprint;
+	}
+
 	public Phase getGamePhase() {
 		return mGamePhase;
 	}
@@ -115,24 +285,15 @@ public class GameState extends Fragment {
 		mStateListener = listener;
 	}
 	
-	public void addPoints(Player player, int numPoints) {
-		Log.d("JMATT", "Adding " + numPoints + " to " + player.getName() + "'s team");
-		for (int ptr = 0; ptr < mScores.length; ptr++) {
-			if (player.getId().equals(mPlayers[ptr].getId())) {
-				mScores[ptr] += numPoints;
-				Log.d("JMATT", "Total points: " + mScores[ptr]);
-				break;
-			}
-		}
+	/**
+	 * @param team 0 for the team of seats 0 and 2, 1 for seats 1 and 3.
+	 */
+	public void addPoints(int team, int numPoints) {
+		mTeamScores[team] += numPoints;
 	}
 	
-	public int getPointsForPlayer(Player player) {
-		for (int ptr = 0; ptr < mScores.length; ptr++) {
-			if (player.getId().equals(mPlayers[ptr].getId())) {
-				return mScores[ptr];
-			}
-		}
-		return -1;
+	public int getTeamPoints(int team) {
+		return mTeamScores[team];
 	}
 
 	public UUID getGameId() {
@@ -144,8 +305,14 @@ public class GameState extends Fragment {
 	}
 	
 	private void initPlayers() {
-		for (int count = 0; count < mPlayers.length; count++) {
-			mPlayers[count] = mPlayerSource.createPlayer();
+		// build a new array, the old one may be shared by snapshots
+		Player[] players = new Player[mPlayers.length];
+		for (int count = 0; count < players.length; count++) {
+			players[count] = mPlayerSource.createPlayer();
+			if (players[count] != null) {
+				players[count].setSeat(count);
+			}
 		}
+		mPlayers = players;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,426 @@
+package com.randomsymphony.games.ochre.logic;
+
+import java.util.ArrayList;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Play;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * The rules of the game and the state machine that drives a {@link GameState}
+ * from one {@link Phase} to the next. This class knows nothing about views,
+ * logging or transport, so it can run equally well behind the UI, on a
+ * server, inside a bot or in a benchmark. Anything that wants to react to the
+ * game registers a {@link Listener}. Each action returns a
+ * {@link GameSnapshot} of the state it left behind.
+ * @author cyngus
+ */
+public class RulesEngine {
+
+	public static final int NUMBER_OF_TRICKS = Round.NUMBER_OF_TRICKS;
+	public static final int WIN_THRESHOLD = 3;
+	// number of points for making the round normally
+	public static final int NUM_POINTS_MAKE = 1;
+	public static final int NUM_POINTS_ALL_5 = 2;
+	public static final int NUM_POINTS_ALL_5_ALONE = 4;
+	public static final int NUM_POINTS_SET = 2;
+
+	/**
+	 * Receives the events the engine emits as it moves through a game. All
+	 * callbacks happen synchronously on the thread that invoked the action.
+	 */
+	public interface Listener {
+		/**
+		 * A new round was dealt.
+		 * @param possibleTrump The card turned up on the table.
+		 */
+		public void onRoundDealt(Round round, Card possibleTrump);
+
+		/**
+		 * A player declined to set trump.
+		 */
+		public void onTrumpPassed(Round round, Player passer);
+
+		/**
+		 * Trump was set. If the game is now in
+		 * {@link Phase#DEALER_DISCARD} the dealer picked up the turned card
+		 * and must discard.
+		 */
+		public void onTrumpSet(Round round, Player maker);
+
+		public void onDealerDiscarded(Round round, Player dealer, Card card);
+
+		public void onCardPlayed(Round round, Play play);
+
+		/**
+		 * @param tricksCaptured The number of tricks the winner of this trick
+		 * has taken in the round so far.
+		 */
+		public void onTrickComplete(Round round, Play winningPlay, int tricksCaptured);
+
+		public void onRoundScored(Round round, int teamOneScore, int teamTwoScore);
+
+		/**
+		 * It is now this player's turn to act.
+		 */
+		public void onNextPlayer(Player player);
+	}
+
+	private GameState mState;
+	private ArrayList<Listener> mListeners = new ArrayList<Listener>();
+	/**
+	 * A deal to use instead of shuffling for the next round, see
+	 * {@link #setNextDeal(int[], Card)}.
+	 */
+	private int[] mNextHands;
+	private Card mNextTrump;
+
+	public RulesEngine() {
+	}
+
+	public RulesEngine(GameState state) {
+		mState = state;
+	}
+
+	public void setGameState(GameState state) {
+		mState = state;
+	}
+
+	public GameState getGameState() {
+		return mState;
+	}
+
+	public void registerListener(Listener listener) {
+		mListeners.add(listener);
+	}
+
+	public void unregisterListener(Listener listener) {
+		mListeners.remove(listener);
+	}
+
+	public GameSnapshot startGame() {
+		return newRound();
+	}
+
+	/**
+	 * Shuffle, deal and turn up a candidate trump card, then move to
+	 * {@link Phase#ORDER_UP}.
+	 */
+	public GameSnapshot newRound() {
+		dealRound();
+		return mState.snapshot();
+	}
+
+	/**
+	 * Deal these cards in the next round instead of shuffling, used to replay
+	 * a recorded game. The next round may also be the one the engine deals by
+	 * itself after the last card of a round is played.
+	 * @param hands The hand of each seat as a
+	 * {@link com.randomsymphony.games.ochre.model.CardSet}.
+	 * @param possibleTrump The card to turn up.
+	 */
+	public void setNextDeal(int[] hands, Card possibleTrump) {
+		mNextHands = hands;
+		mNextTrump = possibleTrump;
+	}
+
+	private void dealRound() {
+		Player[] players = mState.getPlayers();
+		for (int ptr = 0; ptr < players.length; ptr++) {
+			players[ptr].discardHand();
+		}
+
+		Card possibleTrump;
+		if (mNextHands != null) {
+			for (int ptr = 0; ptr < players.length; ptr++) {
+				players[ptr].addCards(mNextHands[ptr]);
+			}
+			possibleTrump = mNextTrump;
+			mNextHands = null;
+			mNextTrump = null;
+		} else {
+			DeckOfCards deck = mState.getDeck();
+			deck.shuffle();
+			GamePlayUtils.dealHand(deck, players);
+
+			// deal the possible trump card
+			possibleTrump = deck.deal(1)[0];
+		}
+
+		Round newRound = mState.createNewRound();
+		// speculatively set the trump
+		newRound.trump = possibleTrump;
+		newRound.turnUp = possibleTrump;
+		mState.setGamePhase(Phase.ORDER_UP);
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onRoundDealt(newRound, possibleTrump);
+		}
+		notifyNextPlayer();
+	}
+
+	/**
+	 * @return true if the player whose turn it is may pass on setting trump,
+	 * the dealer may not pass when everyone else passed twice.
+	 */
+	public boolean canPass() {
+		Phase phase = mState.getGamePhase();
+		if (phase == Phase.ORDER_UP) {
+			return true;
+		}
+		Round currentRound = mState.getCurrentRound();
+		return phase == Phase.PICK_TRUMP &&
+				currentRound.trumpPasses < currentRound.getActivePlayerCount() * 2 - 1;
+	}
+
+	/**
+	 * The player whose turn it is passed on setting trump.
+	 */
+	public GameSnapshot pass() {
+		if (!canPass()) {
+			throw new IllegalStateException("State is invalid for this operation.");
+		}
+
+		Round currentRound = mState.getCurrentRound();
+		Player passer = getNextPlayer();
+		currentRound.trumpPasses++;
+
+		// check if enough people have passed that we changed phases
+		if (currentRound.trumpPasses == currentRound.getActivePlayerCount()) {
+			mState.setGamePhase(Phase.PICK_TRUMP);
+		}
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onTrumpPassed(currentRound, passer);
+		}
+		notifyNextPlayer();
+		return mState.snapshot();
+	}
+
+	/**
+	 * The player whose turn it is sets trump.
+	 * @param alone Maker is going alone.
+	 * @param trumpCard During {@link Phase#PICK_TRUMP} a card whose suit
+	 * becomes trump, ignored during {@link Phase#ORDER_UP} where trump is the
+	 * suit of the turned up card.
+	 */
+	public GameSnapshot setTrump(boolean alone, Card trumpCard) {
+		if (mState.getGamePhase() != Phase.ORDER_UP &&
+				mState.getGamePhase() != Phase.PICK_TRUMP) {
+			throw new IllegalStateException("State is invalid for this operation.");
+		}
+
+		Round currentRound = mState.getCurrentRound();
+		if (mState.getGamePhase() == Phase.PICK_TRUMP) {
+			if (trumpCard == null) {
+				throw new IllegalArgumentException("A trump card must be picked.");
+			}
+			if (trumpCard.getSuit() == currentRound.trump.getSuit()) {
+				throw new IllegalArgumentException("The turned down suit can't be named.");
+			}
+		}
+
+		// the trump setter is whoever's turn it is to bid
+		Player maker = currentRound.getPlayer(SeatOrder.bidder(currentRound.getDealerSeat(),
+				currentRound.trumpPasses));
+
+		// set alone-ness after we compute which player set trump, the maker
+		// must be known before we work out who leads
+		currentRound.alone = alone;
+		currentRound.maker = maker;
+		currentRound.startPlay();
+
+		if (mState.getGamePhase() == Phase.ORDER_UP) {
+			// trump has already been set optimistically to the dealt trump
+			// card's suit, the dealer picks it up unless the dealer's partner
+			// is going alone
+			if (!currentRound.alone || currentRound.trumpPasses != 1) {
+				currentRound.dealer.addCard(currentRound.trump);
+				mState.setGamePhase(Phase.DEALER_DISCARD);
+			} else {
+				mState.setGamePhase(Phase.PLAY);
+			}
+		} else {
+			currentRound.trump = trumpCard;
+			mState.setGamePhase(Phase.PLAY);
+		}
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onTrumpSet(currentRound, maker);
+		}
+		notifyNextPlayer();
+		return mState.snapshot();
+	}
+
+	public GameSnapshot discardCard(Card card) {
+		if (mState.getGamePhase() != Phase.DEALER_DISCARD) {
+			throw new IllegalStateException("State is invalid for this operation.");
+		}
+
+		Round currentRound = mState.getCurrentRound();
+		currentRound.dealer.removeCard(card);
+		currentRound.discard = card;
+		mState.setGamePhase(Phase.PLAY);
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onDealerDiscarded(currentRound, currentRound.dealer, card);
+		}
+		notifyNextPlayer();
+		return mState.snapshot();
+	}
+
+	/**
+	 * Play a card, rejecting any play the rules do not allow.
+	 * @throws IllegalArgumentException if it is not the player's turn or the
+	 * card is not one of {@link #getLegalMoves(Player)}.
+	 */
+	public GameSnapshot playCard(Player player, Card card) {
+		if (mState.getGamePhase() != Phase.PLAY) {
+			throw new IllegalStateException("State is invalid for this operation.");
+		}
+		if (!CardSet.contains(getLegalMoves(player), card)) {
+			throw new IllegalArgumentException(player.getName() + " may not play " + card);
+		}
+
+		Round currentRound = mState.getCurrentRound();
+		Play play = new Play(player, card);
+		currentRound.addPlay(play);
+		player.discardCard(card);
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onCardPlayed(currentRound, play);
+		}
+
+		if (currentRound.isCurrentTrickComplete()) {
+			finishTrick();
+		}
+
+		notifyNextPlayer();
+		return mState.snapshot();
+	}
+
+	/**
+	 * @return The player who is expected to act next or null if the game
+	 * has not started.
+	 */
+	public Player getNextPlayer() {
+		Round currentRound = mState.getCurrentRound();
+		if (currentRound == null) {
+			return null;
+		}
+
+		switch (mState.getGamePhase()) {
+			case ORDER_UP:
+			case PICK_TRUMP:
+				return currentRound.getPlayer(SeatOrder.bidder(currentRound.getDealerSeat(),
+						currentRound.trumpPasses));
+			case DEALER_DISCARD:
+				// while in dealer discard, the next player is always the dealer
+				return currentRound.dealer;
+			case PLAY:
+				return currentRound.getPlayer(currentRound.getNextSeat());
+			case NONE:
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * @return The cards the player may play now as a {@link CardSet}. This is
+	 * empty unless it is the player's turn during {@link Phase#PLAY}, so the
+	 * partner of a maker going alone never has a legal move.
+	 */
+	public int getLegalMoves(Player player) {
+		if (mState.getGamePhase() != Phase.PLAY || player != getNextPlayer()) {
+			return CardSet.EMPTY;
+		}
+		Round currentRound = mState.getCurrentRound();
+		return TrickEvaluator.legalMoves(player.getHand(), currentRound.trump.getSuit(),
+				currentRound.getLeadCard());
+	}
+
+	public boolean isRoundComplete() {
+		Round currentRound = mState.getCurrentRound();
+		return currentRound.totalPlays == currentRound.getActivePlayerCount() * NUMBER_OF_TRICKS;
+	}
+
+	/**
+	 * @return The play which wins the trick, the trick must contain at least
+	 * one play.
+	 */
+	public static Play scoreTrick(Play[] trick, int trump) {
+		return TrickEvaluator.winningPlay(trick, trump);
+	}
+
+	/**
+	 * Called when a trick has been completed.
+	 */
+	private void finishTrick() {
+		Round currentRound = mState.getCurrentRound();
+		// the round scored the trick as the cards were played
+		int winningSeat = currentRound.getWinningSeat();
+		Play winningPlay = new Play(currentRound.getPlayer(winningSeat),
+				Card.get(currentRound.getWinningCard()));
+		int totalTricks = currentRound.getCapturedTricks(winningSeat);
+
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onTrickComplete(currentRound, winningPlay, totalTricks);
+		}
+
+		if (isRoundComplete()) {
+			scoreRound();
+			// time for a new round
+			dealRound();
+		}
+	}
+
+	/**
+	 * @param makerTricks The tricks the maker's team took in the round.
+	 * @return The points the makers earn, 0 if they were set, in which case
+	 * the other team earns {@link #NUM_POINTS_SET}.
+	 */
+	public static int getMakerPoints(int makerTricks, boolean alone) {
+		if (makerTricks < WIN_THRESHOLD) {
+			return 0;
+		} else if (makerTricks == NUMBER_OF_TRICKS) {
+			return alone ? NUM_POINTS_ALL_5_ALONE : NUM_POINTS_ALL_5;
+		} else {
+			return NUM_POINTS_MAKE;
+		}
+	}
+
+	private void scoreRound() {
+		Round finishedRound = mState.getCurrentRound();
+
+		// the round counted captured tricks as they were won, add them up for
+		// the partners
+		int makerTeam = finishedRound.getSeat(finishedRound.maker) % 2;
+		int makerPoints = getMakerPoints(finishedRound.getTeamTricks(makerTeam),
+				finishedRound.alone);
+		if (makerPoints > 0) {
+			mState.addPoints(makerTeam, makerPoints);
+		} else {
+			mState.addPoints(1 - makerTeam, NUM_POINTS_SET);
+		}
+
+		int teamOne = mState.getTeamPoints(0);
+		int teamTwo = mState.getTeamPoints(1);
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onRoundScored(finishedRound, teamOne, teamTwo);
+		}
+	}
+
+	private void notifyNextPlayer() {
+		if (mListeners.isEmpty()) {
+			return;
+		}
+
+		Player next = getNextPlayer();
+		for (int ptr = 0, limit = mListeners.size(); ptr < limit; ptr++) {
+			mListeners.get(ptr).onNextPlayer(next);
+		}
+	}
+}
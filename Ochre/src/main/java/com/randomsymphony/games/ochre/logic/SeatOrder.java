@@ -0,0 +1,96 @@
+package com.randomsymphony.games.ochre.logic;
+
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Who acts when, worked out ahead of time for every dealer, maker and
+ * whether the maker is going alone, so finding the next seat is a table
+ * read. When the maker goes alone their partner sits out and is skipped
+ * everywhere, including the case where the dealer's partner goes alone and
+ * the dealer sits out: the first lead then falls to the dealer's left like
+ * always, the tables don't need a special case for it.
+ */
+public final class SeatOrder {
+
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+
+	/**
+	 * Indexed by [maker][alone][seat], the next seat to the left which is
+	 * still in the round.
+	 */
+	private static final byte[] NEXT_SEAT = new byte[SEATS * 2 * SEATS];
+	/**
+	 * Indexed by [dealer][maker][alone], the seat leading the first trick.
+	 */
+	private static final byte[] FIRST_LEADER = new byte[SEATS * SEATS * 2];
+	/**
+	 * Indexed by [dealer][passes % 4], the seat deciding on trump.
+	 */
+	private static final byte[] BIDDER = new byte[SEATS * SEATS];
+
+	static {
+		for (int maker = 0; maker < SEATS; maker++) {
+			for (int alone = 0; alone < 2; alone++) {
+				int sittingOut = alone == 1 ? (maker + 2) % SEATS : Player.NO_SEAT;
+				for (int seat = 0; seat < SEATS; seat++) {
+					int next = (seat + 1) % SEATS;
+					if (next == sittingOut) {
+						next = (next + 1) % SEATS;
+					}
+					NEXT_SEAT[(maker * 2 + alone) * SEATS + seat] = (byte) next;
+				}
+			}
+		}
+
+		for (int dealer = 0; dealer < SEATS; dealer++) {
+			for (int maker = 0; maker < SEATS; maker++) {
+				for (int alone = 0; alone < 2; alone++) {
+					FIRST_LEADER[(dealer * SEATS + maker) * 2 + alone] =
+							NEXT_SEAT[(maker * 2 + alone) * SEATS + dealer];
+				}
+			}
+			for (int passes = 0; passes < SEATS; passes++) {
+				// everyone bids, starting to the dealer's left
+				BIDDER[dealer * SEATS + passes] = (byte) ((dealer + passes + 1) % SEATS);
+			}
+		}
+	}
+
+	/**
+	 * Do not instantiate!
+	 */
+	private SeatOrder() {
+	}
+
+	/**
+	 * @param maker The maker's seat, ignored unless alone is set.
+	 * @return The next seat to the left of this one which is playing.
+	 */
+	public static int nextSeat(int seat, int maker, boolean alone) {
+		return alone ? NEXT_SEAT[(maker * 2 + 1) * SEATS + seat] : NEXT_SEAT[seat];
+	}
+
+	/**
+	 * @param maker The maker's seat, ignored unless alone is set.
+	 * @return The seat leading the first trick of the round.
+	 */
+	public static int firstLeader(int dealer, int maker, boolean alone) {
+		return alone ? FIRST_LEADER[(dealer * SEATS + maker) * 2 + 1] :
+				FIRST_LEADER[dealer * SEATS * 2];
+	}
+
+	/**
+	 * @return The seat whose turn it is to set trump or pass.
+	 */
+	public static int bidder(int dealer, int trumpPasses) {
+		return BIDDER[dealer * SEATS + trumpPasses % SEATS];
+	}
+
+	/**
+	 * @return The seat of the lone maker's partner or {@link Player#NO_SEAT}.
+	 */
+	public static int sittingOut(int maker, boolean alone) {
+		return alone ? (maker + 2) % SEATS : Player.NO_SEAT;
+	}
+}
@@ -0,0 +1,102 @@
+package com.randomsymphony.games.ochre.logic;
+
+import com.randomsymphony.games.ochre.model.Zobrist;
+
+/**
+ * A small, seedable random number generator which can be split into
+ * independent streams, after the SplitMix64 generator. The same seed always
+ * gives the same numbers, so a game can be replayed from its seed. Parallel
+ * work should {@link #split()} a stream off for every task rather than share
+ * one generator, each task then gets the same numbers however many threads
+ * run them.
+ *
+ * Instances are not thread safe.
+ */
+public final class SplitMix64 {
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private long mSeed;
+	private final long mGamma;
+
+	/**
+	 * A generator seeded from the clock, for games which don't need to be
+	 * reproduced.
+	 */
+	public SplitMix64() {
+		this(Zobrist.mix(System.currentTimeMillis()) ^ Zobrist.mix(System.nanoTime()));
+	}
+
+	public SplitMix64(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplitMix64(long seed, long gamma) {
+		mSeed = seed;
+		mGamma = gamma;
+	}
+
+	public long nextLong() {
+		return Zobrist.mix(mSeed += mGamma);
+	}
+
+	/**
+	 * @return A uniformly distributed value from 0 up to but not including
+	 * bound.
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+		int bits;
+		int value;
+		do {
+			// reject the top values which would favor the low results
+			bits = (int) (nextLong() >>> 33);
+			value = bits % bound;
+		} while (bits - value + (bound - 1) < 0);
+		return value;
+	}
+
+	/**
+	 * @return A uniformly distributed value from 0 up to but not including
+	 * bound.
+	 */
+	public long nextLong(long bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+		long bits;
+		long value;
+		do {
+			bits = nextLong() >>> 1;
+			value = bits % bound;
+		} while (bits - value + (bound - 1) < 0);
+		return value;
+	}
+
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/**
+	 * @return A new generator whose numbers are independent of this one's.
+	 * This advances this generator, splitting again gives another stream.
+	 */
+	public SplitMix64 split() {
+		long seed = nextLong();
+		return new SplitMix64(seed, mixGamma(mSeed += mGamma));
+	}
+
+	/**
+	 * Derive an odd increment with a good mix of bits, weak increments make
+	 * streams which look alike.
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int transitions = Long.bitCount(z ^ (z >>> 1));
+		return transitions < 24 ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+	}
+}
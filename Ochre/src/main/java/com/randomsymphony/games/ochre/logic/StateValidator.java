@@ -0,0 +1,265 @@
+package com.randomsymphony.games.ochre.logic;
+
+import com.randomsymphony.games.ochre.logic.GameState.Phase;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Checks that a game, typically one received from another device, could have
+ * come out of the {@link RulesEngine}. Every round's plays are replayed
+ * against the rules: who deals, who acts, following suit, that no card shows
+ * up twice, who captured the tricks and what the game score must be. Anything
+ * the state doesn't record, such as the dealer's discard, is not checked.
+ * Earlier rounds may end before any card was played, when a new round was
+ * dealt by hand.
+ *
+ * A validator holds its scratch space so checking a game allocates next to
+ * nothing, one instance should only be used by one thread at a time.
+ */
+public class StateValidator {
+
+	/**
+	 * For each play of the round being checked, the hand the player held
+	 * when making it.
+	 */
+	private final int[] mHandAtPlay = new int[Round.MAX_PLAYS];
+	private final int[] mTrick = new int[Round.NUMBER_OF_SEATS];
+	private final int[] mCaptured = new int[Round.NUMBER_OF_SEATS];
+	/**
+	 * Per seat, the cards played from the current play on plus the cards
+	 * still in hand.
+	 */
+	private final int[] mLaterCards = new int[Round.NUMBER_OF_SEATS];
+	private final int[] mScores = new int[2];
+
+	/**
+	 * @throws IllegalArgumentException describing the first problem found if
+	 * the game is not one the rules allow.
+	 */
+	public void validate(GameState state) {
+		checkPlayers(state.getPlayers());
+
+		Round[] rounds = state.getRounds();
+		Phase phase = state.getGamePhase();
+		if (rounds.length == 0 && phase != Phase.NONE) {
+			throw invalid("phase " + phase + " without a round");
+		}
+		if (rounds.length > 0 && phase == Phase.NONE) {
+			throw invalid("rounds were dealt but the game is not running");
+		}
+
+		mScores[0] = 0;
+		mScores[1] = 0;
+		for (int ptr = 0; ptr < rounds.length; ptr++) {
+			Round round = rounds[ptr];
+			boolean current = ptr == rounds.length - 1;
+			if (round.getDealerSeat() != ptr % Round.NUMBER_OF_SEATS) {
+				throw invalid("round " + ptr + " has the wrong dealer");
+			}
+			checkRound(round, current ? phase : null, ptr);
+
+			if (round.totalPlays == round.getActivePlayerCount() * Round.NUMBER_OF_TRICKS) {
+				// the engine scores a round and deals the next at once
+				if (current) {
+					throw invalid("round " + ptr + " is over but was not scored");
+				}
+				int makerTeam = round.getMakerSeat() % 2;
+				int makerPoints = RulesEngine.getMakerPoints(round.getTeamTricks(makerTeam),
+						round.alone);
+				if (makerPoints > 0) {
+					mScores[makerTeam] += makerPoints;
+				} else {
+					mScores[1 - makerTeam] += RulesEngine.NUM_POINTS_SET;
+				}
+			}
+		}
+
+		if (state.getTeamPoints(0) != mScores[0] || state.getTeamPoints(1) != mScores[1]) {
+			throw invalid("score is " + state.getTeamPoints(0) + "-" + state.getTeamPoints(1) +
+					" but the rounds add up to " + mScores[0] + "-" + mScores[1]);
+		}
+	}
+
+	/**
+	 * @return true if the game passes {@link #validate(GameState)}.
+	 */
+	public boolean isValid(GameState state) {
+		try {
+			validate(state);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private void checkPlayers(Player[] players) {
+		if (players.length != Round.NUMBER_OF_SEATS) {
+			throw invalid("wrong number of seats");
+		}
+		for (int seat = 0; seat < players.length; seat++) {
+			if (players[seat] == null) {
+				throw invalid("seat " + seat + " is empty");
+			}
+			if (players[seat].getSeat() != seat) {
+				throw invalid("player in seat " + seat + " is seated at " +
+						players[seat].getSeat());
+			}
+			for (int other = 0; other < seat; other++) {
+				if (players[other].hasId(players[seat].getUuid())) {
+					throw invalid("seats " + other + " and " + seat + " hold the same player");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param phase The phase of the current round, null for earlier rounds
+	 * whose hands are no longer known.
+	 */
+	private void checkRound(Round round, Phase phase, int number) {
+		int plays = round.totalPlays;
+		if (round.trump == null) {
+			throw invalid("round " + number + " has no trump card");
+		}
+		if (round.trumpPasses < 0 || round.trumpPasses >= 2 * Round.NUMBER_OF_SEATS) {
+			throw invalid("round " + number + " has " + round.trumpPasses + " passes");
+		}
+		if (round.isPlayStarted() && round.getMakerSeat() !=
+				SeatOrder.bidder(round.getDealerSeat(), round.trumpPasses)) {
+			throw invalid("round " + number + " has the wrong maker");
+		}
+		if (!round.isPlayStarted() && plays > 0) {
+			throw invalid("round " + number + " has plays before trump was set");
+		}
+		if (plays > round.getActivePlayerCount() * Round.NUMBER_OF_TRICKS) {
+			throw invalid("round " + number + " has " + plays + " plays");
+		}
+		if (phase != null) {
+			checkPhase(round, phase, number);
+		}
+
+		// work out the hand behind each play, from the last play back
+		int played = CardSet.EMPTY;
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			mLaterCards[seat] = phase != null ? round.getPlayer(seat).getHand() : CardSet.EMPTY;
+			mCaptured[seat] = 0;
+		}
+		for (int ptr = plays - 1; ptr >= 0; ptr--) {
+			int seat = round.getPlaySeat(ptr);
+			int card = round.getPlayCard(ptr);
+			if (CardSet.contains(played, card)) {
+				throw invalid("round " + number + " plays card " + card + " twice");
+			}
+			played = CardSet.add(played, card);
+			mLaterCards[seat] = CardSet.add(mLaterCards[seat], card);
+			mHandAtPlay[ptr] = mLaterCards[seat];
+		}
+
+		if (phase != null) {
+			checkHands(round, phase, played, number);
+		}
+		if (round.isPlayStarted()) {
+			checkPlays(round, number);
+		}
+	}
+
+	private void checkPhase(Round round, Phase phase, int number) {
+		boolean bidding = phase == Phase.ORDER_UP || phase == Phase.PICK_TRUMP;
+		if (bidding == round.isPlayStarted()) {
+			throw invalid("round " + number + " is in " + phase + " but trump is " +
+					(bidding ? "set" : "not set"));
+		}
+		boolean secondPass = round.trumpPasses >= Round.NUMBER_OF_SEATS;
+		if (phase == Phase.PICK_TRUMP ? !secondPass : secondPass && phase != Phase.PLAY) {
+			throw invalid("round " + number + " is in " + phase + " after " +
+					round.trumpPasses + " passes");
+		}
+		if (phase != Phase.PLAY && round.totalPlays > 0) {
+			throw invalid("round " + number + " has plays during " + phase);
+		}
+	}
+
+	/**
+	 * Check how many cards each seat of the current round holds and that no
+	 * card is in two places.
+	 */
+	private void checkHands(Round round, Phase phase, int played, int number) {
+		int seen = played;
+		int sittingOut = SeatOrder.sittingOut(round.getMakerSeat(), round.alone);
+		int dealerSeat = round.getDealerSeat();
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			int hand = round.getPlayer(seat).getHand();
+			if ((hand & seen) != CardSet.EMPTY) {
+				throw invalid("round " + number + " has seat " + seat +
+						" holding a card held or played elsewhere");
+			}
+			seen |= hand;
+
+			// every seat is dealt five and plays one per trick
+			int expected = Round.NUMBER_OF_TRICKS;
+			if (seat != sittingOut) {
+				expected -= CardSet.size(mLaterCards[seat] & played);
+			}
+			if (phase == Phase.DEALER_DISCARD && seat == dealerSeat) {
+				expected++;
+			}
+			if (CardSet.size(hand) != expected) {
+				throw invalid("round " + number + " has seat " + seat + " holding " +
+						CardSet.size(hand) + " cards instead of " + expected);
+			}
+		}
+
+		if ((phase == Phase.ORDER_UP || phase == Phase.PICK_TRUMP) &&
+				CardSet.contains(seen, round.trump.getIndex())) {
+			throw invalid("round " + number + " has the turned up card in a hand");
+		}
+	}
+
+	/**
+	 * Replay the plays in order checking turns, following suit and the
+	 * captured trick counts.
+	 */
+	private void checkPlays(Round round, int number) {
+		int trump = round.trump.getSuit();
+		int active = round.getActivePlayerCount();
+		int maker = round.getMakerSeat();
+		int next = SeatOrder.firstLeader(round.getDealerSeat(), maker, round.alone);
+		for (int ptr = 0, limit = round.totalPlays; ptr < limit; ptr++) {
+			int seat = round.getPlaySeat(ptr);
+			int card = round.getPlayCard(ptr);
+			int position = ptr % active;
+			if (seat != next) {
+				throw invalid("round " + number + " play " + ptr + " is by seat " + seat +
+						" but seat " + next + " was to play");
+			}
+
+			int leadCard = position == 0 ? -1 : mTrick[0];
+			if (!CardSet.contains(TrickEvaluator.legalMoves(mHandAtPlay[ptr], trump, leadCard),
+					card)) {
+				throw invalid("round " + number + " play " + ptr + " does not follow suit");
+			}
+			mTrick[position] = card;
+
+			if (position == active - 1) {
+				int winner = TrickEvaluator.winningPosition(trump, mTrick, active);
+				next = round.getPlaySeat(ptr - position + winner);
+				mCaptured[next]++;
+			} else {
+				next = SeatOrder.nextSeat(seat, maker, round.alone);
+			}
+		}
+
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			if (round.getCapturedTricks(seat) != mCaptured[seat]) {
+				throw invalid("round " + number + " credits seat " + seat + " with " +
+						round.getCapturedTricks(seat) + " tricks but they took " +
+						mCaptured[seat]);
+			}
+		}
+	}
+
+	private static IllegalArgumentException invalid(String problem) {
+		return new IllegalArgumentException("Invalid game state: " + problem);
+	}
+}
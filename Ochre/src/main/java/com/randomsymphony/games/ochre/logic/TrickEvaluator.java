@@ -0,0 +1,194 @@
+package com.randomsymphony.games.ochre.logic;
+
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Play;
+
+/**
+ * Decides who wins a trick. For every combination of trump suit and led suit
+ * each card is given a rank ahead of time, so comparing two cards during play
+ * is a single array read instead of working out bowers and suits again.
+ *
+ * Ranks are ordered so that a higher rank beats a lower one. Cards which
+ * neither follow the led suit nor are trump get {@link #RANK_NONE} and can
+ * never win. Suits passed in here are "effective" suits, where the left bower
+ * belongs to the trump suit, see {@link #effectiveSuit(int, int)}.
+ */
+public final class TrickEvaluator {
+
+	/**
+	 * The rank of a card which neither follows the led suit nor is trump.
+	 */
+	public static final int RANK_NONE = 0;
+	/**
+	 * The lowest possible rank of a trump card, any card at or above this
+	 * rank is trump.
+	 */
+	public static final int RANK_LOWEST_TRUMP = CardSet.CARDS_PER_SUIT + 1;
+	/**
+	 * The rank of the right bower, the highest card in the game.
+	 */
+	public static final int RANK_RIGHT_BOWER = RANK_LOWEST_TRUMP + CardSet.CARDS_PER_SUIT;
+
+	private static final int SUITS = CardSet.NUMBER_OF_SUITS;
+	private static final int CARDS = CardSet.DECK_SIZE;
+
+	/**
+	 * Indexed by [trump][led suit][card].
+	 */
+	private static final byte[] RANKS = new byte[SUITS * SUITS * CARDS];
+	/**
+	 * Indexed by [trump][card].
+	 */
+	private static final byte[] EFFECTIVE_SUITS = new byte[SUITS * CARDS];
+	/**
+	 * Indexed by [trump][suit], the {@link CardSet} of cards which count as
+	 * the suit.
+	 */
+	private static final int[] SUIT_MASKS = new int[SUITS * SUITS];
+
+	static {
+		for (int trump = 0; trump < SUITS; trump++) {
+			for (int index = 0; index < CARDS; index++) {
+				Card card = Card.get(index);
+				int suit = GamePlayUtils.isTrump(trump, card) ? trump : card.getSuit();
+				EFFECTIVE_SUITS[trump * CARDS + index] = (byte) suit;
+				SUIT_MASKS[trump * SUITS + suit] |= CardSet.of(index);
+			}
+
+			for (int lead = 0; lead < SUITS; lead++) {
+				for (int index = 0; index < CARDS; index++) {
+					RANKS[(trump * SUITS + lead) * CARDS + index] =
+							(byte) computeRank(trump, lead, Card.get(index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Do not instantiate!
+	 */
+	private TrickEvaluator() {
+	}
+
+	/**
+	 * @param trump The trump suit.
+	 * @param leadSuit The effective suit of the first card of the trick.
+	 * @param cardIndex The card's {@link Card#getIndex()}.
+	 * @return The rank of the card in this trick, higher beats lower.
+	 */
+	public static int rank(int trump, int leadSuit, int cardIndex) {
+		return RANKS[(trump * SUITS + leadSuit) * CARDS + cardIndex];
+	}
+
+	public static int rank(int trump, int leadSuit, Card card) {
+		return RANKS[(trump * SUITS + leadSuit) * CARDS + card.getIndex()];
+	}
+
+	/**
+	 * @return true if left beats right in a trick where leadSuit was led.
+	 * Two cards which both have {@link #RANK_NONE} are equal.
+	 */
+	public static boolean isGreater(Card left, Card right, int leadSuit, int trump) {
+		int row = (trump * SUITS + leadSuit) * CARDS;
+		return RANKS[row + left.getIndex()] > RANKS[row + right.getIndex()];
+	}
+
+	/**
+	 * @return The suit the card belongs to when this suit is trump, which is
+	 * its printed suit for every card except the left bower.
+	 */
+	public static int effectiveSuit(int trump, int cardIndex) {
+		return EFFECTIVE_SUITS[trump * CARDS + cardIndex];
+	}
+
+	public static int effectiveSuit(int trump, Card card) {
+		return EFFECTIVE_SUITS[trump * CARDS + card.getIndex()];
+	}
+
+	/**
+	 * @return The {@link CardSet} of cards which belong to the suit when this
+	 * suit is trump.
+	 */
+	public static int suitMask(int trump, int suit) {
+		return SUIT_MASKS[trump * SUITS + suit];
+	}
+
+	/**
+	 * @return The {@link CardSet} of all trump cards, bowers included.
+	 */
+	public static int trumpMask(int trump) {
+		return SUIT_MASKS[trump * SUITS + trump];
+	}
+
+	/**
+	 * Which cards of a hand may be played. A player must follow the led
+	 * suit if they can, where the left bower counts as trump, otherwise any
+	 * card may be played.
+	 * @param hand The player's hand as a {@link CardSet}.
+	 * @param leadCard The index of the card which led the trick or -1 if the
+	 * player is leading.
+	 * @return The playable cards as a {@link CardSet}.
+	 */
+	public static int legalMoves(int hand, int trump, int leadCard) {
+		if (leadCard < 0) {
+			return hand;
+		}
+		int following = hand & SUIT_MASKS[trump * SUITS + EFFECTIVE_SUITS[trump * CARDS + leadCard]];
+		return following == CardSet.EMPTY ? hand : following;
+	}
+
+	/**
+	 * @param cards Card indices in the order they were played.
+	 * @param count The number of cards in the trick so far, at least one.
+	 * @return The position in cards of the card currently winning the trick.
+	 */
+	public static int winningPosition(int trump, int[] cards, int count) {
+		int row = (trump * SUITS + EFFECTIVE_SUITS[trump * CARDS + cards[0]]) * CARDS;
+		int winner = 0;
+		int best = RANKS[row + cards[0]];
+		for (int ptr = 1; ptr < count; ptr++) {
+			int rank = RANKS[row + cards[ptr]];
+			if (rank > best) {
+				best = rank;
+				winner = ptr;
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * @param trick The plays of a trick in order, the trick may be incomplete
+	 * in which case unplayed positions are null.
+	 * @return The play currently winning the trick.
+	 */
+	public static Play winningPlay(Play[] trick, int trump) {
+		Play winningPlay = trick[0];
+		int row = (trump * SUITS + effectiveSuit(trump, winningPlay.card)) * CARDS;
+		int best = RANKS[row + winningPlay.card.getIndex()];
+		for (int ptr = 1; ptr < trick.length && trick[ptr] != null; ptr++) {
+			int rank = RANKS[row + trick[ptr].card.getIndex()];
+			if (rank > best) {
+				best = rank;
+				winningPlay = trick[ptr];
+			}
+		}
+		return winningPlay;
+	}
+
+	private static int computeRank(int trump, int leadSuit, Card card) {
+		if (GamePlayUtils.isRightBauer(trump, card)) {
+			return RANK_RIGHT_BOWER;
+		} else if (GamePlayUtils.isLeftBauer(trump, card)) {
+			return RANK_RIGHT_BOWER - 1;
+		} else if (card.getSuit() == trump) {
+			// jacks of trump are bowers, so the ace is one below the left
+			int value = card.getValue() > Card.VALUE_JACK ? card.getValue() - 1 : card.getValue();
+			return RANK_LOWEST_TRUMP + value;
+		} else if (card.getSuit() == leadSuit) {
+			return card.getValue() + 1;
+		} else {
+			return RANK_NONE;
+		}
+	}
+}
@@ -1,11 +1,12 @@
 package com.randomsymphony.games.ochre.model;
 
-import com.randomsymphony.games.ochre.R;
-
-import android.content.res.Resources;
-import android.widget.Button;
-
-public class Card {
+/**
+ * One of the 24 cards in a euchre deck. Cards are immutable and there is
+ * exactly one instance of each, obtained through {@link #get(int)} or
+ * {@link #get(int, int)}, so cards can be compared by identity. Whether a card
+ * is face up depends on who holds it and is tracked by the {@link Player}.
+ */
+public final class Card {
 
 	public static final int SUIT_HEARTS = 0;
 	public static final int SUIT_SPADES = 1;
@@ -19,21 +20,37 @@ public class Card {
 	public static final int VALUE_KING = 4;
 	public static final int VALUE_ACE = 5;
 	
+	private static final Card[] DECK = new Card[CardSet.DECK_SIZE];
+
+	static {
+		for (int index = 0; index < DECK.length; index++) {
+			DECK[index] = new Card(CardSet.suitOf(index), CardSet.valueOf(index));
+		}
+	}
+
+	/**
+	 * @param index A card index as returned by {@link #getIndex()}.
+	 * @return The canonical instance of the card.
+	 */
+	public static Card get(int index) {
+		return DECK[index];
+	}
+
+	/**
+	 * @return The canonical instance of the card.
+	 */
+	public static Card get(int suit, int value) {
+		return DECK[CardSet.indexOf(suit, value)];
+	}
+
 	private final int mSuit;
 	private final int mValue;
-	private boolean mVisible = false;
+	private final int mIndex;
 	
-	/**
-	 * Create a card with the specified values which is not visible.
-	 */
-	public Card(int suit, int value) {
+	private Card(int suit, int value) {
 		mSuit = suit;
 		mValue = value;
-	}
-	
-	public Card(int suit, int value, boolean visible) {
-		this(suit, value);
-		mVisible = visible;
+		mIndex = CardSet.indexOf(suit, value);
 	}
 	
 	public int getSuit() {
@@ -43,13 +60,14 @@ public class Card {
 	public int getValue() {
 		return mValue;
 	}
-	
-	public boolean isVisible() {
-		return mVisible;
-	}
-	
-	public void setVisible(boolean isVisible) {
-		mVisible = isVisible;
+
+	/**
+	 * @return The position of this card in the deck, 0 through
+	 * {@link CardSet#DECK_SIZE} - 1, which is also its bit in a
+	 * {@link CardSet}.
+	 */
+	public int getIndex() {
+		return mIndex;
 	}
 	
 	@Override
@@ -97,43 +115,16 @@ public class Card {
 		return sb.toString();
 	}
 
-	/**
-	 * Does not consider whether or not the card is visible.
-	 */
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + mSuit;
-		result = prime * result + mValue;
-		return result;
+		return mIndex;
 	}
 
 	/**
-	 * Does not consider whether or not the card is visible.
+	 * There is only one instance of each card, so this is an identity check.
 	 */
 	@Override
 	public boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
-			return false;
-		Card other = (Card) obj;
-		if (mSuit != other.mSuit)
-			return false;
-		if (mValue != other.mValue)
-			return false;
-		return true;
-	}
-	
-	public static void formatButtonAsCard(Button button, Card card, Resources res) {
-		button.setText(card.toString());
-		if (card.getSuit() == Card.SUIT_DIAMONDS || card.getSuit() == Card.SUIT_HEARTS) {
-			button.setBackgroundColor(res.getColor(R.color.red_card));
-		} else {
-			button.setBackgroundColor(res.getColor(R.color.black_card));
-		}
+		return this == obj;
 	}
 }
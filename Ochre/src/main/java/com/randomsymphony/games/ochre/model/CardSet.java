@@ -0,0 +1,161 @@
+package com.randomsymphony.games.ochre.model;
+
+/**
+ * A set of cards packed into a single int. Each of the 24 cards in the deck
+ * owns one bit, the bit position is the card's index as returned by
+ * {@link Card#getIndex()}, so all the cards of a suit sit next to each other
+ * in ascending order of value. Sets are plain ints, so they can be copied,
+ * compared and stored without allocating anything and set operations are just
+ * the usual bitwise operators. This class only holds helpers for working with
+ * them.
+ *
+ * To walk the cards of a set without allocating, use
+ * <pre>
+ * for (int rest = set; rest != 0; rest &amp;= rest - 1) {
+ *     int index = CardSet.first(rest);
+ *     ...
+ * }
+ * </pre>
+ */
+public final class CardSet {
+
+	public static final int CARDS_PER_SUIT = 6;
+	public static final int NUMBER_OF_SUITS = 4;
+	public static final int DECK_SIZE = CARDS_PER_SUIT * NUMBER_OF_SUITS;
+
+	public static final int EMPTY = 0;
+	public static final int FULL_DECK = (1 << DECK_SIZE) - 1;
+
+	private static final int SUIT_BITS = (1 << CARDS_PER_SUIT) - 1;
+
+	/**
+	 * Do not instantiate!
+	 */
+	private CardSet() {
+	}
+
+	public static int indexOf(int suit, int value) {
+		return suit * CARDS_PER_SUIT + value;
+	}
+
+	public static int suitOf(int index) {
+		return index / CARDS_PER_SUIT;
+	}
+
+	public static int valueOf(int index) {
+		return index % CARDS_PER_SUIT;
+	}
+
+	/**
+	 * @return A set containing only the card at this index.
+	 */
+	public static int of(int index) {
+		return 1 << index;
+	}
+
+	public static int of(Card card) {
+		return 1 << card.getIndex();
+	}
+
+	public static int add(int set, int index) {
+		return set | (1 << index);
+	}
+
+	public static int add(int set, Card card) {
+		return set | (1 << card.getIndex());
+	}
+
+	public static int remove(int set, int index) {
+		return set & ~(1 << index);
+	}
+
+	public static int remove(int set, Card card) {
+		return set & ~(1 << card.getIndex());
+	}
+
+	public static boolean contains(int set, int index) {
+		return (set & (1 << index)) != 0;
+	}
+
+	public static boolean contains(int set, Card card) {
+		return (set & (1 << card.getIndex())) != 0;
+	}
+
+	public static int size(int set) {
+		return Integer.bitCount(set);
+	}
+
+	public static boolean isEmpty(int set) {
+		return set == EMPTY;
+	}
+
+	/**
+	 * @return A set holding every card of the suit.
+	 */
+	public static int suitMask(int suit) {
+		return SUIT_BITS << (suit * CARDS_PER_SUIT);
+	}
+
+	/**
+	 * @return The cards of the set which are of the given suit.
+	 */
+	public static int ofSuit(int set, int suit) {
+		return set & (SUIT_BITS << (suit * CARDS_PER_SUIT));
+	}
+
+	/**
+	 * @return The lowest index in the set or -1 if the set is empty.
+	 */
+	public static int first(int set) {
+		return set == EMPTY ? -1 : Integer.numberOfTrailingZeros(set);
+	}
+
+	/**
+	 * @return The highest index in the set or -1 if the set is empty.
+	 */
+	public static int last(int set) {
+		return 31 - Integer.numberOfLeadingZeros(set);
+	}
+
+	/**
+	 * @return The set without its lowest card.
+	 */
+	public static int removeFirst(int set) {
+		return set & (set - 1);
+	}
+
+	/**
+	 * @return The index of the nth lowest card in the set, or -1 if the set
+	 * does not contain that many cards.
+	 */
+	public static int nth(int set, int n) {
+		for (int ptr = 0; ptr < n && set != EMPTY; ptr++) {
+			set &= set - 1;
+		}
+		return first(set);
+	}
+
+	/**
+	 * Copy the indices of the set into an array in ascending order.
+	 * @return The number of indices written.
+	 */
+	public static int toIndices(int set, int[] dest) {
+		int count = 0;
+		for (int rest = set; rest != EMPTY; rest &= rest - 1) {
+			dest[count++] = Integer.numberOfTrailingZeros(rest);
+		}
+		return count;
+	}
+
+	public static String toString(int set) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int rest = set; rest != EMPTY; rest &= rest - 1) {
+			int index = Integer.numberOfTrailingZeros(rest);
+			sb.append(Card.get(index).toString());
+			if ((rest & (rest - 1)) != EMPTY) {
+				sb.append(", ");
+			}
+		}
+		return sb.append(']').toString();
+	}
+}
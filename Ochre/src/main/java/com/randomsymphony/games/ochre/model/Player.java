@@ -1,13 +1,44 @@
 package com.randomsymphony.games.ochre.model;
 
-import java.util.ArrayList;
 import java.util.UUID;
 
 public class Player {
 
+	/**
+	 * The seat of a player who has not been seated at a table.
+	 */
+	public static final int NO_SEAT = -1;
+
 	private String mName;
-	private ArrayList<Card> mCards = new ArrayList<Card>();
-	private final UUID mInstanceId;
+	/**
+	 * The cards in the player's hand as a {@link CardSet}.
+	 */
+	private int mCards = CardSet.EMPTY;
+	/**
+	 * The cards in the player's hand which are face up, a subset of
+	 * {@link #mCards}.
+	 */
+	private int mVisibleCards = CardSet.EMPTY;
+	/**
+	 * {@link Zobrist} fingerprint of the hand, kept up to date as cards come
+	 * and go.
+	 */
+	private long mFingerprint;
+	/**
+	 * {@link Zobrist#name(String)} of the name, kept with it.
+	 */
+	private long mNameFingerprint;
+	/**
+	 * The player's UUID, kept as its two halves so comparing players never
+	 * allocates.
+	 */
+	private final long mIdMostSigBits;
+	private final long mIdLeastSigBits;
+	/**
+	 * Where the player sits at the table, 0 to 3. Inside the game the seat is
+	 * the player's identity, the id is only used at the edges.
+	 */
+	private int mSeat = NO_SEAT;
 	
 	public Player(String name) {
 		this(name, new Card[0]);
@@ -18,11 +49,26 @@ public class Player {
 	}
 	
 	public Player(String name, Card[] cards, UUID playerId) {
-		mName = name;
+		setName(name);
 		for (int ptr = 0, limit = cards.length; ptr < limit; ptr++) {
-			mCards.add(cards[ptr]);
+			addCard(cards[ptr]);
+		}
+		mIdMostSigBits = playerId.getMostSignificantBits();
+		mIdLeastSigBits = playerId.getLeastSignificantBits();
+	}
+
+	/**
+	 * @return The index of the player with this id in the array or -1.
+	 */
+	public static int indexOf(Player[] players, UUID playerId) {
+		long most = playerId.getMostSignificantBits();
+		long least = playerId.getLeastSignificantBits();
+		for (int ptr = 0; ptr < players.length; ptr++) {
+			if (players[ptr].mIdMostSigBits == most && players[ptr].mIdLeastSigBits == least) {
+				return ptr;
+			}
 		}
-		mInstanceId = UUID.fromString(playerId.toString());
+		return -1;
 	}
 
 	public String getName() {
@@ -31,39 +77,132 @@ public class Player {
 
 	public void setName(String name) {
 		mName = name;
+		mNameFingerprint = Zobrist.name(name);
 	}
 	
+	/**
+	 * @return The cards in the hand ordered by {@link Card#getIndex()}. This
+	 * allocates, code that just needs to inspect the hand should use
+	 * {@link #getHand()}.
+	 */
 	public Card[] getCurrentCards() {
-		Card[] cards = new Card[mCards.size()];
-		for (int ptr = 0, limit = mCards.size(); ptr < limit; ptr++) {
-			cards[ptr] = mCards.get(ptr);
+		Card[] cards = new Card[CardSet.size(mCards)];
+		int ptr = 0;
+		for (int rest = mCards; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			cards[ptr++] = Card.get(CardSet.first(rest));
 		}
 		return cards;
 	}
+
+	/**
+	 * @return The hand as a {@link CardSet}.
+	 */
+	public int getHand() {
+		return mCards;
+	}
+
+	public int getCardCount() {
+		return CardSet.size(mCards);
+	}
+
+	public boolean hasCard(Card card) {
+		return CardSet.contains(mCards, card);
+	}
 	
 	public void removeCard(Card card) {
-		mCards.remove(card);
+		int cards = CardSet.remove(mCards, card);
+		setHand(cards, mVisibleCards & cards);
 	}
 	
 	public void addCard(Card card) {
-		mCards.add(card);
+		setHand(CardSet.add(mCards, card), mVisibleCards);
+	}
+
+	/**
+	 * @param cards A {@link CardSet} of cards to add to the hand.
+	 */
+	public void addCards(int cards) {
+		setHand(mCards | cards, mVisibleCards);
 	}
 	
 	public void hideCards() {
-		for (int ptr = 0, limit = mCards.size(); ptr < limit; ptr++) {
-			mCards.get(ptr).setVisible(false);
+		setHand(mCards, CardSet.EMPTY);
+	}
+
+	public boolean isCardVisible(Card card) {
+		return CardSet.contains(mVisibleCards, card);
+	}
+
+	/**
+	 * Turn a card in the hand face up or face down. Has no effect for cards
+	 * the player does not hold.
+	 */
+	public void setCardVisible(Card card, boolean visible) {
+		if (visible) {
+			setHand(mCards, CardSet.add(mVisibleCards, card) & mCards);
+		} else {
+			setHand(mCards, CardSet.remove(mVisibleCards, card));
 		}
 	}
+
+	/**
+	 * @return The face up cards in the hand as a {@link CardSet}.
+	 */
+	public int getVisibleCards() {
+		return mVisibleCards;
+	}
 	
 	public void discardHand() {
-		mCards.clear();
+		setHand(CardSet.EMPTY, CardSet.EMPTY);
 	}
 	
 	public void discardCard(Card card) {
-		mCards.remove(card);
+		removeCard(card);
 	}
 	
+	/**
+	 * @return The {@link Zobrist} fingerprint of the hand and which of its
+	 * cards are face up.
+	 */
+	public long getFingerprint() {
+		return mFingerprint;
+	}
+
+	/**
+	 * @return The {@link Zobrist} fingerprint of the name.
+	 */
+	public long getNameFingerprint() {
+		return mNameFingerprint;
+	}
+
+	private void setHand(int cards, int visibleCards) {
+		mFingerprint = Zobrist.toggle(mFingerprint, mCards ^ cards, mVisibleCards ^ visibleCards);
+		mCards = cards;
+		mVisibleCards = visibleCards;
+	}
+
+	public int getSeat() {
+		return mSeat;
+	}
+
+	public void setSeat(int seat) {
+		mSeat = seat;
+	}
+
+	/**
+	 * @return The id in its string form, this allocates and is meant for
+	 * serialization, use {@link #getSeat()} to tell players apart.
+	 */
 	public String getId() {
-		return mInstanceId.toString();
+		return getUuid().toString();
+	}
+
+	public UUID getUuid() {
+		return new UUID(mIdMostSigBits, mIdLeastSigBits);
+	}
+
+	public boolean hasId(UUID playerId) {
+		return mIdMostSigBits == playerId.getMostSignificantBits() &&
+				mIdLeastSigBits == playerId.getLeastSignificantBits();
 	}
 }
@@ -1,28 +1,64 @@
 package com.randomsymphony.games.ochre.model;
 
-import android.util.Log;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-
 import com.randomsymphony.games.ochre.logic.GameState;
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
 
 /**
  * @author cyngus
  * A Round is composed of a series of tricks and metadata about that series
  * of tricks such as who set trump, who dealt, whether the trump setter (the
  * "maker") is going alone, etc.
+ *
+ * Plays are kept as a flat log of bytes in the order they were made, each
+ * byte holds the seat of the player and the {@link Card#getIndex()} of the
+ * card, captured tricks are counted per seat. Tricks handed out by
+ * {@link #getCurrentTrick()} and friends are views built from that log. A
+ * whole round packs into {@link #PACKED_SIZE} bytes, see
+ * {@link #pack(byte[], int)}.
  */
 public class Round {
+
+	public static final int NUMBER_OF_TRICKS = 5;
+	public static final int NUMBER_OF_SEATS = 4;
+	public static final int MAX_PLAYS = NUMBER_OF_SEATS * NUMBER_OF_TRICKS;
+
+	// layout of a packed round, shared with RoundSnapshot
+	static final int PACKED_TRUMP = 0;
+	static final int PACKED_FLAGS = 1;
+	static final int PACKED_DEALER = 2;
+	static final int PACKED_MAKER = 3;
+	static final int PACKED_TOTAL_PLAYS = 4;
+	static final int PACKED_TRUMP_PASSES = 5;
+	static final int PACKED_TURN_UP = 6;
+	static final int PACKED_DISCARD = 7;
+	static final int PACKED_CAPTURED = 8;
+	static final int PACKED_PLAYS = PACKED_CAPTURED + NUMBER_OF_SEATS;
+	public static final int PACKED_SIZE = PACKED_PLAYS + MAX_PLAYS;
+
+	static final int FLAG_ALONE = 1;
+	static final int FLAG_PLAY_STARTED = 2;
+
+	static final int SEAT_SHIFT = 5;
+	static final int CARD_BITS = (1 << SEAT_SHIFT) - 1;
+
 	public Card trump;
-	public ArrayList<Play[]> tricks;
+	/**
+	 * The card turned up after the deal, which stays known after trump is
+	 * named in another suit.
+	 */
+	public Card turnUp;
+	/**
+	 * The card the dealer threw away after picking up {@link #turnUp}, null
+	 * until then and in rounds where nothing was picked up.
+	 */
+	public Card discard;
 	public boolean alone;
 	public final Player dealer;
 	public Player maker;
 	/**
-	 * Tracks the total number of plays in this round. This is needed mainly
-	 * because whenever a new trick starts we allocate a new array containing
-	 * enough space to hold the entire trick.
+	 * Tracks the total number of plays in this round, this is the length of
+	 * the play log and is only changed by {@link #addPlay(Play)}.
 	 */
 	public int totalPlays;
 	/**
@@ -32,95 +68,398 @@ public class Round {
 	 * certain game state transitions.
 	 */
 	public int trumpPasses;
+
+	private final Player[] mSeats;
+	/**
+	 * One byte per play, (seat << 5) | card index.
+	 */
+	private final byte[] mPlays = new byte[MAX_PLAYS];
+	/**
+	 * The number of tricks that the player in a given seat has taken, counted
+	 * as each trick is completed.
+	 */
+	private final int[] mCapturedTricks = new int[NUMBER_OF_SEATS];
+	private boolean mPlayStarted;
+	/**
+	 * {@link Zobrist} fingerprint of the play log, kept up to date as plays
+	 * are added.
+	 */
+	private long mPlayFingerprint;
+	// the following are derived from the play log as each play is added
+	private int mLeaderSeat = Player.NO_SEAT;
+	private int mLeadSuit = -1;
+	private int mWinningSeat = Player.NO_SEAT;
+	private int mWinningCard = -1;
+	private int mWinningRank;
+	private int mNextSeat = Player.NO_SEAT;
+
 	/**
-	 * The number of tricks that a given player has taken.
+	 * @param seats The players in seat order, the array is referenced, not
+	 * copied.
+	 * @param dealer The dealer, who must be one of the seated players.
 	 */
-	public HashMap<Player, Integer> mCapturedTrickCount = new HashMap<Player, Integer>();
-	
-	public Round(Player dealer) {
+	public Round(Player[] seats, Player dealer) {
+		if (seats.length != NUMBER_OF_SEATS) {
+			throw new IllegalArgumentException("A round needs " + NUMBER_OF_SEATS + " seats.");
+		}
+		mSeats = seats;
 		totalPlays = 0;
-		tricks = new ArrayList<Play[]>();
 		alone = false;
 		this.dealer = dealer;
 		trumpPasses = 0;
+		// fail early if the dealer isn't at the table
+		getSeat(dealer);
+	}
+
+	/**
+	 * Copy a round, the copy shares the seats and cards but not the plays.
+	 */
+	public Round(Round other) {
+		this(other.mSeats, other.dealer);
+		trump = other.trump;
+		turnUp = other.turnUp;
+		discard = other.discard;
+		alone = other.alone;
+		maker = other.maker;
+		totalPlays = other.totalPlays;
+		trumpPasses = other.trumpPasses;
+		mPlayStarted = other.mPlayStarted;
+		mPlayFingerprint = other.mPlayFingerprint;
+		mLeaderSeat = other.mLeaderSeat;
+		mLeadSuit = other.mLeadSuit;
+		mWinningSeat = other.mWinningSeat;
+		mWinningCard = other.mWinningCard;
+		mWinningRank = other.mWinningRank;
+		mNextSeat = other.mNextSeat;
+		System.arraycopy(other.mPlays, 0, mPlays, 0, MAX_PLAYS);
+		System.arraycopy(other.mCapturedTricks, 0, mCapturedTricks, 0, NUMBER_OF_SEATS);
+	}
+
+	/**
+	 * @return The seat of the player at this table.
+	 * @throws IllegalArgumentException if the player is not seated.
+	 */
+	public int getSeat(Player player) {
+		int seat = player.getSeat();
+		if (seat < 0 || seat >= NUMBER_OF_SEATS || mSeats[seat] != player) {
+			throw new IllegalArgumentException("Player is not seated in this round.");
+		}
+		return seat;
+	}
+
+	public int getDealerSeat() {
+		return dealer.getSeat();
+	}
+
+	/**
+	 * @return The maker's seat or {@link Player#NO_SEAT} if there is no maker.
+	 */
+	public int getMakerSeat() {
+		return maker == null ? Player.NO_SEAT : maker.getSeat();
+	}
+
+	public Player getPlayer(int seat) {
+		return mSeats[seat];
 	}
-	
+
+	/**
+	 * Trick play is starting, from now on there is a current trick even
+	 * before any card is played. The maker and whether they are going alone
+	 * must be set by now, the first lead is the first seat to the dealer's
+	 * left which is still in the round.
+	 */
+	public void startPlay() {
+		mPlayStarted = true;
+		if (totalPlays == 0) {
+			mNextSeat = SeatOrder.firstLeader(getDealerSeat(), getMakerSeat(), alone);
+		}
+	}
+
+	public boolean isPlayStarted() {
+		return mPlayStarted;
+	}
+
 	public void addPlay(Play play) {
+		addPlay(getSeat(play.player), play.card.getIndex());
+	}
+
+	public void addPlay(int seat, int cardIndex) {
 		// TODO check if this player has already played and if so, throw
-		Play[] currentTrick = tricks.get(tricks.size() - 1);
-		currentTrick[totalPlays % currentTrick.length] = play;
+		if (totalPlays == MAX_PLAYS) {
+			throw new IllegalStateException("All tricks in this round have been played.");
+		}
+		mPlays[totalPlays] = (byte) ((seat << SEAT_SHIFT) | cardIndex);
+		mPlayFingerprint ^= Zobrist.play(totalPlays, seat, cardIndex);
+
+		// keep track of who is winning the trick
+		int trumpSuit = trump.getSuit();
+		if (totalPlays % getActivePlayerCount() == 0) {
+			mLeaderSeat = seat;
+			mLeadSuit = TrickEvaluator.effectiveSuit(trumpSuit, cardIndex);
+			mWinningSeat = seat;
+			mWinningCard = cardIndex;
+			mWinningRank = TrickEvaluator.rank(trumpSuit, mLeadSuit, cardIndex);
+		} else {
+			int rank = TrickEvaluator.rank(trumpSuit, mLeadSuit, cardIndex);
+			if (rank > mWinningRank) {
+				mWinningSeat = seat;
+				mWinningCard = cardIndex;
+				mWinningRank = rank;
+			}
+		}
 		totalPlays++;
+
+		if (totalPlays % getActivePlayerCount() == 0) {
+			// trick is done, the winner takes it and leads the next one
+			mCapturedTricks[mWinningSeat]++;
+			mNextSeat = mWinningSeat;
+		} else {
+			mNextSeat = SeatOrder.nextSeat(seat, getMakerSeat(), alone);
+		}
+	}
+
+	/**
+	 * @return The seat which leads the trick in progress, or led the last
+	 * trick if the next one has not started.
+	 */
+	public int getLeaderSeat() {
+		return mLeaderSeat;
+	}
+
+	/**
+	 * @return The seat winning the trick in progress, or which won the last
+	 * trick if the next one has not started.
+	 */
+	public int getWinningSeat() {
+		return mWinningSeat;
+	}
+
+	/**
+	 * @return The {@link Card#getIndex()} of the card held by
+	 * {@link #getWinningSeat()} or -1 if nothing has been played.
+	 */
+	public int getWinningCard() {
+		return mWinningCard;
+	}
+
+	/**
+	 * @return The seat expected to play next or {@link Player#NO_SEAT} if
+	 * trick play has not started.
+	 */
+	public int getNextSeat() {
+		return mNextSeat;
+	}
+
+	/**
+	 * @return The number of cards in the trick in progress, zero when a trick
+	 * has just been completed.
+	 */
+	public int getCurrentTrickPlayCount() {
+		return totalPlays % getActivePlayerCount();
+	}
+
+	/**
+	 * @param team 0 for the team of seats 0 and 2, 1 for seats 1 and 3.
+	 * @return The tricks the team has taken in this round.
+	 */
+	public int getTeamTricks(int team) {
+		return mCapturedTricks[team] + mCapturedTricks[team + 2];
+	}
+
+
+	/**
+	 * @return The seat of whoever made the nth play of the round.
+	 */
+	public int getPlaySeat(int play) {
+		return mPlays[play] >> SEAT_SHIFT;
+	}
+
+	/**
+	 * @return The {@link Card#getIndex()} of the nth play of the round.
+	 */
+	public int getPlayCard(int play) {
+		return mPlays[play] & CARD_BITS;
 	}
-	
+
+	public Play getPlay(int play) {
+		byte packed = mPlays[play];
+		return new Play(mSeats[packed >> SEAT_SHIFT], Card.get(packed & CARD_BITS));
+	}
+
+	/**
+	 * @return The {@link Card#getIndex()} of the card which led the trick in
+	 * progress or -1 if no card has been played in it yet.
+	 */
+	public int getLeadCard() {
+		int playsInTrick = totalPlays % getActivePlayerCount();
+		return playsInTrick == 0 ? -1 : getPlayCard(totalPlays - playsInTrick);
+	}
+
 	public int getActivePlayerCount() {
 		return alone ? 3 : 4;
 	}
-	
+
 	public int getCompletedTricks() {
-		if (tricks.size() == 0) {
+		return totalPlays / getActivePlayerCount();
+	}
+
+	/**
+	 * @return The number of tricks started so far, including an empty trick
+	 * which is waiting for its first card.
+	 */
+	public int getTrickCount() {
+		if (!mPlayStarted) {
 			return 0;
 		}
-		
-		// check if current trick is completed
-		Play[] currentTrick = tricks.get(tricks.size() - 1);
-		if (currentTrick.length == getActivePlayerCount()) {
-			// new trick is starting
-			return tricks.size();
-		} else {
-			// trick is in progress
-			return tricks.size() - 1;
+		return Math.min(getCompletedTricks() + 1, NUMBER_OF_TRICKS);
+	}
+
+	/**
+	 * @return The plays of the trick in play order, positions not played yet
+	 * are null.
+	 */
+	public Play[] getTrick(int trick) {
+		int activePlayers = getActivePlayerCount();
+		Play[] plays = new Play[activePlayers];
+		for (int ptr = 0, play = trick * activePlayers;
+				ptr < activePlayers && play < totalPlays; ptr++, play++) {
+			plays[ptr] = getPlay(play);
 		}
+		return plays;
 	}
-	
+
 	public Play[] getCurrentTrick() {
-		if (tricks.size() == 0) {
+		int trickCount = getTrickCount();
+		if (trickCount == 0) {
 			return null;
 		} else {
-			return tricks.get(tricks.size() - 1);
+			return getTrick(trickCount - 1);
 		}
 	}
-	
+
 	/**
 	 * @return The last completed trick or null if there is none
 	 */
 	public Play[] getLastCompletedTrick() {
-		if (totalPlays < getActivePlayerCount()) {
+		int completed = getCompletedTricks();
+		if (completed == 0) {
 			return null;
 		} else {
-			// for example, 11 total plays, 4 players means we want the second
-			// completed trick, so (11 - 11 % 4) / 4 - 1 == (11 - 3) / 4 -1 ==
-			// 8 / 4 - 1 == 1
-			Log.d("JMATT", "Total plays: " + totalPlays + " players: " + getActivePlayerCount());
-			int trickOffset = (totalPlays - totalPlays % getActivePlayerCount()) /
-					getActivePlayerCount() - 1;
-			return tricks.get(trickOffset);
+			return getTrick(completed - 1);
 		}
 	}
-	
+
 	/**
 	 * @return true if there are no tricks or if the current one has reached
 	 * {@link #getActivePlayerCount()} number of cards.
 	 */
 	public boolean isCurrentTrickComplete() {
-		Play[] currentTrick = getCurrentTrick();
-		if (currentTrick == null) {
+		if (!mPlayStarted) {
 			return true;
 		} else {
 			return totalPlays % getActivePlayerCount() == 0;
 		}
 	}
-	
+
+	public int getCapturedTricks(Player player) {
+		return mCapturedTricks[getSeat(player)];
+	}
+
+	public int getCapturedTricks(int seat) {
+		return mCapturedTricks[seat];
+	}
+
+	public void setCapturedTricks(int seat, int count) {
+		mCapturedTricks[seat] = count;
+	}
+
 	/**
-	 * Adds a captured trick for this player.
-	 * @return The total number of tricks captured by this player
+	 * @return The {@link Zobrist} fingerprint of the round. The play log is
+	 * tracked as plays are made, the remaining fields are few enough to fold
+	 * in on every call.
 	 */
-	public int addCapturedTrick(Player player) {
-		if (mCapturedTrickCount.containsKey(player)) {
-			mCapturedTrickCount.put(player, mCapturedTrickCount.get(player) + 1);
-		} else {
-			mCapturedTrickCount.put(player, 1);
+	public long getFingerprint() {
+		return mPlayFingerprint ^ getFieldFingerprint();
+	}
+
+	/**
+	 * @return The same value as {@link #getFingerprint()}, computed from
+	 * scratch.
+	 */
+	public long computeFingerprint() {
+		return computePlayFingerprint() ^ getFieldFingerprint();
+	}
+
+	private long computePlayFingerprint() {
+		long fingerprint = 0L;
+		for (int ptr = 0; ptr < totalPlays; ptr++) {
+			fingerprint ^= Zobrist.play(ptr, getPlaySeat(ptr), getPlayCard(ptr));
+		}
+		return fingerprint;
+	}
+
+	private long getFieldFingerprint() {
+		long fingerprint = Zobrist.feature(Zobrist.TAG_TRUMP, trump == null ? -1 : trump.getIndex())
+				^ Zobrist.feature(Zobrist.TAG_TURN_UP, turnUp == null ? -1 : turnUp.getIndex())
+				^ Zobrist.feature(Zobrist.TAG_DISCARD, discard == null ? -1 : discard.getIndex())
+				^ Zobrist.feature(Zobrist.TAG_ALONE, alone ? 1 : 0)
+				^ Zobrist.feature(Zobrist.TAG_PLAY_STARTED, mPlayStarted ? 1 : 0)
+				^ Zobrist.feature(Zobrist.TAG_DEALER, getDealerSeat())
+				^ Zobrist.feature(Zobrist.TAG_MAKER, getMakerSeat())
+				^ Zobrist.feature(Zobrist.TAG_TRUMP_PASSES, trumpPasses);
+		for (int ptr = 0; ptr < NUMBER_OF_SEATS; ptr++) {
+			fingerprint ^= Zobrist.feature(Zobrist.TAG_CAPTURED,
+					ptr * (NUMBER_OF_TRICKS + 1) + mCapturedTricks[ptr]);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Write this round as {@link #PACKED_SIZE} bytes.
+	 */
+	public void pack(byte[] dest, int offset) {
+		dest[offset + PACKED_TRUMP] = (byte) (trump == null ? -1 : trump.getIndex());
+		dest[offset + PACKED_FLAGS] = (byte) ((alone ? FLAG_ALONE : 0) |
+				(mPlayStarted ? FLAG_PLAY_STARTED : 0));
+		dest[offset + PACKED_DEALER] = (byte) getSeat(dealer);
+		dest[offset + PACKED_MAKER] = (byte) (maker == null ? -1 : getSeat(maker));
+		dest[offset + PACKED_TOTAL_PLAYS] = (byte) totalPlays;
+		dest[offset + PACKED_TRUMP_PASSES] = (byte) trumpPasses;
+		dest[offset + PACKED_TURN_UP] = (byte) (turnUp == null ? -1 : turnUp.getIndex());
+		dest[offset + PACKED_DISCARD] = (byte) (discard == null ? -1 : discard.getIndex());
+		for (int ptr = 0; ptr < NUMBER_OF_SEATS; ptr++) {
+			dest[offset + PACKED_CAPTURED + ptr] = (byte) mCapturedTricks[ptr];
+		}
+		System.arraycopy(mPlays, 0, dest, offset + PACKED_PLAYS, MAX_PLAYS);
+	}
+
+	/**
+	 * Read a round written by {@link #pack(byte[], int)}.
+	 * @param seats The players in seat order.
+	 */
+	public static Round unpack(Player[] seats, byte[] source, int offset) {
+		Round round = new Round(seats, seats[source[offset + PACKED_DEALER]]);
+		int trumpIndex = source[offset + PACKED_TRUMP];
+		round.trump = trumpIndex < 0 ? null : Card.get(trumpIndex);
+		int turnUpIndex = source[offset + PACKED_TURN_UP];
+		round.turnUp = turnUpIndex < 0 ? null : Card.get(turnUpIndex);
+		int discardIndex = source[offset + PACKED_DISCARD];
+		round.discard = discardIndex < 0 ? null : Card.get(discardIndex);
+		int flags = source[offset + PACKED_FLAGS];
+		round.alone = (flags & FLAG_ALONE) != 0;
+		int makerSeat = source[offset + PACKED_MAKER];
+		round.maker = makerSeat < 0 ? null : seats[makerSeat];
+		round.trumpPasses = source[offset + PACKED_TRUMP_PASSES];
+		if ((flags & FLAG_PLAY_STARTED) != 0) {
+			round.startPlay();
+		}
+
+		// replay the plays so captured tricks and the trick in progress are
+		// worked out again
+		for (int ptr = 0, limit = source[offset + PACKED_TOTAL_PLAYS]; ptr < limit; ptr++) {
+			byte play = source[offset + PACKED_PLAYS + ptr];
+			round.addPlay(play >> SEAT_SHIFT, play & CARD_BITS);
 		}
-		
-		return mCapturedTrickCount.get(player);
+		return round;
 	}
 }
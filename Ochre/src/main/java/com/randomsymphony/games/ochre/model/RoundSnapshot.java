@@ -0,0 +1,120 @@
+package com.randomsymphony.games.ochre.model;
+
+/**
+ * An immutable copy of a {@link Round}. The round is held in its packed form
+ * so taking a snapshot is a fixed amount of work no matter how far the game
+ * has gone. Each snapshot links to the snapshot of the round before it, those
+ * links are shared by every later snapshot of the game, so the rounds that are
+ * over are only ever copied once.
+ */
+public final class RoundSnapshot {
+
+	private final byte[] mPacked = new byte[Round.PACKED_SIZE];
+	private final Player[] mSeats;
+	private final RoundSnapshot mPrevious;
+	private final int mNumber;
+
+	/**
+	 * @param round The round to copy.
+	 * @param seats The players in seat order, never modified.
+	 * @param previous The snapshot of the round before this one or null if
+	 * this is the first round of the game.
+	 */
+	public RoundSnapshot(Round round, Player[] seats, RoundSnapshot previous) {
+		round.pack(mPacked, 0);
+		mSeats = seats;
+		mPrevious = previous;
+		mNumber = previous == null ? 0 : previous.mNumber + 1;
+	}
+
+	/**
+	 * @return The round played before this one or null.
+	 */
+	public RoundSnapshot getPrevious() {
+		return mPrevious;
+	}
+
+	/**
+	 * @return The position of this round in the game, starting at zero.
+	 */
+	public int getNumber() {
+		return mNumber;
+	}
+
+	public Card getTrump() {
+		int trumpIndex = mPacked[Round.PACKED_TRUMP];
+		return trumpIndex < 0 ? null : Card.get(trumpIndex);
+	}
+
+	public Card getTurnUp() {
+		int turnUpIndex = mPacked[Round.PACKED_TURN_UP];
+		return turnUpIndex < 0 ? null : Card.get(turnUpIndex);
+	}
+
+	public Card getDiscard() {
+		int discardIndex = mPacked[Round.PACKED_DISCARD];
+		return discardIndex < 0 ? null : Card.get(discardIndex);
+	}
+
+	public boolean isAlone() {
+		return (mPacked[Round.PACKED_FLAGS] & Round.FLAG_ALONE) != 0;
+	}
+
+	public boolean isPlayStarted() {
+		return (mPacked[Round.PACKED_FLAGS] & Round.FLAG_PLAY_STARTED) != 0;
+	}
+
+	public int getDealerSeat() {
+		return mPacked[Round.PACKED_DEALER];
+	}
+
+	/**
+	 * @return The maker's seat or {@link Player#NO_SEAT}.
+	 */
+	public int getMakerSeat() {
+		return mPacked[Round.PACKED_MAKER];
+	}
+
+	public Player getPlayer(int seat) {
+		return mSeats[seat];
+	}
+
+	public int getTotalPlays() {
+		return mPacked[Round.PACKED_TOTAL_PLAYS];
+	}
+
+	public int getTrumpPasses() {
+		return mPacked[Round.PACKED_TRUMP_PASSES];
+	}
+
+	public int getCapturedTricks(int seat) {
+		return mPacked[Round.PACKED_CAPTURED + seat];
+	}
+
+	public int getPlaySeat(int play) {
+		return mPacked[Round.PACKED_PLAYS + play] >> Round.SEAT_SHIFT;
+	}
+
+	public int getPlayCard(int play) {
+		return mPacked[Round.PACKED_PLAYS + play] & Round.CARD_BITS;
+	}
+
+	public Play getPlay(int play) {
+		return new Play(mSeats[getPlaySeat(play)], Card.get(getPlayCard(play)));
+	}
+
+	/**
+	 * @return A new mutable copy of the round.
+	 */
+	public Round toRound() {
+		return Round.unpack(mSeats, mPacked, 0);
+	}
+
+	/**
+	 * @param seats The players to seat in the copy.
+	 * @return A new mutable copy of the round.
+	 */
+	public Round toRound(Player[] seats) {
+		return Round.unpack(seats, mPacked, 0);
+	}
+}
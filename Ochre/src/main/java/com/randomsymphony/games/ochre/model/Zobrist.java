@@ -0,0 +1,146 @@
+package com.randomsymphony.games.ochre.model;
+
+/**
+ * Keys for 64-bit Zobrist fingerprints of the game. Every feature of a game,
+ * such as a card in a hand or a play in a round, has a random key and a
+ * fingerprint is the XOR of the keys of the features present, so it can be
+ * kept up to date one change at a time.
+ *
+ * The keys come from a fixed seed, every device computes the same
+ * fingerprint for the same game. Changing the seed or the way keys are
+ * derived changes every fingerprint.
+ */
+public final class Zobrist {
+
+	public static final int TAG_GAME_ID = 0;
+	public static final int TAG_PHASE = 1;
+	public static final int TAG_TEAM_SCORE = 2;
+	public static final int TAG_SEAT = 3;
+	public static final int TAG_ROUND = 4;
+	public static final int TAG_TRUMP = 5;
+	public static final int TAG_ALONE = 6;
+	public static final int TAG_PLAY_STARTED = 7;
+	public static final int TAG_DEALER = 8;
+	public static final int TAG_MAKER = 9;
+	public static final int TAG_TRUMP_PASSES = 10;
+	public static final int TAG_CAPTURED = 11;
+	public static final int TAG_NAME = 12;
+	public static final int TAG_TURN_UP = 13;
+	public static final int TAG_DISCARD = 14;
+	private static final int NUMBER_OF_TAGS = 15;
+
+	private static final long SEED = 0x4F636872655A6F62L;
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private static final int CARDS = CardSet.DECK_SIZE;
+	private static final long[] CARD_KEYS = new long[CARDS];
+	private static final long[] VISIBLE_KEYS = new long[CARDS];
+	/**
+	 * Indexed by [play number][seat][card].
+	 */
+	private static final long[] PLAY_KEYS = new long[Round.MAX_PLAYS * Round.NUMBER_OF_SEATS * CARDS];
+	private static final long[] TAG_KEYS = new long[NUMBER_OF_TAGS];
+
+	static {
+		long state = SEED;
+		for (int ptr = 0; ptr < CARDS; ptr++) {
+			CARD_KEYS[ptr] = mix(state += GOLDEN_GAMMA);
+		}
+		for (int ptr = 0; ptr < CARDS; ptr++) {
+			VISIBLE_KEYS[ptr] = mix(state += GOLDEN_GAMMA);
+		}
+		for (int ptr = 0; ptr < PLAY_KEYS.length; ptr++) {
+			PLAY_KEYS[ptr] = mix(state += GOLDEN_GAMMA);
+		}
+		for (int ptr = 0; ptr < NUMBER_OF_TAGS; ptr++) {
+			TAG_KEYS[ptr] = mix(state += GOLDEN_GAMMA);
+		}
+	}
+
+	/**
+	 * Do not instantiate!
+	 */
+	private Zobrist() {
+	}
+
+	/**
+	 * The SplitMix64 finalizer, spreads every input bit over the output.
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return The key of a card held in a hand.
+	 */
+	public static long card(int cardIndex) {
+		return CARD_KEYS[cardIndex];
+	}
+
+	/**
+	 * @return The key of a card held face up.
+	 */
+	public static long visible(int cardIndex) {
+		return VISIBLE_KEYS[cardIndex];
+	}
+
+	/**
+	 * @return The key of the nth play of a round.
+	 */
+	public static long play(int play, int seat, int cardIndex) {
+		return PLAY_KEYS[(play * Round.NUMBER_OF_SEATS + seat) * CARDS + cardIndex];
+	}
+
+	/**
+	 * @return The key of a single valued feature, such as the game phase.
+	 */
+	public static long feature(int tag, long value) {
+		return mix(TAG_KEYS[tag] ^ (value * GOLDEN_GAMMA));
+	}
+
+	/**
+	 * @return The key of a player's name, null included.
+	 */
+	public static long name(String name) {
+		if (name == null) {
+			return feature(TAG_NAME, -1);
+		}
+		long fingerprint = feature(TAG_NAME, name.length());
+		for (int ptr = 0, limit = name.length(); ptr < limit; ptr++) {
+			fingerprint = mix(fingerprint ^ name.charAt(ptr));
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Fold the fingerprint of a part, such as a player's hand or a round, into
+	 * a key which also depends on where the part sits.
+	 */
+	public static long part(int tag, int position, long fingerprint) {
+		return mix(fingerprint ^ feature(tag, position));
+	}
+
+	/**
+	 * @return The fingerprint of a hand computed from scratch.
+	 */
+	public static long hand(int cards, int visibleCards) {
+		return toggle(0L, cards, visibleCards);
+	}
+
+	/**
+	 * @param changedCards The cards which were added or removed.
+	 * @param changedVisible The cards which were turned up or down.
+	 * @return The hand fingerprint after the change.
+	 */
+	public static long toggle(long fingerprint, int changedCards, int changedVisible) {
+		for (int rest = changedCards; rest != CardSet.EMPTY; rest &= rest - 1) {
+			fingerprint ^= CARD_KEYS[Integer.numberOfTrailingZeros(rest)];
+		}
+		for (int rest = changedVisible; rest != CardSet.EMPTY; rest &= rest - 1) {
+			fingerprint ^= VISIBLE_KEYS[Integer.numberOfTrailingZeros(rest)];
+		}
+		return fingerprint;
+	}
+}
@@ -0,0 +1,550 @@
+package com.randomsymphony.games.ochre.search;
+
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Works out how many tricks each team takes from a position where every hand
+ * is known and everyone plays perfectly. The search is alpha-beta over the
+ * tricks left, values are the tricks taken by the team of seats 0 and 2.
+ * Cards of a hand which are next to each other in their suit once the played
+ * cards are taken out are equivalent and only one of them is searched, moves
+ * are tried cheapest winner first, and positions at the start of a trick are
+ * kept in a {@link TranspositionTable} along with the move which did best
+ * there, which is tried first next time. The table outlives a solve, so
+ * solving many deals gets faster as it goes. With a {@link Tablebase} set
+ * the last tricks are looked up.
+ *
+ * A solver is not thread safe, use one per thread. Solvers on different
+ * threads may share a table.
+ */
+public class DoubleDummySolver {
+
+	/**
+	 * The default number of transposition table entries, as a power of two.
+	 */
+	public static final int DEFAULT_TABLE_BITS = 16;
+
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	private static final int SUITS = CardSet.NUMBER_OF_SUITS;
+	static final int MAX_MOVES = CardSet.CARDS_PER_SUIT + 1;
+
+	/**
+	 * Indexed by [trump][effective suit], the cards of the suit from highest
+	 * to lowest, -1 past the end.
+	 */
+	static final byte[] ORDER = new byte[SUITS * SUITS * MAX_MOVES];
+
+	static {
+		for (int trump = 0; trump < SUITS; trump++) {
+			for (int suit = 0; suit < SUITS; suit++) {
+				int row = (trump * SUITS + suit) * MAX_MOVES;
+				int count = 0;
+				for (int rank = TrickEvaluator.RANK_RIGHT_BOWER; rank > TrickEvaluator.RANK_NONE; rank--) {
+					for (int card = 0; card < CardSet.DECK_SIZE; card++) {
+						if (TrickEvaluator.effectiveSuit(trump, card) == suit &&
+								TrickEvaluator.rank(trump, suit, card) == rank) {
+							ORDER[row + count++] = (byte) card;
+						}
+					}
+				}
+				for (; count < MAX_MOVES; count++) {
+					ORDER[row + count] = -1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Table data holds the lower bound in bits 0-3, the upper bound in bits
+	 * 4-7 and the best card plus one in bits 8-12, this bit keeps it from
+	 * being zero.
+	 */
+	private static final long DATA_PRESENT = 1L << 16;
+
+	private final TranspositionTable mTable;
+	private Tablebase mTablebase;
+
+	private final int[] mHands = new int[SEATS];
+	private int mTrump;
+	private int mMaker;
+	private boolean mAlone;
+	private int mActive;
+	private int mOnTable;
+	/**
+	 * Indexed by [depth][move].
+	 */
+	private final int[] mMoves = new int[(Round.MAX_PLAYS + 1) * MAX_MOVES];
+	private final int[] mScores = new int[MAX_MOVES];
+	private long mNodes;
+
+	public DoubleDummySolver() {
+		this(new TranspositionTable(DEFAULT_TABLE_BITS));
+	}
+
+	/**
+	 * @param table Where to remember positions, may be shared with solvers
+	 * on other threads.
+	 */
+	public DoubleDummySolver(TranspositionTable table) {
+		mTable = table;
+	}
+
+	/**
+	 * Solve the round in progress, looking at every player's hand.
+	 * @return The solution, counting the tricks already taken.
+	 */
+	public Solution solve(Round round) {
+		if (!round.isPlayStarted() ||
+				round.totalPlays == round.getActivePlayerCount() * Round.NUMBER_OF_TRICKS) {
+			throw new IllegalStateException("No trick is being played.");
+		}
+		int[] hands = new int[SEATS];
+		for (int seat = 0; seat < SEATS; seat++) {
+			hands[seat] = round.getPlayer(seat).getHand();
+		}
+		int plays = round.getCurrentTrickPlayCount();
+		int[] trick = new int[plays];
+		for (int ptr = 0; ptr < plays; ptr++) {
+			trick[ptr] = round.getPlayCard(round.totalPlays - plays + ptr);
+		}
+		int leader = plays == 0 ? round.getNextSeat() : round.getLeaderSeat();
+		return solve(hands, round.trump.getSuit(), round.getMakerSeat(), round.alone, leader,
+				trick, plays, round.getTeamTricks(0), round.getTeamTricks(1));
+	}
+
+	/**
+	 * Solve a position from its parts.
+	 * @param hands {@link CardSet}s indexed by seat, without the cards played
+	 * to the current trick. The hand of a lone maker's partner is ignored.
+	 * @param maker The maker's seat, only used when alone is set.
+	 * @param leader The seat which leads, or led, the current trick.
+	 * @param trick The cards played to the current trick so far, in order.
+	 * @param trickPlays The number of cards in trick.
+	 * @param teamOneTricks Tricks team one has already taken, added to the
+	 * result.
+	 */
+	public Solution solve(int[] hands, int trump, int maker, boolean alone, int leader, int[] trick,
+			int trickPlays, int teamOneTricks, int teamTwoTricks) {
+		mTrump = trump;
+		mMaker = maker;
+		mAlone = alone;
+		mActive = alone ? SEATS - 1 : SEATS;
+		int sittingOut = SeatOrder.sittingOut(maker, alone);
+		for (int seat = 0; seat < SEATS; seat++) {
+			mHands[seat] = seat == sittingOut ? CardSet.EMPTY : hands[seat];
+		}
+		if (trickPlays >= mActive) {
+			throw new IllegalArgumentException("The current trick is already complete.");
+		}
+
+		// replay the trick so far
+		int seat = leader;
+		int leadSuit = -1;
+		int winningSeat = leader;
+		int winningRank = -1;
+		mOnTable = CardSet.EMPTY;
+		for (int ptr = 0; ptr < trickPlays; ptr++) {
+			int card = trick[ptr];
+			if (ptr == 0) {
+				leadSuit = TrickEvaluator.effectiveSuit(trump, card);
+			}
+			int rank = TrickEvaluator.rank(trump, leadSuit, card);
+			if (rank > winningRank) {
+				winningSeat = seat;
+				winningRank = rank;
+			}
+			mOnTable |= CardSet.of(card);
+			seat = SeatOrder.nextSeat(seat, maker, alone);
+		}
+
+		int tricksLeft = CardSet.size(mHands[seat]);
+		if (tricksLeft == 0) {
+			throw new IllegalArgumentException("No cards left to play.");
+		}
+		int dealt = mOnTable;
+		for (int ptr = 0, other = leader; ptr < mActive; ptr++) {
+			// seats which already played to the trick hold one card less
+			int expected = ptr < trickPlays ? tricksLeft - 1 : tricksLeft;
+			if (CardSet.size(mHands[other]) != expected || (dealt & mHands[other]) != CardSet.EMPTY) {
+				throw new IllegalArgumentException("The hands don't fit together.");
+			}
+			dealt |= mHands[other];
+			other = SeatOrder.nextSeat(other, maker, alone);
+		}
+
+		int legal = legal(mHands[seat], leadSuit);
+		int[] moveTricks = new int[CardSet.DECK_SIZE];
+		int team = seat % 2;
+		int best = -1;
+		int bestCard = -1;
+		for (int rest = legal; rest != CardSet.EMPTY; rest &= rest - 1) {
+			int card = CardSet.first(rest);
+			int teamOne = play(seat, trickPlays, leadSuit, winningSeat, winningRank, card, 0,
+					tricksLeft);
+			int tricks = team == 0 ? teamOne : tricksLeft - teamOne;
+			moveTricks[card] = tricks + (team == 0 ? teamOneTricks : teamTwoTricks);
+			if (tricks > best || (tricks == best && ownRank(card) < ownRank(bestCard))) {
+				best = tricks;
+				bestCard = card;
+			}
+		}
+		int teamOne = team == 0 ? best : tricksLeft - best;
+		return new Solution(seat, legal, bestCard, moveTricks, teamOneTricks + teamOne,
+				teamTwoTricks + tricksLeft - teamOne);
+	}
+
+	/**
+	 * @return The number of positions searched by this solver so far.
+	 */
+	public long getNodes() {
+		return mNodes;
+	}
+
+	public TranspositionTable getTable() {
+		return mTable;
+	}
+
+	/**
+	 * Look the last tricks up instead of searching them, or search them again
+	 * with null.
+	 */
+	public void setTablebase(Tablebase tablebase) {
+		mTablebase = tablebase;
+	}
+
+	/**
+	 * @param leadSuit The effective suit led or -1 when leading.
+	 */
+	private int legal(int hand, int leadSuit) {
+		if (leadSuit < 0) {
+			return hand;
+		}
+		int following = hand & TrickEvaluator.suitMask(mTrump, leadSuit);
+		return following == CardSet.EMPTY ? hand : following;
+	}
+
+	/**
+	 * The rank of a card in its own suit, to order leads and discards.
+	 */
+	private int ownRank(int card) {
+		return card < 0 ? Integer.MAX_VALUE :
+				TrickEvaluator.rank(mTrump, TrickEvaluator.effectiveSuit(mTrump, card), card);
+	}
+
+	/**
+	 * Play a card and search the rest of the round.
+	 * @return The tricks team one takes from the current trick on.
+	 */
+	private int play(int seat, int plays, int leadSuit, int winningSeat, int winningRank, int card,
+			int alpha, int beta) {
+		int bit = CardSet.of(card);
+		mHands[seat] &= ~bit;
+		if (plays == 0) {
+			leadSuit = TrickEvaluator.effectiveSuit(mTrump, card);
+		}
+		int rank = TrickEvaluator.rank(mTrump, leadSuit, card);
+		if (rank > winningRank) {
+			winningSeat = seat;
+			winningRank = rank;
+		}
+		int value;
+		if (plays + 1 == mActive) {
+			int onTable = mOnTable;
+			mOnTable = CardSet.EMPTY;
+			int won = winningSeat % 2 == 0 ? 1 : 0;
+			value = won + search(winningSeat, 0, -1, winningSeat, -1, alpha - won, beta - won);
+			mOnTable = onTable;
+		} else {
+			mOnTable |= bit;
+			value = search(SeatOrder.nextSeat(seat, mMaker, mAlone), plays + 1, leadSuit,
+					winningSeat, winningRank, alpha, beta);
+			mOnTable &= ~bit;
+		}
+		mHands[seat] |= bit;
+		return value;
+	}
+
+	/**
+	 * @return The tricks team one takes from here, fail soft: at most alpha
+	 * when the true value is at most alpha, at least beta when it is at least
+	 * beta.
+	 */
+	private int search(int seat, int plays, int leadSuit, int winningSeat, int winningRank,
+			int alpha, int beta) {
+		mNodes++;
+		int hand = mHands[seat];
+		int tricksLeft = CardSet.size(hand);
+		if (tricksLeft == 0) {
+			return 0;
+		}
+		if (beta <= 0) {
+			return 0;
+		}
+		if (alpha >= tricksLeft) {
+			return tricksLeft;
+		}
+		if (plays == 0 && tricksLeft == 1) {
+			return lastTrick(seat);
+		}
+		if (plays == 0 && mTablebase != null && tricksLeft <= Tablebase.MAX_TRICKS) {
+			int tricks = mTablebase.probe(mHands, mTrump, seat, mMaker, mAlone);
+			return seat % 2 == 0 ? tricks : tricksLeft - tricks;
+		}
+
+		long key = 0;
+		int hashCard = -1;
+		int lower = 0;
+		int upper = tricksLeft;
+		if (plays == 0) {
+			// whoever holds the top trump takes a trick with each of them
+			int sure = sureTricks();
+			if (sure > 0 && sure >= beta) {
+				return sure;
+			} else if (sure < 0 && tricksLeft + sure <= alpha) {
+				return tricksLeft + sure;
+			}
+
+			key = TranspositionTable.positionKey(mHands, seat, mTrump);
+			long data = mTable.probe(key);
+			if (data != TranspositionTable.MISS) {
+				lower = (int) data & 0xF;
+				upper = (int) (data >> 4) & 0xF;
+				hashCard = (int) (data >> 8 & 0x1F) - 1;
+				if (lower >= beta || lower == upper) {
+					return lower;
+				}
+				if (upper <= alpha) {
+					return upper;
+				}
+				alpha = Math.max(alpha, lower);
+				beta = Math.min(beta, upper);
+			}
+		}
+
+		int base = (Round.MAX_PLAYS - tricksLeft * mActive + plays) * MAX_MOVES;
+		int count = generate(seat, plays, leadSuit, winningSeat, winningRank, base);
+		for (int ptr = 1; ptr < count; ptr++) {
+			if (mMoves[base + ptr] == hashCard) {
+				// the card which did best last time goes first
+				System.arraycopy(mMoves, base, mMoves, base + 1, ptr);
+				mMoves[base] = hashCard;
+				break;
+			}
+		}
+		boolean maximize = seat % 2 == 0;
+		int originalAlpha = alpha;
+		int originalBeta = beta;
+		int best = maximize ? -1 : Integer.MAX_VALUE;
+		int bestCard = -1;
+		for (int ptr = 0; ptr < count; ptr++) {
+			int card = mMoves[base + ptr];
+			int value = play(seat, plays, leadSuit, winningSeat, winningRank, card, alpha, beta);
+			if (maximize) {
+				if (value > best) {
+					best = value;
+					bestCard = card;
+					if (best > alpha) {
+						alpha = best;
+					}
+				}
+			} else if (value < best) {
+				best = value;
+				bestCard = card;
+				if (best < beta) {
+					beta = best;
+				}
+			}
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		if (plays == 0) {
+			if (best > originalAlpha) {
+				lower = Math.max(lower, best);
+			}
+			if (best < originalBeta) {
+				upper = Math.min(upper, best);
+			}
+			mTable.store(key, DATA_PRESENT | (bestCard + 1) << 8 | upper << 4 | lower);
+		}
+		return best;
+	}
+
+	/**
+	 * @return The number of top trump held in one hand, positive when the
+	 * hand is in team one and negative otherwise. Each of them takes a trick
+	 * whenever it is played.
+	 */
+	private int sureTricks() {
+		int row = mTrump * (SUITS + 1) * MAX_MOVES;
+		int holder = -1;
+		int count = 0;
+		for (int ptr = 0; ptr < MAX_MOVES; ptr++) {
+			int card = ORDER[row + ptr];
+			if (card < 0) {
+				break;
+			}
+			int bit = CardSet.of(card);
+			int seat = 0;
+			while (seat < SEATS && (mHands[seat] & bit) == CardSet.EMPTY) {
+				seat++;
+			}
+			if (seat == SEATS) {
+				// already played
+				continue;
+			}
+			if (holder >= 0 && seat != holder) {
+				break;
+			}
+			holder = seat;
+			count++;
+		}
+		return holder % 2 == 0 ? count : -count;
+	}
+
+	/**
+	 * Everyone holds one card.
+	 */
+	private int lastTrick(int seat) {
+		int card = CardSet.first(mHands[seat]);
+		int leadSuit = TrickEvaluator.effectiveSuit(mTrump, card);
+		int winningSeat = seat;
+		int winningRank = TrickEvaluator.rank(mTrump, leadSuit, card);
+		for (int ptr = 1; ptr < mActive; ptr++) {
+			seat = SeatOrder.nextSeat(seat, mMaker, mAlone);
+			int rank = TrickEvaluator.rank(mTrump, leadSuit, CardSet.first(mHands[seat]));
+			if (rank > winningRank) {
+				winningSeat = seat;
+				winningRank = rank;
+			}
+		}
+		mNodes += mActive;
+		return winningSeat % 2 == 0 ? 1 : 0;
+	}
+
+	/**
+	 * Write the moves worth searching at mMoves[base], best first. Of a run of
+	 * cards with no live card between them only the highest is kept.
+	 * @return The number of moves.
+	 */
+	private int generate(int seat, int plays, int leadSuit, int winningSeat, int winningRank,
+			int base) {
+		int legal = legal(mHands[seat], leadSuit);
+		int live = mHands[0] | mHands[1] | mHands[2] | mHands[3] | mOnTable;
+		boolean partnerWinning = plays > 0 && winningSeat % 2 == seat % 2;
+		int count = 0;
+		for (int suit = 0; suit < SUITS; suit++) {
+			if ((legal & TrickEvaluator.suitMask(mTrump, suit)) == CardSet.EMPTY) {
+				continue;
+			}
+			int row = (mTrump * SUITS + suit) * MAX_MOVES;
+			boolean previousMine = false;
+			for (int ptr = 0; ptr < MAX_MOVES; ptr++) {
+				int card = ORDER[row + ptr];
+				if (card < 0) {
+					break;
+				}
+				int bit = CardSet.of(card);
+				if ((live & bit) == CardSet.EMPTY) {
+					continue;
+				}
+				if ((legal & bit) == CardSet.EMPTY) {
+					previousMine = false;
+					continue;
+				}
+				if (previousMine) {
+					continue;
+				}
+				previousMine = true;
+				int own = ownRank(card);
+				int score;
+				if (plays == 0) {
+					// lead high
+					score = own;
+				} else {
+					int rank = TrickEvaluator.rank(mTrump, leadSuit, card);
+					if (!partnerWinning && rank > winningRank) {
+						// the cheapest card that takes the trick
+						score = 64 - rank;
+					} else {
+						// the cheapest card that doesn't
+						score = 32 - own;
+					}
+				}
+				int pos = count++;
+				for (; pos > 0 && mScores[pos - 1] < score; pos--) {
+					mScores[pos] = mScores[pos - 1];
+					mMoves[base + pos] = mMoves[base + pos - 1];
+				}
+				mScores[pos] = score;
+				mMoves[base + pos] = card;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The value of every legal move of the seat to play.
+	 */
+	public static class Solution {
+		private final int mSeat;
+		private final int mLegalMoves;
+		private final int mBestCard;
+		private final int[] mMoveTricks;
+		private final int[] mTeamTricks;
+
+		Solution(int seat, int legalMoves, int bestCard, int[] moveTricks, int teamOneTricks,
+				int teamTwoTricks) {
+			mSeat = seat;
+			mLegalMoves = legalMoves;
+			mBestCard = bestCard;
+			mMoveTricks = moveTricks;
+			mTeamTricks = new int[] {teamOneTricks, teamTwoTricks};
+		}
+
+		/**
+		 * @return The seat to play.
+		 */
+		public int getSeat() {
+			return mSeat;
+		}
+
+		/**
+		 * @return The {@link CardSet} of cards the seat may play.
+		 */
+		public int getLegalMoves() {
+			return mLegalMoves;
+		}
+
+		/**
+		 * @return A card which gets the seat's team the most tricks, the
+		 * cheapest one if there are several.
+		 */
+		public int getBestCard() {
+			return mBestCard;
+		}
+
+		/**
+		 * @param card A legal move.
+		 * @return The tricks the seat's team takes in the round by playing it.
+		 */
+		public int getTricks(int card) {
+			if (!CardSet.contains(mLegalMoves, card)) {
+				throw new IllegalArgumentException("Not a legal move: " + card);
+			}
+			return mMoveTricks[card];
+		}
+
+		/**
+		 * @param team 0 for the team of seats 0 and 2, 1 for seats 1 and 3.
+		 * @return The tricks the team takes in the round with best play.
+		 */
+		public int getTeamTricks(int team) {
+			return mTeamTricks[team];
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package com.randomsymphony.games.ochre.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.randomsymphony.games.ochre.logic.SeatOrder;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * The exact result of every position at the start of one of the last
+ * {@link #MAX_TRICKS} tricks, written by {@link TablebaseGenerator} and
+ * memory mapped, so looking a position up costs a few hundred nanoseconds
+ * and only the pages looked at take up memory.
+ *
+ * Once most cards are gone the only thing that matters about a card is
+ * which of the cards still out in its effective suit it beats. A position is
+ * therefore the holders of each suit's cards from highest to lowest, seats
+ * counted from the leader, which with the trump suit first and the suit of
+ * the same colour last makes a position the same whatever the trump suit,
+ * the leader or the cards played before. Positions are numbered without
+ * gaps by the lengths of the suits and the rank of the string of holders
+ * among all strings which give everyone the same number of cards. Each holds
+ * the tricks the leader's team takes, in two bits.
+ *
+ * Tricks already taken don't change which cards are best to play, so they
+ * aren't part of a position, add them to what the table says.
+ */
+public class Tablebase {
+
+	/**
+	 * The most tricks left in a position in the table.
+	 */
+	public static final int MAX_TRICKS = 3;
+	/**
+	 * Returned by {@link #probe(int[], int, int, int, boolean)} for
+	 * positions with more cards than the table holds.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	static final int MAGIC = 0x4f544231;
+	static final int HEADER_SIZE = 8;
+
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	private static final int SUITS = CardSet.NUMBER_OF_SUITS;
+	/**
+	 * The most cards which can be out in each slot: trump with the left
+	 * bower, two plain suits and the suit missing its jack.
+	 */
+	private static final int[] SLOT_SIZES = {CardSet.CARDS_PER_SUIT + 1,
+			CardSet.CARDS_PER_SUIT, CardSet.CARDS_PER_SUIT, CardSet.CARDS_PER_SUIT - 1};
+	/**
+	 * Indexed by [trump][slot], the effective suit in the slot.
+	 */
+	private static final int[] SLOT_SUITS = new int[SUITS * SUITS];
+	/**
+	 * Indexed by [tricks - 1][alone].
+	 */
+	private static final Section[] SECTIONS = new Section[MAX_TRICKS * 2];
+	static final int FILE_SIZE;
+
+	static {
+		for (int trump = 0; trump < SUITS; trump++) {
+			int slot = 1;
+			for (int suit = 0; suit < SUITS; suit++) {
+				if (suit == trump) {
+					SLOT_SUITS[trump * SUITS] = suit;
+				} else if (suit + trump == SUITS - 1) {
+					// hearts and diamonds, spades and clubs add up to three
+					SLOT_SUITS[trump * SUITS + SUITS - 1] = suit;
+				} else {
+					SLOT_SUITS[trump * SUITS + slot++] = suit;
+				}
+			}
+		}
+		long offset = HEADER_SIZE;
+		for (int tricks = 1; tricks <= MAX_TRICKS; tricks++) {
+			for (int alone = 0; alone < 2; alone++) {
+				Section section = new Section(tricks, alone == 1, (int) offset);
+				SECTIONS[(tricks - 1) * 2 + alone] = section;
+				offset += section.mBytes;
+			}
+		}
+		FILE_SIZE = (int) offset;
+	}
+
+	private final ByteBuffer mBuffer;
+
+	private Tablebase(ByteBuffer buffer) {
+		mBuffer = buffer;
+	}
+
+	/**
+	 * Map a table written by {@link TablebaseGenerator}.
+	 */
+	public static Tablebase load(File path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() != FILE_SIZE) {
+				throw new IOException("Not a tablebase: " + path);
+			}
+			// the mapping outlives the file being closed
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, FILE_SIZE);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != MAX_TRICKS) {
+				throw new IOException("Not a tablebase: " + path);
+			}
+			return new Tablebase(buffer);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @param hands {@link CardSet}s indexed by seat, the same number of cards
+	 * in every hand which plays. The hand of a lone maker's partner is
+	 * ignored.
+	 * @param leader The seat to lead the next trick.
+	 * @param maker The maker's seat, only used when alone is set.
+	 * @return The tricks the leader's team takes from here, or
+	 * {@link #NOT_FOUND} when more than {@link #MAX_TRICKS} are left.
+	 */
+	public int probe(int[] hands, int trump, int leader, int maker, boolean alone) {
+		int tricks = CardSet.size(hands[leader]);
+		if (tricks > MAX_TRICKS) {
+			return NOT_FOUND;
+		}
+		if (tricks == 0) {
+			throw new IllegalArgumentException("No cards left to play.");
+		}
+		int sittingOut = SeatOrder.sittingOut(maker, alone);
+		Section section = SECTIONS[(tricks - 1) * 2 + (alone ? 1 : 0)];
+		int out = alone ? (sittingOut - leader + SEATS) % SEATS : 0;
+		int[] lengths = new int[SUITS];
+		int[] holders = new int[section.mCards];
+		int count = 0;
+		for (int slot = 0; slot < SUITS; slot++) {
+			int row = (trump * SUITS + SLOT_SUITS[trump * SUITS + slot]) *
+					DoubleDummySolver.MAX_MOVES;
+			for (int ptr = 0; ptr < DoubleDummySolver.MAX_MOVES; ptr++) {
+				int card = DoubleDummySolver.ORDER[row + ptr];
+				if (card < 0) {
+					break;
+				}
+				int bit = CardSet.of(card);
+				for (int seat = 0; seat < SEATS; seat++) {
+					if (seat != sittingOut && (hands[seat] & bit) != CardSet.EMPTY) {
+						if (count == holders.length) {
+							throw new IllegalArgumentException("The hands don't fit together.");
+						}
+						holders[count++] = label((seat - leader + SEATS) % SEATS, out);
+						lengths[slot]++;
+						break;
+					}
+				}
+			}
+		}
+		if (count != holders.length) {
+			throw new IllegalArgumentException("The hands don't fit together.");
+		}
+		long index = section.indexOf(out, lengths, holders);
+		if (index < 0) {
+			throw new IllegalArgumentException("The hands don't fit together.");
+		}
+		return get(section, index);
+	}
+
+	int get(Section section, long index) {
+		return get(mBuffer, section, index);
+	}
+
+	static int get(ByteBuffer buffer, Section section, long index) {
+		int value = buffer.get((int) (section.mOffset + (index >> 2)));
+		return value >> (int) ((index & 3) << 1) & 3;
+	}
+
+	/**
+	 * @param seat A seat counted from the leader.
+	 * @param out The seat sitting out counted from the leader, or 0.
+	 * @return The seat's label in a string of holders.
+	 */
+	static int label(int seat, int out) {
+		return out == 0 || seat < out ? seat : seat - 1;
+	}
+
+	static Section getSection(int tricks, boolean alone) {
+		return SECTIONS[(tricks - 1) * 2 + (alone ? 1 : 0)];
+	}
+
+	/**
+	 * The positions with the same number of tricks left and players, in one
+	 * piece of the file.
+	 */
+	static class Section {
+		final int mTricks;
+		final boolean mAlone;
+		/**
+		 * The number of seats playing.
+		 */
+		final int mPlayers;
+		final int mCards;
+		/**
+		 * Indexed by [composition][slot], the lengths of the suits.
+		 */
+		final int[][] mCompositions;
+		/**
+		 * Composition numbers by the lengths of the first three slots.
+		 */
+		private final int[] mCompositionIndex;
+		/**
+		 * The number of strings of holders giving everyone the same number
+		 * of cards.
+		 */
+		final long mStrings;
+		/**
+		 * Each seat but the leader's can be sitting out.
+		 */
+		final int mOuts;
+		final long mEntries;
+		final int mOffset;
+		final int mBytes;
+
+		Section(int tricks, boolean alone, int offset) {
+			mTricks = tricks;
+			mAlone = alone;
+			mPlayers = alone ? SEATS - 1 : SEATS;
+			mCards = tricks * mPlayers;
+			mOffset = offset;
+
+			int radix = SLOT_SIZES[0] + 1;
+			mCompositionIndex = new int[radix * radix * radix];
+			int[][] compositions = new int[radix * radix * radix][];
+			int count = 0;
+			for (int first = 0; first <= SLOT_SIZES[0]; first++) {
+				for (int second = 0; second <= SLOT_SIZES[1]; second++) {
+					for (int third = 0; third <= SLOT_SIZES[2]; third++) {
+						int key = (first * radix + second) * radix + third;
+						int last = mCards - first - second - third;
+						if (last < 0 || last > SLOT_SIZES[3]) {
+							mCompositionIndex[key] = -1;
+							continue;
+						}
+						mCompositionIndex[key] = count;
+						compositions[count++] = new int[] {first, second, third, last};
+					}
+				}
+			}
+			mCompositions = new int[count][];
+			System.arraycopy(compositions, 0, mCompositions, 0, count);
+
+			long strings = factorial(mCards);
+			for (int player = 0; player < mPlayers; player++) {
+				strings /= factorial(tricks);
+			}
+			mStrings = strings;
+			mOuts = alone ? SEATS - 1 : 1;
+			mEntries = mOuts * (long) count * strings;
+			mBytes = (int) ((mEntries + 3) >> 2);
+		}
+
+		/**
+		 * @param out The seat sitting out counted from the leader, or 0.
+		 * @param lengths The number of cards in each slot.
+		 * @param holders The label of the holder of each card, slot by slot
+		 * and highest first, see {@link Tablebase#label(int, int)}.
+		 * @return The number of the position or -1 if the lengths don't fit.
+		 */
+		long indexOf(int out, int[] lengths, int[] holders) {
+			int radix = SLOT_SIZES[0] + 1;
+			if (lengths[0] > SLOT_SIZES[0] || lengths[1] > SLOT_SIZES[1] ||
+					lengths[2] > SLOT_SIZES[2]) {
+				return -1;
+			}
+			int composition = mCompositionIndex[(lengths[0] * radix + lengths[1]) * radix +
+					lengths[2]];
+			if (composition < 0) {
+				return -1;
+			}
+
+			// the rank among the permutations of the multiset of labels
+			int[] left = new int[mPlayers];
+			for (int player = 0; player < mPlayers; player++) {
+				left[player] = mTricks;
+			}
+			long permutations = mStrings;
+			long rank = 0;
+			for (int ptr = 0; ptr < mCards; ptr++) {
+				int remaining = mCards - ptr;
+				int holder = holders[ptr];
+				for (int label = 0; label < holder; label++) {
+					rank += permutations * left[label] / remaining;
+				}
+				if (left[holder] == 0) {
+					return -1;
+				}
+				permutations = permutations * left[holder] / remaining;
+				left[holder]--;
+			}
+			int outIndex = mAlone ? out - 1 : 0;
+			return (outIndex * (long) mCompositions.length + composition) * mStrings + rank;
+		}
+
+		/**
+		 * The inverse of {@link #indexOf(int, int[], int[])}.
+		 * @return The seat sitting out counted from the leader, or 0.
+		 */
+		int unrank(long index, int[] lengths, int[] holders) {
+			long rank = index % mStrings;
+			index /= mStrings;
+			int[] composition = mCompositions[(int) (index % mCompositions.length)];
+			System.arraycopy(composition, 0, lengths, 0, SUITS);
+			int out = mAlone ? (int) (index / mCompositions.length) + 1 : 0;
+
+			int[] left = new int[mPlayers];
+			for (int player = 0; player < mPlayers; player++) {
+				left[player] = mTricks;
+			}
+			long permutations = mStrings;
+			for (int ptr = 0; ptr < mCards; ptr++) {
+				int remaining = mCards - ptr;
+				for (int label = 0; ; label++) {
+					long below = permutations * left[label] / remaining;
+					if (rank < below) {
+						holders[ptr] = label;
+						permutations = below;
+						left[label]--;
+						break;
+					}
+					rank -= below;
+				}
+			}
+			return out;
+		}
+
+		private static long factorial(int n) {
+			long result = 1;
+			for (int ptr = 2; ptr <= n; ptr++) {
+				result *= ptr;
+			}
+			return result;
+		}
+	}
+}
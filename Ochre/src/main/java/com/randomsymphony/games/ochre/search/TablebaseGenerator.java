@@ -0,0 +1,263 @@
+package com.randomsymphony.games.ochre.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Writes a {@link Tablebase}, one trick at a time backwards: a position with
+ * one trick left is played out, a position with more is searched to the end
+ * of its first trick and the rest is looked up in the part of the table
+ * already written. Within the trick the leader's team maximizes and the
+ * other team minimizes, and of a run of cards in one hand with nothing
+ * between them only the highest is tried.
+ *
+ * Positions are split over a fork/join pool in pieces which fill whole
+ * bytes, so threads never write the same byte.
+ */
+public class TablebaseGenerator {
+
+	/**
+	 * Positions solved by one task without splitting further, a multiple of
+	 * the four held by a byte.
+	 */
+	private static final int TASK_SIZE = 1 << 14;
+	private static final int SEATS = Round.NUMBER_OF_SEATS;
+	private static final int SUITS = CardSet.NUMBER_OF_SUITS;
+	private static final int MAX_SLOT = CardSet.CARDS_PER_SUIT + 1;
+
+	/**
+	 * Write the whole table on every core.
+	 */
+	public void generate(File path) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			generate(path, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void generate(File path, ForkJoinPool pool) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			file.setLength(Tablebase.FILE_SIZE);
+			MappedByteBuffer buffer = file.getChannel().map(MapMode.READ_WRITE, 0,
+					Tablebase.FILE_SIZE);
+			for (int tricks = 1; tricks <= Tablebase.MAX_TRICKS; tricks++) {
+				for (int alone = 0; alone < 2; alone++) {
+					Tablebase.Section section = Tablebase.getSection(tricks, alone == 1);
+					Tablebase.Section previous = tricks == 1 ? null :
+							Tablebase.getSection(tricks - 1, alone == 1);
+					pool.invoke(new Task(section, previous, buffer, 0, section.mEntries));
+				}
+			}
+			// the header goes last so a half written file never loads
+			buffer.putInt(0, Tablebase.MAGIC);
+			buffer.putInt(4, Tablebase.MAX_TRICKS);
+			buffer.force();
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Usage: file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			throw new IllegalArgumentException("Usage: file");
+		}
+		new TablebaseGenerator().generate(new File(args[0]));
+	}
+
+	private static class Task extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Tablebase.Section mSection;
+		private final Tablebase.Section mPrevious;
+		private final MappedByteBuffer mBuffer;
+		private final long mStart;
+		private final long mEnd;
+
+		Task(Tablebase.Section section, Tablebase.Section previous, MappedByteBuffer buffer,
+				long start, long end) {
+			mSection = section;
+			mPrevious = previous;
+			mBuffer = buffer;
+			mStart = start;
+			mEnd = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (mEnd - mStart <= TASK_SIZE) {
+				new Solver(mSection, mPrevious, mBuffer).solve(mStart, mEnd);
+				return;
+			}
+			// split on a byte
+			long middle = ((mStart + mEnd) >>> 1) & ~3L;
+			Task left = new Task(mSection, mPrevious, mBuffer, mStart, middle);
+			left.fork();
+			new Task(mSection, mPrevious, mBuffer, middle, mEnd).compute();
+			left.join();
+		}
+	}
+
+	/**
+	 * Solves positions of one section. Seats are counted from the leader of
+	 * the position and cards are a slot and a place in it, highest first.
+	 */
+	private static class Solver {
+		private final Tablebase.Section mSection;
+		private final Tablebase.Section mPrevious;
+		private final MappedByteBuffer mBuffer;
+		private final int[] mLengths = new int[SUITS];
+		private final int[] mLabels;
+		/**
+		 * Indexed by [slot][place], the holder of each card.
+		 */
+		private final int[] mHolders = new int[SUITS * MAX_SLOT];
+		private final boolean[] mPlayed = new boolean[SUITS * MAX_SLOT];
+		private final int[] mChildLengths = new int[SUITS];
+		private final int[] mChildLabels;
+		private int mOut;
+
+		Solver(Tablebase.Section section, Tablebase.Section previous, MappedByteBuffer buffer) {
+			mSection = section;
+			mPrevious = previous;
+			mBuffer = buffer;
+			mLabels = new int[section.mCards];
+			mChildLabels = new int[previous == null ? 0 : previous.mCards];
+		}
+
+		void solve(long start, long end) {
+			int packed = 0;
+			for (long index = start; index < end; index++) {
+				mOut = mSection.unrank(index, mLengths, mLabels);
+				int ptr = 0;
+				for (int slot = 0; slot < SUITS; slot++) {
+					for (int place = 0; place < mLengths[slot]; place++) {
+						int label = mLabels[ptr++];
+						// labels skip the seat sitting out
+						mHolders[slot * MAX_SLOT + place] =
+								mOut != 0 && label >= mOut ? label + 1 : label;
+					}
+				}
+				int value = play(0, 0, -1, 0, -1, -1, -1, mSection.mTricks + 1);
+				packed |= value << (int) ((index & 3) << 1);
+				if ((index & 3) == 3 || index == end - 1) {
+					mBuffer.put((int) (mSection.mOffset + (index >> 2)), (byte) packed);
+					packed = 0;
+				}
+			}
+		}
+
+		/**
+		 * Pick the card of the seat to play and search on.
+		 * @param ply The number of cards played to the trick.
+		 * @param leadSlot The slot led or -1.
+		 * @return The tricks the leader's team takes, fail soft.
+		 */
+		private int play(int ply, int seat, int leadSlot, int winner, int winningSlot,
+				int winningPlace, int alpha, int beta) {
+			if (ply == mSection.mPlayers) {
+				return finishTrick(winner);
+			}
+			boolean follow = leadSlot >= 0 && holds(seat, leadSlot);
+			boolean maximize = seat % 2 == 0;
+			int best = maximize ? -1 : Integer.MAX_VALUE;
+			int nextSeat = (seat + 1) % SEATS;
+			if (nextSeat == mOut && mOut != 0) {
+				nextSeat = (nextSeat + 1) % SEATS;
+			}
+			for (int slot = 0; slot < SUITS; slot++) {
+				if (follow && slot != leadSlot) {
+					continue;
+				}
+				int row = slot * MAX_SLOT;
+				for (int place = 0; place < mLengths[slot]; place++) {
+					if (mHolders[row + place] != seat || mPlayed[row + place]) {
+						continue;
+					}
+					if (place > 0 && mHolders[row + place - 1] == seat && !mPlayed[row + place - 1]) {
+						// the card above does just the same
+						continue;
+					}
+					int newLead = ply == 0 ? slot : leadSlot;
+					int newWinner = winner;
+					int newSlot = winningSlot;
+					int newPlace = winningPlace;
+					if (ply == 0 || (slot == winningSlot && place < winningPlace) ||
+							(slot == 0 && winningSlot != 0)) {
+						newWinner = seat;
+						newSlot = slot;
+						newPlace = place;
+					}
+					mPlayed[row + place] = true;
+					int value = play(ply + 1, nextSeat, newLead, newWinner, newSlot, newPlace,
+							alpha, beta);
+					mPlayed[row + place] = false;
+					if (maximize) {
+						if (value > best) {
+							best = value;
+							alpha = Math.max(alpha, best);
+						}
+					} else if (value < best) {
+						best = value;
+						beta = Math.min(beta, best);
+					}
+					if (alpha >= beta) {
+						return best;
+					}
+				}
+			}
+			return best;
+		}
+
+		private boolean holds(int seat, int slot) {
+			int row = slot * MAX_SLOT;
+			for (int place = 0; place < mLengths[slot]; place++) {
+				if (mHolders[row + place] == seat && !mPlayed[row + place]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return The tricks the leader's team takes with this trick won.
+		 */
+		private int finishTrick(int winner) {
+			int won = winner % 2 == 0 ? 1 : 0;
+			if (mPrevious == null) {
+				return won;
+			}
+			// look up the rest counted from the winner
+			int out = mOut == 0 ? 0 : (mOut - winner + SEATS) % SEATS;
+			int count = 0;
+			for (int slot = 0; slot < SUITS; slot++) {
+				int row = slot * MAX_SLOT;
+				int length = 0;
+				for (int place = 0; place < mLengths[slot]; place++) {
+					if (!mPlayed[row + place]) {
+						mChildLabels[count++] = Tablebase.label(
+								(mHolders[row + place] - winner + SEATS) % SEATS, out);
+						length++;
+					}
+				}
+				mChildLengths[slot] = length;
+			}
+			long index = mPrevious.indexOf(out, mChildLengths, mChildLabels);
+			int rest = Tablebase.get(mBuffer, mPrevious, index);
+			return won + (winner % 2 == 0 ? rest : mPrevious.mTricks - rest);
+		}
+	}
+}
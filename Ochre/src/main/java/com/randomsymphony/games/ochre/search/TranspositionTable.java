@@ -0,0 +1,174 @@
+package com.randomsymphony.games.ochre.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Zobrist;
+
+/**
+ * A fixed size table of search results which any number of threads can read
+ * and write without locks. Each slot holds a 64-bit position key and 64 bits
+ * of data packed by the caller. Writes simply replace whatever was in the
+ * slot, so results get lost but never mixed up: the slot stores the key
+ * XORed with the data, and a read only counts when the two still match up.
+ * That catches a slot being rewritten by another thread halfway through a
+ * read, and longs torn in half on 32-bit devices.
+ *
+ * The caller's data must never be zero, zero marks an empty slot.
+ */
+public class TranspositionTable {
+
+	/**
+	 * Returned by {@link #probe(long)} when the position is not in the table.
+	 */
+	public static final long MISS = 0L;
+
+	private static final int COUNTER_HITS = 0;
+	private static final int COUNTER_MISSES = 1;
+	private static final int COUNTER_COLLISIONS = 2;
+	/**
+	 * Counters are striped by thread, each stripe on its own cache line.
+	 */
+	private static final int STRIPES = 16;
+	private static final int STRIPE_WIDTH = 8;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Indexed by [slot][key XOR data, data].
+	 */
+	private final long[] mSlots;
+	private final int mMask;
+	private final AtomicLongArray mCounters = new AtomicLongArray(STRIPES * STRIPE_WIDTH);
+
+	/**
+	 * @param bits The table holds 2^bits entries of 16 bytes.
+	 */
+	public TranspositionTable(int bits) {
+		if (bits < 1 || bits > 26) {
+			throw new IllegalArgumentException("Table bits out of range: " + bits);
+		}
+		mMask = (1 << bits) - 1;
+		mSlots = new long[2 << bits];
+	}
+
+	/**
+	 * The key of a position at the start of a trick.
+	 * @param hands The {@link CardSet} held by each seat, empty for a lone
+	 * maker's partner.
+	 * @param leader The seat to lead.
+	 * @param trump The trump suit, it decides which jack is the left bower
+	 * and so which hands are the same, see {@link TrickEvaluator}.
+	 */
+	public static long positionKey(int[] hands, int leader, int trump) {
+		long low = hands[0] | (long) hands[1] << CardSet.DECK_SIZE |
+				(long) (leader * CardSet.NUMBER_OF_SUITS + trump) << (2 * CardSet.DECK_SIZE);
+		long high = hands[2] | (long) hands[3] << CardSet.DECK_SIZE;
+		return Zobrist.mix(Zobrist.mix(low * GOLDEN_GAMMA) ^ high);
+	}
+
+	/**
+	 * The key of a position in the middle of a trick.
+	 * @param trick The cards played to the trick so far, in order.
+	 * @param trickPlays The number of cards in trick.
+	 */
+	public static long positionKey(int[] hands, int leader, int trump, int[] trick,
+			int trickPlays) {
+		long key = positionKey(hands, leader, trump);
+		for (int ptr = 0; ptr < trickPlays; ptr++) {
+			key ^= Zobrist.play(ptr, leader, trick[ptr]);
+		}
+		return key;
+	}
+
+	/**
+	 * @return The data stored for the key or {@link #MISS}.
+	 */
+	public long probe(long key) {
+		int slot = ((int) (key >>> 32) & mMask) << 1;
+		long check = mSlots[slot];
+		long data = mSlots[slot + 1];
+		if (data != MISS && (check ^ data) == key) {
+			count(COUNTER_HITS);
+			return data;
+		}
+		// an empty slot is a miss, anything else is another position or a
+		// slot being written
+		count(check == 0 && data == 0 ? COUNTER_MISSES : COUNTER_COLLISIONS);
+		return MISS;
+	}
+
+	/**
+	 * Store the data for the key, replacing whatever was in its slot.
+	 * @param data Anything but {@link #MISS}.
+	 */
+	public void store(long key, long data) {
+		if (data == MISS) {
+			throw new IllegalArgumentException("Can't store empty data.");
+		}
+		int slot = ((int) (key >>> 32) & mMask) << 1;
+		mSlots[slot + 1] = data;
+		mSlots[slot] = key ^ data;
+	}
+
+	/**
+	 * Empty the table and reset the counters, no other thread should be
+	 * using it.
+	 */
+	public void clear() {
+		Arrays.fill(mSlots, 0L);
+		for (int ptr = 0; ptr < mCounters.length(); ptr++) {
+			mCounters.set(ptr, 0);
+		}
+	}
+
+	/**
+	 * @return The number of slots.
+	 */
+	public int size() {
+		return mMask + 1;
+	}
+
+	/**
+	 * @return Probes which found their position.
+	 */
+	public long getHits() {
+		return total(COUNTER_HITS);
+	}
+
+	/**
+	 * @return Probes which found an empty slot.
+	 */
+	public long getMisses() {
+		return total(COUNTER_MISSES);
+	}
+
+	/**
+	 * @return Probes which found another position, or a slot being written,
+	 * in their slot.
+	 */
+	public long getCollisions() {
+		return total(COUNTER_COLLISIONS);
+	}
+
+	private void count(int counter) {
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		mCounters.incrementAndGet(stripe * STRIPE_WIDTH + counter);
+	}
+
+	private long total(int counter) {
+		long total = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			total += mCounters.get(stripe * STRIPE_WIDTH + counter);
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d slots, %d hits, %d misses, %d collisions", size(), getHits(),
+				getMisses(), getCollisions());
+	}
+}
@@ -0,0 +1,92 @@
+package com.randomsymphony.games.ochre.sim;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * How often the makers are euchred and how many points they score, split by
+ * the number of trump the maker held once trump was set and by whether trump
+ * was ordered up or named after the turned card was refused.
+ */
+public class MakerProbe extends Probe {
+
+	/**
+	 * Indexed by [named][trump count], named is 1 when trump was picked
+	 * after everyone passed on the turned card.
+	 */
+	private final Tally[][] mEuchred = new Tally[2][CardSet.CARDS_PER_SUIT + 2];
+	private final Tally[][] mPoints = new Tally[2][CardSet.CARDS_PER_SUIT + 2];
+
+	private int mTrumpCount;
+	private int mNamed;
+
+	public MakerProbe() {
+		for (int named = 0; named < 2; named++) {
+			for (int count = 0; count < mEuchred[named].length; count++) {
+				mEuchred[named][count] = new Tally();
+				mPoints[named][count] = new Tally();
+			}
+		}
+	}
+
+	/**
+	 * @param named false for trump ordered up, true for trump named on the
+	 * second time around.
+	 * @param trumpCount The trump the maker held, counting a picked up card.
+	 * @return The share of such rounds in which the makers were euchred.
+	 */
+	public Tally getEuchred(boolean named, int trumpCount) {
+		return mEuchred[named ? 1 : 0][trumpCount];
+	}
+
+	/**
+	 * @return The points the makers scored in such rounds, negative when
+	 * euchred.
+	 */
+	public Tally getPoints(boolean named, int trumpCount) {
+		return mPoints[named ? 1 : 0][trumpCount];
+	}
+
+	@Override
+	public Probe fork() {
+		return new MakerProbe();
+	}
+
+	@Override
+	public void merge(Probe other) {
+		MakerProbe probe = (MakerProbe) other;
+		for (int named = 0; named < 2; named++) {
+			for (int count = 0; count < mEuchred[named].length; count++) {
+				mEuchred[named][count].merge(probe.mEuchred[named][count]);
+				mPoints[named][count].merge(probe.mPoints[named][count]);
+			}
+		}
+	}
+
+	@Override
+	public void onTrumpSet(Round round, Player maker) {
+		// the dealer already holds the turned card if they picked it up
+		mTrumpCount = CardSet.size(maker.getHand() & TrickEvaluator.trumpMask(round.trump.getSuit()));
+		mNamed = round.trumpPasses >= Round.NUMBER_OF_SEATS ? 1 : 0;
+	}
+
+	@Override
+	public void onRoundScored(Round round, int teamOneScore, int teamTwoScore) {
+		int makerTeam = round.getMakerSeat() % 2;
+		record(mNamed == 1, mTrumpCount,
+				RulesEngine.getMakerPoints(round.getTeamTricks(makerTeam), round.alone));
+	}
+
+	/**
+	 * Count a finished round.
+	 * @param makerPoints See {@link RulesEngine#getMakerPoints(int, boolean)}.
+	 */
+	void record(boolean named, int trumpCount, int makerPoints) {
+		int row = named ? 1 : 0;
+		mEuchred[row][trumpCount].add(makerPoints == 0 ? 1 : 0);
+		mPoints[row][trumpCount].add(makerPoints == 0 ? -RulesEngine.NUM_POINTS_SET : makerPoints);
+	}
+}
@@ -0,0 +1,59 @@
+package com.randomsymphony.games.ochre.sim;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.Play;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Collects statistics from the games a {@link Simulator} plays by listening
+ * to the engine. Every task of a simulation works on its own
+ * {@link #fork()} and the results are combined with {@link #merge(Probe)}
+ * as the tasks finish. Override the callbacks of interest, the rest do
+ * nothing.
+ */
+public abstract class Probe implements RulesEngine.Listener {
+
+	/**
+	 * @return A new, empty probe of the same kind.
+	 */
+	public abstract Probe fork();
+
+	/**
+	 * Add the statistics of a probe returned by {@link #fork()} to this one.
+	 */
+	public abstract void merge(Probe other);
+
+	@Override
+	public void onRoundDealt(Round round, Card possibleTrump) {
+	}
+
+	@Override
+	public void onTrumpPassed(Round round, Player passer) {
+	}
+
+	@Override
+	public void onTrumpSet(Round round, Player maker) {
+	}
+
+	@Override
+	public void onDealerDiscarded(Round round, Player dealer, Card card) {
+	}
+
+	@Override
+	public void onCardPlayed(Round round, Play play) {
+	}
+
+	@Override
+	public void onTrickComplete(Round round, Play winningPlay, int tricksCaptured) {
+	}
+
+	@Override
+	public void onRoundScored(Round round, int teamOneScore, int teamTwoScore) {
+	}
+
+	@Override
+	public void onNextPlayer(Player player) {
+	}
+}
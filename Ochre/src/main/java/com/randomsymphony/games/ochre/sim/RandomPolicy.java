@@ -0,0 +1,62 @@
+package com.randomsymphony.games.ochre.sim;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Player;
+
+/**
+ * Picks uniformly among the legal plays and bids at random, a baseline for
+ * other policies to beat.
+ */
+public class RandomPolicy implements SeatPolicy {
+
+	@Override
+	public void act(RulesEngine engine, Player player, SplitMix64 random) {
+		switch (engine.getGameState().getGamePhase()) {
+			case ORDER_UP:
+				if (engine.canPass() && random.nextInt(4) != 0) {
+					engine.pass();
+				} else {
+					engine.setTrump(random.nextInt(8) == 0, null);
+				}
+				break;
+			case PICK_TRUMP:
+				if (engine.canPass() && random.nextInt(3) != 0) {
+					engine.pass();
+				} else {
+					engine.setTrump(random.nextInt(8) == 0, pickTrump(engine, player, random));
+				}
+				break;
+			case DEALER_DISCARD:
+				engine.discardCard(pick(player.getHand(), random));
+				break;
+			case PLAY:
+				engine.playCard(player, pick(engine.getLegalMoves(player), random));
+				break;
+			default:
+				throw new IllegalStateException("No action in phase " +
+						engine.getGameState().getGamePhase());
+		}
+	}
+
+	/**
+	 * @return A card of the hand outside the turned down suit, or the nine of
+	 * another suit when the hand holds none.
+	 */
+	private static Card pickTrump(RulesEngine engine, Player player, SplitMix64 random) {
+		int turnedDown = engine.getGameState().getCurrentRound().trump.getSuit();
+		int cards = player.getHand() & ~CardSet.suitMask(turnedDown);
+		if (cards != CardSet.EMPTY) {
+			return pick(cards, random);
+		}
+		int suit = (turnedDown + 1 + random.nextInt(CardSet.NUMBER_OF_SUITS - 1)) %
+				CardSet.NUMBER_OF_SUITS;
+		return Card.get(CardSet.indexOf(suit, Card.VALUE_NINE));
+	}
+
+	private static Card pick(int cards, SplitMix64 random) {
+		return Card.get(CardSet.nth(cards, random.nextInt(CardSet.size(cards))));
+	}
+}
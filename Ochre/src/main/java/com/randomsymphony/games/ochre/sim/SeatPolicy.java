@@ -0,0 +1,23 @@
+package com.randomsymphony.games.ochre.sim;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Player;
+
+/**
+ * Decides what a seat does when it is their turn in a simulation. One policy
+ * is shared by every thread of a {@link Simulator}, so it must not keep state
+ * between calls, any randomness should come from the generator passed in.
+ */
+public interface SeatPolicy {
+
+	/**
+	 * Take the player's turn by calling exactly one action of the engine:
+	 * {@link RulesEngine#pass()} or {@link RulesEngine#setTrump(boolean,
+	 * com.randomsymphony.games.ochre.model.Card)} while bidding,
+	 * {@link RulesEngine#discardCard(com.randomsymphony.games.ochre.model.Card)}
+	 * for the dealer who picked up, otherwise
+	 * {@link RulesEngine#playCard(Player, com.randomsymphony.games.ochre.model.Card)}.
+	 */
+	public void act(RulesEngine engine, Player player, SplitMix64 random);
+}
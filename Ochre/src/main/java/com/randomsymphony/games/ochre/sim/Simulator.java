@@ -0,0 +1,251 @@
+package com.randomsymphony.games.ochre.sim;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.randomsymphony.games.ochre.logic.GameState;
+import com.randomsymphony.games.ochre.logic.PlayerListFactory;
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * Plays many rounds or games with the {@link RulesEngine}, one
+ * {@link SeatPolicy} per seat, and collects statistics with a {@link Probe}.
+ * The work is split in halves on a fork/join pool until pieces are small
+ * enough to play, each piece gets its own engine, probe and a generator split
+ * off its parent's, so a seed gives the same results whatever the number of
+ * threads. Probes are merged as the pieces are joined, no locks are taken.
+ */
+public class Simulator {
+
+	/**
+	 * Points needed to win a game.
+	 */
+	public static final int WINNING_SCORE = 10;
+	/**
+	 * Rounds or games played by one task without splitting further.
+	 */
+	private static final int TASK_SIZE = 64;
+
+	private final SeatPolicy[] mPolicies;
+	private final Probe mProbe;
+	private final long mSeed;
+
+	/**
+	 * @param policies The policy of each seat, a policy may sit in several.
+	 * @param probe The kind of statistics to collect, only ever forked.
+	 */
+	public Simulator(SeatPolicy[] policies, Probe probe, long seed) {
+		if (policies.length != Round.NUMBER_OF_SEATS) {
+			throw new IllegalArgumentException("A policy is needed for every seat.");
+		}
+		mPolicies = policies.clone();
+		mProbe = probe;
+		mSeed = seed;
+	}
+
+	/**
+	 * Play this many complete rounds on every core.
+	 */
+	public Result playRounds(long rounds) {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return playRounds(rounds, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public Result playRounds(long rounds, ForkJoinPool pool) {
+		return run(pool, new Task(0, rounds, false, new SplitMix64(mSeed)));
+	}
+
+	/**
+	 * Play this many games to {@link #WINNING_SCORE} on every core.
+	 */
+	public Result playGames(long games) {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return playGames(games, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public Result playGames(long games, ForkJoinPool pool) {
+		return run(pool, new Task(0, games, true, new SplitMix64(mSeed)));
+	}
+
+	private Result run(ForkJoinPool pool, Task task) {
+		long start = System.nanoTime();
+		Result result = pool.invoke(task);
+		result.mElapsedNanos = System.nanoTime() - start;
+		return result;
+	}
+
+	/**
+	 * The merged statistics of a simulation.
+	 */
+	public static class Result {
+		private long mRounds;
+		private long mGames;
+		private long mElapsedNanos;
+		private final Probe mProbe;
+
+		private Result(Probe probe) {
+			mProbe = probe;
+		}
+
+		Result(Probe probe, long rounds, long games, long elapsedNanos) {
+			mProbe = probe;
+			mRounds = rounds;
+			mGames = games;
+			mElapsedNanos = elapsedNanos;
+		}
+
+		private void merge(Result other) {
+			mRounds += other.mRounds;
+			mGames += other.mGames;
+			mProbe.merge(other.mProbe);
+		}
+
+		/**
+		 * @return The number of rounds played to the end.
+		 */
+		public long getRounds() {
+			return mRounds;
+		}
+
+		public long getGames() {
+			return mGames;
+		}
+
+		public long getElapsedNanos() {
+			return mElapsedNanos;
+		}
+
+		/**
+		 * @return Rounds, or hands, played per second of wall clock time.
+		 */
+		public double getRoundsPerSecond() {
+			return mRounds * 1e9 / Math.max(1, mElapsedNanos);
+		}
+
+		/**
+		 * @return The probe holding the statistics of every task.
+		 */
+		public Probe getProbe() {
+			return mProbe;
+		}
+	}
+
+	private class Task extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+
+		private final long mStart;
+		private final long mEnd;
+		private final boolean mGames;
+		private final SplitMix64 mRandom;
+
+		Task(long start, long end, boolean games, SplitMix64 random) {
+			mStart = start;
+			mEnd = end;
+			mGames = games;
+			mRandom = random;
+		}
+
+		@Override
+		protected Result compute() {
+			if (mEnd - mStart <= TASK_SIZE) {
+				return play();
+			}
+			long middle = (mStart + mEnd) >>> 1;
+			// split before forking so the streams don't depend on scheduling
+			Task left = new Task(mStart, middle, mGames, mRandom.split());
+			Task right = new Task(middle, mEnd, mGames, mRandom.split());
+			left.fork();
+			Result result = right.compute();
+			result.merge(left.join());
+			return result;
+		}
+
+		private Result play() {
+			Result result = new Result(mProbe.fork());
+			RoundCounter counter = new RoundCounter();
+			long count = mEnd - mStart;
+			if (mGames) {
+				for (long game = 0; game < count; game++) {
+					GameState state = newGame();
+					RulesEngine engine = newEngine(state, result.mProbe, counter);
+					engine.startGame();
+					while (state.getTeamPoints(0) < WINNING_SCORE &&
+							state.getTeamPoints(1) < WINNING_SCORE) {
+						act(engine);
+					}
+					result.mGames++;
+				}
+			} else {
+				GameState state = newGame();
+				RulesEngine engine = newEngine(state, result.mProbe, counter);
+				engine.startGame();
+				while (counter.mRounds < count) {
+					act(engine);
+				}
+			}
+			result.mRounds = counter.mRounds;
+			return result;
+		}
+
+		private GameState newGame() {
+			GameState state = new GameState(mRandom.split());
+			// ids from the generator, UUID.randomUUID() would be shared by
+			// every thread
+			ArrayList<Player> players = new ArrayList<Player>(Round.NUMBER_OF_SEATS);
+			for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+				players.add(new Player("Seat " + seat, new Card[0],
+						new UUID(mRandom.nextLong(), mRandom.nextLong())));
+			}
+			state.setPlayerFactory(new PlayerListFactory(players));
+			return state;
+		}
+
+		private RulesEngine newEngine(GameState state, Probe probe, RoundCounter counter) {
+			RulesEngine engine = new RulesEngine(state);
+			engine.registerListener(probe);
+			engine.registerListener(counter);
+			return engine;
+		}
+
+		private void act(RulesEngine engine) {
+			Player next = engine.getNextPlayer();
+			mPolicies[next.getSeat()].act(engine, next, mRandom);
+		}
+	}
+
+	/**
+	 * Counts the rounds played to the end.
+	 */
+	private static class RoundCounter extends Probe {
+		private long mRounds;
+
+		@Override
+		public Probe fork() {
+			return new RoundCounter();
+		}
+
+		@Override
+		public void merge(Probe other) {
+			mRounds += ((RoundCounter) other).mRounds;
+		}
+
+		@Override
+		public void onRoundScored(Round round, int teamOneScore, int teamTwoScore) {
+			mRounds++;
+		}
+	}
+}
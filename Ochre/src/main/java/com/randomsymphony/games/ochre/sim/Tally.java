@@ -0,0 +1,72 @@
+package com.randomsymphony.games.ochre.sim;
+
+/**
+ * Running count, mean and variance of a measurement. Each thread of a
+ * simulation keeps its own tallies and they are merged when the threads are
+ * done, so nothing needs a lock. A proportion is tallied by adding 1 for
+ * each hit and 0 for each miss.
+ */
+public class Tally {
+
+	/**
+	 * The z score of a two sided 95% confidence interval.
+	 */
+	public static final double Z_95 = 1.959963984540054;
+
+	private long mCount;
+	private double mMean;
+	/**
+	 * Sum of squared differences from the mean, see Welford's method.
+	 */
+	private double mSquares;
+
+	public void add(double value) {
+		mCount++;
+		double delta = value - mMean;
+		mMean += delta / mCount;
+		mSquares += delta * (value - mMean);
+	}
+
+	/**
+	 * Fold another tally into this one.
+	 */
+	public void merge(Tally other) {
+		if (other.mCount == 0) {
+			return;
+		}
+		long count = mCount + other.mCount;
+		double delta = other.mMean - mMean;
+		mMean += delta * other.mCount / count;
+		mSquares += other.mSquares + delta * delta * mCount * other.mCount / count;
+		mCount = count;
+	}
+
+	public long getCount() {
+		return mCount;
+	}
+
+	public double getMean() {
+		return mMean;
+	}
+
+	/**
+	 * @return The sample variance.
+	 */
+	public double getVariance() {
+		return mCount > 1 ? mSquares / (mCount - 1) : 0;
+	}
+
+	/**
+	 * @param z The z score of the interval, such as {@link #Z_95}.
+	 * @return Half the width of the normal approximation confidence interval
+	 * of the mean.
+	 */
+	public double getHalfWidth(double z) {
+		return mCount > 0 ? z * Math.sqrt(getVariance() / mCount) : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.4f +/- %.4f (n=%d)", mMean, getHalfWidth(Z_95), mCount);
+	}
+}
@@ -0,0 +1,159 @@
+package com.randomsymphony.games.ochre.sim;
+
+import com.randomsymphony.games.ochre.logic.RulesEngine;
+import com.randomsymphony.games.ochre.logic.SplitMix64;
+import com.randomsymphony.games.ochre.logic.TrickEvaluator;
+import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
+import com.randomsymphony.games.ochre.model.Player;
+import com.randomsymphony.games.ochre.model.Round;
+
+/**
+ * A simple rule of thumb player. It sets trump when holding at least a given
+ * number of trump, goes alone above a second threshold, takes tricks as
+ * cheaply as it can unless its partner is already winning and otherwise
+ * throws its lowest card.
+ */
+public class TrumpCountPolicy implements SeatPolicy {
+
+	private final int mMinTrump;
+	private final int mAloneTrump;
+
+	/**
+	 * @param minTrump Set trump with at least this many trump in hand, the
+	 * dealer counts the turned up card.
+	 * @param aloneTrump Go alone with at least this many trump.
+	 */
+	public TrumpCountPolicy(int minTrump, int aloneTrump) {
+		mMinTrump = minTrump;
+		mAloneTrump = aloneTrump;
+	}
+
+	@Override
+	public void act(RulesEngine engine, Player player, SplitMix64 random) {
+		Round round = engine.getGameState().getCurrentRound();
+		int hand = player.getHand();
+		switch (engine.getGameState().getGamePhase()) {
+			case ORDER_UP: {
+				int count = countTrump(hand, round.trump.getSuit());
+				if (player == round.dealer) {
+					count++;
+				}
+				if (count >= mMinTrump || !engine.canPass()) {
+					engine.setTrump(count >= mAloneTrump, null);
+				} else {
+					engine.pass();
+				}
+				break;
+			}
+			case PICK_TRUMP: {
+				int bestSuit = bestSuit(hand, round.trump.getSuit());
+				int bestCount = countTrump(hand, bestSuit);
+				if (bestCount >= mMinTrump || !engine.canPass()) {
+					engine.setTrump(bestCount >= mAloneTrump,
+							Card.get(CardSet.indexOf(bestSuit, Card.VALUE_NINE)));
+				} else {
+					engine.pass();
+				}
+				break;
+			}
+			case DEALER_DISCARD:
+				engine.discardCard(Card.get(lowest(hand, round.trump.getSuit(), -1)));
+				break;
+			case PLAY:
+				engine.playCard(player, Card.get(choosePlay(engine.getLegalMoves(player),
+						round.trump.getSuit(), round.getLeadCard(), round.getWinningSeat(),
+						round.getWinningCard(), player.getSeat())));
+				break;
+			default:
+				throw new IllegalStateException("No action in phase " +
+						engine.getGameState().getGamePhase());
+		}
+	}
+
+	public static int countTrump(int hand, int trump) {
+		return CardSet.size(hand & TrickEvaluator.trumpMask(trump));
+	}
+
+	/**
+	 * @return The suit in which the hand holds the most trump, other than the
+	 * suit turned down, which can't be named.
+	 */
+	public static int bestSuit(int hand, int turnedSuit) {
+		int bestSuit = -1;
+		int bestCount = -1;
+		for (int suit = 0; suit < CardSet.NUMBER_OF_SUITS; suit++) {
+			int count = countTrump(hand, suit);
+			if (suit != turnedSuit && count > bestCount) {
+				bestSuit = suit;
+				bestCount = count;
+			}
+		}
+		return bestSuit;
+	}
+
+	/**
+	 * @param leadCard The card leading the trick or -1 when leading.
+	 * @return The index of the card to play.
+	 */
+	public static int choosePlay(int legal, int trump, int leadCard, int winningSeat, int winningCard,
+			int seat) {
+		if (leadCard < 0) {
+			return highest(legal, trump);
+		}
+
+		int leadSuit = TrickEvaluator.effectiveSuit(trump, leadCard);
+		if (winningSeat % 2 == seat % 2) {
+			// partner has it
+			return lowest(legal, trump, leadSuit);
+		}
+		int toBeat = TrickEvaluator.rank(trump, leadSuit, winningCard);
+		int cheapestWinner = -1;
+		int cheapestRank = Integer.MAX_VALUE;
+		for (int rest = legal; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			int card = CardSet.first(rest);
+			int rank = TrickEvaluator.rank(trump, leadSuit, card);
+			if (rank > toBeat && rank < cheapestRank) {
+				cheapestWinner = card;
+				cheapestRank = rank;
+			}
+		}
+		return cheapestWinner >= 0 ? cheapestWinner : lowest(legal, trump, leadSuit);
+	}
+
+	/**
+	 * @return The strongest card when leading, each card ranked in its own
+	 * suit.
+	 */
+	private static int highest(int cards, int trump) {
+		int best = -1;
+		int bestRank = -1;
+		for (int rest = cards; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			int card = CardSet.first(rest);
+			int rank = TrickEvaluator.rank(trump, TrickEvaluator.effectiveSuit(trump, card), card);
+			if (rank > bestRank) {
+				best = card;
+				bestRank = rank;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param leadSuit The suit led or -1 to rank each card in its own suit.
+	 */
+	public static int lowest(int cards, int trump, int leadSuit) {
+		int worst = -1;
+		int worstRank = Integer.MAX_VALUE;
+		for (int rest = cards; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			int card = CardSet.first(rest);
+			int rank = TrickEvaluator.rank(trump,
+					leadSuit < 0 ? TrickEvaluator.effectiveSuit(trump, card) : leadSuit, card);
+			if (rank < worstRank) {
+				worst = card;
+				worstRank = rank;
+			}
+		}
+		return worst;
+	}
+}
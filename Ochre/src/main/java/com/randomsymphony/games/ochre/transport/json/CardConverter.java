@@ -3,6 +3,7 @@ package com.randomsymphony.games.ochre.transport.json;
 import java.io.IOException;
 
 import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
 
 import android.util.JsonReader;
 import android.util.JsonToken;
@@ -16,11 +17,17 @@ public class CardConverter {
 	private static final String TAG_VISIBLE = "visible";
 	private static final String TAG_VERSION = "version";
 	private static final int CURRENT_VERSION = 1;
+
+	private boolean mLastCardVisible = false;
 	
 	public CardConverter(ConverterFactory converters) {
 		
 	}
 	
+	/**
+	 * @return The canonical instance of the card that was read, whether it
+	 * was face up is available from {@link #wasLastCardVisible()}.
+	 */
 	public Card readCard(JsonReader source) {
 		int value = -1;
 		int suit = -1;
@@ -75,16 +82,37 @@ public class CardConverter {
 			throw new IllegalArgumentException("Required fields not present," +
 					" deserialization of card failed.");
 		}
-		card = new Card(suit, value, visible);
+		if (value < 0 || value >= CardSet.CARDS_PER_SUIT || suit < 0 ||
+				suit >= CardSet.NUMBER_OF_SUITS) {
+			throw new IllegalArgumentException("Card with suit " + suit + " and value " +
+					value + " does not exist.");
+		}
+		card = Card.get(suit, value);
+		mLastCardVisible = visible;
 		return card;
 	}
+
+	/**
+	 * @return Whether the card most recently returned by
+	 * {@link #readCard(JsonReader)} was marked as face up.
+	 */
+	public boolean wasLastCardVisible() {
+		return mLastCardVisible;
+	}
 	
+	/**
+	 * Write a card that is face down.
+	 */
 	public void writeCard(JsonWriter writer, Card card) throws IOException {
+		writeCard(writer, card, false);
+	}
+
+	public void writeCard(JsonWriter writer, Card card, boolean visible) throws IOException {
 		writer.beginObject();
 		writer.name(TAG_VERSION).value(CURRENT_VERSION);
 		writer.name(TAG_SUIT).value(card.getSuit());
 		writer.name(TAG_VALUE).value(card.getValue());
-		writer.name(TAG_VISIBLE).value(card.isVisible());
+		writer.name(TAG_VISIBLE).value(visible);
 		writer.endObject();
 	}
 }
@@ -53,9 +53,11 @@ public class GameStateConverter {
 		// write scores as a series of playerId-score tuples in an array
 		writer.name(TAG_SCORES);
 		writer.beginArray();
+		// scores are kept per team, the first player of each team carries
+		// the team's score and partners are written with zero
 		for (int ptr = 0; ptr < players.length; ptr++) {
 			Player target = players[ptr];
-			int score = gameState.getPointsForPlayer(target);
+			int score = ptr < 2 ? gameState.getTeamPoints(ptr) : 0;
 			writer.value(target.getId());
 			writer.value(score);
 		}
@@ -114,6 +116,8 @@ public class GameStateConverter {
 					reader.beginArray();
 					while(reader.hasNext()) {
 						Player player = mPlayerConv.readPlayer(reader);
+						// players are written in seat order
+						player.setSeat(players.size());
 						players.add(player);
 					}
 					reader.endArray();
@@ -177,22 +181,17 @@ public class GameStateConverter {
 			Log.w("JMATT", "Players are not populated, scores will not be added.");
 		}
 		// process the score tuples and add player scores to the game state
+		Player[] seatedPlayers = gameState.getPlayers();
 		for (int ptr = 0; ptr + 2 <= scoreTuples.size(); ) {
 			String playerId = (String) scoreTuples.get(ptr);
 			ptr++;
 			Integer score = (Integer) scoreTuples.get(ptr);
 			ptr++;
 			
-			Player player = null;
-			for (int pts = 0; pts < players.size(); pts++) {
-				Player target = players.get(pts);
-				if (players.get(pts).getId().equals(playerId)) {
-					player = target;
-					break;
-				}
+			int seat = Player.indexOf(seatedPlayers, UUID.fromString(playerId));
+			if (seat >= 0) {
+				gameState.addPoints(seat % 2, score);
 			}
-			
-			gameState.addPoints(player, score);
 		}
 		
 		return gameState;
@@ -91,19 +91,19 @@ public class PlayConverter {
 		
 		
 		Player player = null;
+		UUID id = UUID.fromString(playerId);
 		
 		// see if the player identified in the record matches any of the
 		// players in our list.
 		if (players != null) {
-			for (int ptr = 0; ptr < players.length; ptr++) {
-				if (players[ptr].getId().equals(playerId)) {
-					player = players[ptr];
-				}
+			int seat = Player.indexOf(players, id);
+			if (seat >= 0) {
+				player = players[seat];
 			}
 		}
 		
 		if (player == null) {
-			player = new Player(null, new Card[0], UUID.fromString(playerId));
+			player = new Player(null, new Card[0], id);
 		}
 		
 		rtnValue = new Play(player, card);
@@ -6,6 +6,7 @@ import java.util.UUID;
 
 import com.randomsymphony.games.ochre.logic.GameState;
 import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
 import com.randomsymphony.games.ochre.model.Player;
 
 import android.util.JsonReader;
@@ -42,9 +43,10 @@ public class PlayerConverter {
 		CardConverter cardWriter = (CardConverter) mFactory.getConverter(
 				JsonConverterFactory.TYPE_CARD);
 
-		Card[] hand = player.getCurrentCards();
-		for (int ptr = 0; ptr < hand.length; ptr++) {
-			cardWriter.writeCard(writer, hand[ptr]);
+		int visible = player.getVisibleCards();
+		for (int rest = player.getHand(); rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			int index = CardSet.first(rest);
+			cardWriter.writeCard(writer, Card.get(index), CardSet.contains(visible, index));
 		}
 		writer.endArray();
 
@@ -60,6 +62,7 @@ public class PlayerConverter {
 		String playerName = null;
 		UUID playerId = null;
 		ArrayList<Card> cards = null;
+		int visibleCards = CardSet.EMPTY;
 		int version = 0;
 		
 		try {
@@ -85,7 +88,8 @@ public class PlayerConverter {
 				} else if (TAG_ID.equals(nextProp)) {
 					playerId = UUID.fromString(source.nextString());
 				} else if (TAG_CARDS.equals(nextProp)) {
-					cards = readCardArray(source);
+					cards = new ArrayList<Card>(6);
+					visibleCards = readCardArray(source, cards);
 				} else {
 					throw new IllegalArgumentException("Unknown property '" +
 					        nextProp + "' in player object.");
@@ -120,13 +124,21 @@ public class PlayerConverter {
 		} else {
 			throw new IllegalArgumentException("Player has no name");
 		}
+
+		for (int rest = visibleCards; rest != CardSet.EMPTY; rest = CardSet.removeFirst(rest)) {
+			player.setCardVisible(Card.get(CardSet.first(rest)), true);
+		}
 		
 		return player;
 	}
 	
-	private ArrayList<Card> readCardArray(JsonReader source)
+	/**
+	 * Read an array of cards into the supplied list.
+	 * @return The cards which were marked face up as a {@link CardSet}.
+	 */
+	private int readCardArray(JsonReader source, ArrayList<Card> cards)
 			throws IOException {
-		ArrayList<Card> cards = new ArrayList<Card>(5);
+		int visibleCards = CardSet.EMPTY;
 		CardConverter cardConverter = (CardConverter) mFactory.getConverter(
 				JsonConverterFactory.TYPE_CARD);
 		try {
@@ -141,13 +153,17 @@ public class PlayerConverter {
 					throw new IllegalArgumentException("Card property of" +
 							"  player is malformed.");
 				}
-				cards.add(cardConverter.readCard(source));
+				Card card = cardConverter.readCard(source);
+				cards.add(card);
+				if (cardConverter.wasLastCardVisible()) {
+					visibleCards = CardSet.add(visibleCards, card);
+				}
 			}
 			source.endArray();
 		} catch (IOException e) {
 			throw e;
 		}
 		
-		return cards;
+		return visibleCards;
 	}
 }
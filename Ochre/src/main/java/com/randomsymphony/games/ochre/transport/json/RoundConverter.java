@@ -4,7 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.UUID;
 
 import com.randomsymphony.games.ochre.model.Card;
 import com.randomsymphony.games.ochre.model.Play;
@@ -25,6 +25,8 @@ import android.util.Log;
 public class RoundConverter {
 
 	private static final String TAG_TRUMP = "trump_suit";
+	private static final String TAG_TURN_UP = "turned_card";
+	private static final String TAG_DISCARD = "discard";
 	private static final String TAG_TRICKS = "played_tricks";
 	private static final String TAG_ALONE = "going_alone";
 	private static final String TAG_DEALER = "round_dealer";
@@ -43,10 +45,6 @@ public class RoundConverter {
 		mConvFactory = converterFactory;
 	}
 	
-	public Round readRound(JsonReader source) {
-		return readRound(source, new Player[0]);
-	}
-	
 	private boolean isCompatible(int version) {
 		return CURRENT_VERSION == version;
 	}
@@ -54,11 +52,9 @@ public class RoundConverter {
 	/**
 	 * Read the round from Json-encoded data
 	 * @param source the json data source
-	 * @param players the players to assign to captured tricks and plays.
-	 * If a player id is read from the JSON which is not present in this array,
-	 * an empty player with only the player ID assigned will be allocated,
-	 * otherwise the passed-in instance will be used in creating the data
-	 * model.
+	 * @param players the players of the game in seat order, they are
+	 * assigned to captured tricks and plays. Every player id read from the
+	 * JSON must belong to one of these players.
 	 * @return An inflated round.
 	 */
 	public Round readRound(JsonReader source, Player[] players) {
@@ -70,8 +66,11 @@ public class RoundConverter {
 		Round round = null;
 		int version = -1;
 		Card trumpSuit = null;
+		Card turnUp = null;
+		Card discard = null;
 		boolean alone = false;
-		ArrayList<Play[]> roundPlays = new ArrayList<Play[]>();
+		ArrayList<Play> roundPlays = new ArrayList<Play>();
+		int trickCount = 0;
 		String dealerId = null;
 		String makerId = null;
 		int totalPlays = 0;
@@ -102,6 +101,10 @@ public class RoundConverter {
 				if (TAG_TRUMP.equals(name)) {
 					CardConverter cardConverter = getCardConverter();
 					trumpSuit = cardConverter.readCard(source);
+				} else if (TAG_TURN_UP.equals(name)) {
+					turnUp = getCardConverter().readCard(source);
+				} else if (TAG_DISCARD.equals(name)) {
+					discard = getCardConverter().readCard(source);
 				} else if (TAG_TRICKS.equals(name)) {
 					// the plays are an array of arrays. Each nested array
 					// represents a trick.
@@ -109,20 +112,14 @@ public class RoundConverter {
 					source.beginArray();
 					while (source.hasNext()) {
 						source.beginArray();
-						ArrayList<Play> plays = new ArrayList<Play>();
+						trickCount++;
 						
-						// decode all the plays
+						// decode all the plays, the round keeps them as one
+						// log so trick boundaries don't need to be kept
 						while (source.hasNext()) {
-							Play play = playConverter.readPlay(source, players);
-							plays.add(play);
+							roundPlays.add(playConverter.readPlay(source, players));
 						}
 						
-						Play[] copy = new Play[plays.size()];
-						Log.d("JMATT", "Reading " + copy.length + " plays");
-						
-						// add the list as an array to the list of tricks
-						roundPlays.add((Play[]) plays.toArray(copy));
-						
 						source.endArray();
 					}
 					source.endArray();
@@ -158,44 +155,38 @@ public class RoundConverter {
 			e.printStackTrace();
 		}
 		
-		// find the dealer
-		Player dealer = null;
-		Player maker = null;
-		for (int ptr = 0; ptr < players.length; ptr++) {
-			if (dealerId.equals(players[ptr].getId())) {
-				dealer = players[ptr];
-			}
-			
-			if (makerId.equals(players[ptr].getId())) {
-				maker = players[ptr];
-			}
-			
-			if (dealer != null && maker != null) {
-				break;
-			}
-		}
-		if (dealer == null) {
-			Log.w("JMATT", "Dealer is null, creating player by ID for dealer");
-			dealer = new Player(dealerId);
-		}
-		
-		if (maker == null) {
-			Log.w("JMATT", "Maker is null, creating player by ID for maker.");
-			maker = new Player(makerId);
+		// find the dealer and maker seats
+		int dealerSeat = Player.indexOf(players, UUID.fromString(dealerId));
+		int makerSeat = Player.indexOf(players, UUID.fromString(makerId));
+		if (dealerSeat < 0 || makerSeat < 0) {
+			throw new IllegalArgumentException("Dealer or maker is not one of the players.");
 		}
+		Player dealer = players[dealerSeat];
+		Player maker = players[makerSeat];
 		
 		// assign simple properties
-		round = new Round(dealer);
+		round = new Round(players, dealer);
 		round.maker = maker;
 		round.alone = alone;
-		round.totalPlays = totalPlays;
 		round.trumpPasses = trumpPasses;
 		round.trump = trumpSuit;
-		round.maker = maker;
-		round.tricks = roundPlays;
+		// older writers left it out, trump is the turned card until a suit
+		// is named
+		round.turnUp = turnUp == null ? trumpSuit : turnUp;
+		round.discard = discard;
+
+		// replay the plays, this recomputes the total number of plays
+		if (trickCount > 0) {
+			round.startPlay();
+		}
+		for (int ptr = 0, limit = roundPlays.size(); ptr < limit; ptr++) {
+			round.addPlay(roundPlays.get(ptr));
+		}
+		if (round.totalPlays != totalPlays) {
+			Log.w("JMATT", "Round claims " + totalPlays + " plays but contains " +
+					round.totalPlays);
+		}
 
-		// call methods to do more advanced modifications
-		validateTricks(round);
 		addCapturedTricks(round, players, capturedTricks);
 		
 		return round;
@@ -211,25 +202,32 @@ public class RoundConverter {
 		CardConverter cardCrusher = 
 				(CardConverter) mConvFactory.getConverter(JsonConverterFactory.TYPE_CARD);
 		cardCrusher.writeCard(writer, round.trump);
+
+		// write the turned card, trump may since have been named
+		if (round.turnUp != null) {
+			writer.name(TAG_TURN_UP);
+			cardCrusher.writeCard(writer, round.turnUp);
+		}
+
+		// write the dealer's discard once there is one
+		if (round.discard != null) {
+			writer.name(TAG_DISCARD);
+			cardCrusher.writeCard(writer, round.discard);
+		}
 		
 		// write the currently played tricks
 		writer.name(TAG_TRICKS);
 		writer.beginArray();
 		PlayConverter playEncoder = 
 				(PlayConverter) mConvFactory.getConverter(JsonConverterFactory.TYPE_PLAY);
-		// track the number of plays we've written so we don't try to encode
-		// empty plays
-		int encodedPlayCount = 0;
-		for (int ptr = 0; ptr < round.tricks.size(); ptr++) {
-			Play[] plays = round.tricks.get(ptr);
+		// write one array per trick, unplayed positions aren't encoded
+		int activePlayers = round.getActivePlayerCount();
+		for (int ptr = 0, limit = round.getTrickCount(); ptr < limit; ptr++) {
 			writer.beginArray();
 
-			for (int playPtr = 0; playPtr < plays.length && encodedPlayCount < round.totalPlays;
-					playPtr++, encodedPlayCount++) {
-				Play target = plays[playPtr];
-				Log.d("JMATTz", target.card.toString());
-				Log.d("JMATTz", target.player.toString());
-				playEncoder.writePlay(writer, target);
+			for (int play = ptr * activePlayers, end = Math.min(play + activePlayers,
+					round.totalPlays); play < end; play++) {
+				playEncoder.writePlay(writer, round.getPlay(play));
 			}
 			writer.endArray();
 		}
@@ -259,27 +257,23 @@ public class RoundConverter {
 		// jump through some hoops so that we always write the player scores
 		// out 'in order' by id
 
-		// create a map from player ID to player
-		Set<Player> players = round.mCapturedTrickCount.keySet();
-		HashMap<String, Player> playerIdMap = new HashMap<String, Player>(players.size());
-		for (Player player : round.mCapturedTrickCount.keySet()) {
-			playerIdMap.put(player.getId(), player);
-		}
-
-		// create a sorted list of player ids, this is our 'write' order
-		Set<String> playerIds = playerIdMap.keySet();
-		ArrayList<String> sortedIds = new ArrayList<String>(playerIds.size());
-		for (String playerId : playerIds) {
-			sortedIds.add(playerId);
+		// only players who captured a trick are written, create a sorted
+		// list of their ids, this is our 'write' order
+		ArrayList<String> sortedIds = new ArrayList<String>(Round.NUMBER_OF_SEATS);
+		HashMap<String, Integer> countsById = new HashMap<String, Integer>();
+		for (int seat = 0; seat < Round.NUMBER_OF_SEATS; seat++) {
+			if (round.getCapturedTricks(seat) > 0) {
+				String playerId = round.getPlayer(seat).getId();
+				sortedIds.add(playerId);
+				countsById.put(playerId, round.getCapturedTricks(seat));
+			}
 		}
 		Collections.sort(sortedIds);
 
 		// now write out players and scores in order
 		for (int ptr = 0, limit = sortedIds.size(); ptr < limit; ptr++) {
 			String playerId = sortedIds.get(ptr);
-			Player player = playerIdMap.get(playerId);
-			int score = round.mCapturedTrickCount.get(player);
-			writer.value(playerId).value(score);
+			writer.value(playerId).value(countsById.get(playerId));
 		}
 
 		writer.endArray();
@@ -287,41 +281,6 @@ public class RoundConverter {
 		writer.endObject();
 	}
 	
-	/**
-	 * Given a {@link Round}, all the trick records look correct. The number
-	 * of plays in a trick might be incorrect because we avoid encoding null
-     * Plays when the round is serialized to JSON.
-	 * @param round The round to validate and fix as needed
-	 */
-	private void validateTricks(Round round) {
-        ArrayList<Play[]> tricks = round.tricks;
-        int activePlayers = round.getActivePlayerCount();
-
-        for (int ptr = 0, limit = tricks.size(); ptr < limit; ptr++) {
-            Play[] currentTrick = tricks.get(ptr);
-
-            // if the trick play length equals the number of players, we're
-            // fine, otherwise we need to fix things up.
-            if (currentTrick.length == activePlayers) {
-                continue;
-            }
-
-            // first remove the current trick
-            round.tricks.remove(round.tricks.size() - 1);
-
-            // now add it back as the right size
-            Play[] updatedTrick = new Play[activePlayers];
-            round.tricks.add(updatedTrick);
-
-            // replay now as though we added naturally
-            round.totalPlays -= currentTrick.length;
-            for (int ptr2 = 0; ptr2 < currentTrick.length && currentTrick[ptr2] != null; ptr2++) {
-                round.addPlay(currentTrick[ptr2]);
-            }
-        }
-    }
-	
-	
 	/**
 	 * Add the captured trick counts to the round by looking through the list
 	 * of playerId-count pairs in the encodedTricks list.
@@ -343,16 +302,9 @@ public class RoundConverter {
 			String playerId = (String) encodedTricks.remove(0);
 			Integer count = (Integer) encodedTricks.remove(0);
 			
-			Player target = null;
-			for (int ptr = 0; ptr < players.length; ptr++) {
-				if (playerId.equals(players[ptr].getId())) {
-					target = players[ptr];
-					break;
-				}
-			}
-			
-			if (target != null) {
-				round.mCapturedTrickCount.put(target, count);
+			int seat = Player.indexOf(players, UUID.fromString(playerId));
+			if (seat >= 0) {
+				round.setCapturedTricks(seat, count);
 			}
 		}
 	}
@@ -0,0 +1,28 @@
+package com.randomsymphony.games.ochre.ui;
+
+import com.randomsymphony.games.ochre.R;
+import com.randomsymphony.games.ochre.model.Card;
+
+import android.content.res.Resources;
+import android.widget.Button;
+
+/**
+ * Helpers for drawing a {@link Card} into a view.
+ */
+public class CardFormatter {
+
+	/**
+	 * Do not instantiate!
+	 */
+	private CardFormatter() {
+	}
+
+	public static void formatButtonAsCard(Button button, Card card, Resources res) {
+		button.setText(card.toString());
+		if (card.getSuit() == Card.SUIT_DIAMONDS || card.getSuit() == Card.SUIT_HEARTS) {
+			button.setBackgroundColor(res.getColor(R.color.red_card));
+		} else {
+			button.setBackgroundColor(res.getColor(R.color.black_card));
+		}
+	}
+}
@@ -6,6 +6,7 @@ import com.randomsymphony.games.ochre.logic.GameState;
 import com.randomsymphony.games.ochre.logic.GameState.Phase;
 import com.randomsymphony.games.ochre.logic.StateListener;
 import com.randomsymphony.games.ochre.model.Card;
+import com.randomsymphony.games.ochre.model.CardSet;
 import com.randomsymphony.games.ochre.model.Player;
 
 import android.graphics.Color;
@@ -171,11 +172,7 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 			return;
 		}
 
-        Card[] cards = mPlayer.getCurrentCards();
-
-        if (cards != null) {
-            mExtraCardVisible = cards.length == 6;
-        }
+        mExtraCardVisible = mPlayer.getCardCount() == 6;
 
 		if (mIsActive) {
 			mShowHide.setEnabled(true);
@@ -193,24 +190,29 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 		
 		String cardList = "";
 		if (mPlayer != null) {
-			Card[] playerCards = mPlayer.getCurrentCards();
+			// slots show the hand in index order, walk it alongside them
+			int rest = mPlayer.getHand();
+			int legalMoves = mIsActive && mPhase == GameState.Phase.PLAY ?
+					mGameEngine.getLegalMoves(mPlayer) : CardSet.EMPTY;
 			for (int ptr = 0; ptr < mCards.length; ptr++) {
 				Button cardButton = mCards[ptr];
 				
 				if (mIsActive && mRevealCards) {
 					// does this slot contain a card?
-					if (ptr < playerCards.length) {
-						Card target = playerCards[ptr];
+					if (rest != CardSet.EMPTY) {
+						Card target = Card.get(CardSet.first(rest));
+						rest = CardSet.removeFirst(rest);
 
 						// if there is no card and we're active, its only
-						// clickable in play mode
+						// clickable in play mode and only if the rules allow
+						// playing it
 						if (mPhase == GameState.Phase.PLAY) {
-							cardButton.setClickable(true);
+							cardButton.setClickable(CardSet.contains(legalMoves, target));
 						} else {
 							cardButton.setClickable(false);
 						}
 
-						Card.formatButtonAsCard(mCards[ptr], target, getResources());
+						CardFormatter.formatButtonAsCard(mCards[ptr], target, getResources());
 					} else {
 						if (ptr < 6) {
 							cardButton.setClickable(false);
@@ -259,7 +261,15 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 	}
 	
 	private void cardClicked(int cardIndex) {
-		mGameEngine.playCard(mPlayer, mPlayer.getCurrentCards()[cardIndex]);
+		mGameEngine.playCard(mPlayer, getSlotCard(cardIndex));
+	}
+
+	/**
+	 * @return The card shown in the slot or null if the hand is shorter.
+	 */
+	private Card getSlotCard(int slot) {
+		int index = CardSet.nth(mPlayer.getHand(), slot);
+		return index < 0 ? null : Card.get(index);
 	}
 	
 	@Override
@@ -302,22 +312,21 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 		    	break;
 		}
 		
-		Card[] cards = mPlayer.getCurrentCards();
 		switch (v.getId()) {
 	        case R.id.cardSelect1:
-	    	    mGameEngine.setCurrentCandidateTrump(cards[0]);
+	    	    mGameEngine.setCurrentCandidateTrump(getSlotCard(0));
 	    	    break;
 	        case R.id.cardSelect2:
-	    	    mGameEngine.setCurrentCandidateTrump(cards[1]);
+	    	    mGameEngine.setCurrentCandidateTrump(getSlotCard(1));
 	    	    break;
 	        case R.id.cardSelect3:
-	    	    mGameEngine.setCurrentCandidateTrump(cards[2]);
+	    	    mGameEngine.setCurrentCandidateTrump(getSlotCard(2));
 	    	    break;
 	        case R.id.cardSelect4:
-	    	    mGameEngine.setCurrentCandidateTrump(cards[3]);
+	    	    mGameEngine.setCurrentCandidateTrump(getSlotCard(3));
 	    	    break;
 	        case R.id.cardSelect5:
-	    	    mGameEngine.setCurrentCandidateTrump(cards[4]);
+	    	    mGameEngine.setCurrentCandidateTrump(getSlotCard(4));
 	    	    break;
 		}
 	}
@@ -352,7 +361,7 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 	public Card getSelectedCard() {
 		for (int ptr = 0; ptr < mCardSelectors.length; ptr++) {
 			if (mCardSelectors[ptr].isChecked()) {
-				return mPlayer.getCurrentCards()[ptr];
+				return getSlotCard(ptr);
 			}
 		}
 		return null;
@@ -451,17 +460,15 @@ public class PlayerDisplay extends Fragment implements View.OnClickListener, Sta
 			}
 		}
 		
-		Card[] currentCards = mPlayer.getCurrentCards();
-		
 		if (offset == -1) {
 			if (mExtraCardSelector.isChecked()) {
 				// TODO its dangerous to assume the extra card is here, fix
-				mGameEngine.discardCard(currentCards[currentCards.length - 1]);
+				mGameEngine.discardCard(Card.get(CardSet.last(mPlayer.getHand())));
 			} else {
 				throw new RuntimeException("Nothing selected!");
 			}
 		} else {
-			mGameEngine.discardCard(mPlayer.getCurrentCards()[offset]);
+			mGameEngine.discardCard(getSlotCard(offset));
 		}
 	}
 	
@@ -16,18 +16,17 @@ import android.widget.Button;
 public class TableDisplay extends Fragment {
 
 	public static final String ARG_NUMBER_OF_PLAYER = "num_players";
-	public static final String ARG_GAME_STATE = "game_state";
 
 	/**
 	 * @param numberOfPlayers Note that this parameter is currently ignored by
 	 * the fragment. It may turn out not to be useful, if so, we'll remove later.
-	 * @param gameStateTag The tag that the {@link GameEngine} can be found at.
+	 * The {@link GameState} is supplied by the {@link GameEngine} through
+	 * {@link #setGameState(GameState)}.
 	 * @return
 	 */
-	public static TableDisplay getInstance(int numberOfPlayers, String gameStateTag) {
+	public static TableDisplay getInstance(int numberOfPlayers) {
 		Bundle args = new Bundle();
 		args.putInt(ARG_NUMBER_OF_PLAYER, numberOfPlayers);
-		args.putString(ARG_GAME_STATE, gameStateTag);
 		
 		TableDisplay instance = new TableDisplay();
 		instance.setArguments(args);
@@ -43,8 +42,6 @@ public class TableDisplay extends Fragment {
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		mPlayedCards = new Button[4];
-		mGameState = (GameState) getFragmentManager().findFragmentByTag(
-				getArguments().getString(ARG_GAME_STATE));
 	}
 	
 	@Override
@@ -57,21 +54,14 @@ public class TableDisplay extends Fragment {
 	}
 
     public void playCard(Card card, Player player) {
-    	Player[] players = mGameState.getPlayers();
-    	for (int ptr = 0; ptr < players.length; ptr++) {
-            // TODO maybe this should be comparing IDs instead of object
-            // equality
-    		if (players[ptr] == player) {
-    			Button playedCard = mPlayedCards[ptr];
-    			Card.formatButtonAsCard(playedCard, card, getResources());
-				playedCard.setVisibility(View.VISIBLE);
-    			break;
-    		}
-    	}
+    	// played cards are laid out by seat
+    	Button playedCard = mPlayedCards[player.getSeat()];
+    	CardFormatter.formatButtonAsCard(playedCard, card, getResources());
+    	playedCard.setVisibility(View.VISIBLE);
     }
     
     public void setTrumpCard(Card card) {
-    	Card.formatButtonAsCard(mTrumpCard, card, getResources());
+    	CardFormatter.formatButtonAsCard(mTrumpCard, card, getResources());
     	mTrumpCard.setVisibility(View.VISIBLE);
     }
     
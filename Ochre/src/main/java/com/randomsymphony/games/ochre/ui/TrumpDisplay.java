@@ -2,6 +2,7 @@ package com.randomsymphony.games.ochre.ui;
 
 import com.randomsymphony.games.ochre.R;
 import com.randomsymphony.games.ochre.logic.GameEngine;
+import com.randomsymphony.games.ochre.model.Card;
 
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -10,6 +11,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.CheckBox;
+import android.widget.RadioButton;
 
 public class TrumpDisplay extends Fragment implements View.OnClickListener {
 
@@ -23,6 +25,12 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 	private Button mSetTrump;
 	private Button mPass;
 	private CheckBox mAlone;
+	/**
+	 * Indexed by suit, names trump in pick trump mode.
+	 */
+	private RadioButton[] mSuits = new RadioButton[4];
+	private View mSuitGroup;
+	private int mTurnedDownSuit = -1;
 	
 	@Override
 	public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -41,6 +49,13 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 			case R.id.pass:
 				mEngine.pass();
 				break;
+			case R.id.suit_hearts:
+			case R.id.suit_spades:
+			case R.id.suit_clubs:
+			case R.id.suit_diamonds:
+				// the turned down suit's button is disabled
+				enableSetTrump();
+				break;
 		}
 	}
 	
@@ -48,18 +63,55 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 		mPass.setEnabled(false);
 	}
 	
-	public void setToPickMode() {
+	/**
+	 * @param turnedDownSuit The suit which can't be named.
+	 */
+	public void setToPickMode(int turnedDownSuit) {
 		mPass.setEnabled(true);
 		mSetTrump.setText(R.string.button_set_trump);
 		mSetTrump.setEnabled(false);
 		mAlone.setEnabled(false);
 		mAlone.setChecked(false);
+		mTurnedDownSuit = turnedDownSuit;
+		mSuitGroup.setVisibility(View.VISIBLE);
+		for (int suit = 0; suit < mSuits.length; suit++) {
+			mSuits[suit].setChecked(false);
+			mSuits[suit].setEnabled(suit != turnedDownSuit);
+		}
 	}
 	
 	public void enableSetTrump() {
 		mSetTrump.setEnabled(true);
 		mAlone.setEnabled(true);
 	}
+
+	public void disableSetTrump() {
+		mSetTrump.setEnabled(false);
+		mAlone.setEnabled(false);
+	}
+
+	/**
+	 * Choose the suit to name, as when its button is pressed.
+	 */
+	public void selectSuit(int suit) {
+		if (suit == mTurnedDownSuit) {
+			throw new IllegalArgumentException("The turned down suit can't be named.");
+		}
+		mSuits[suit].setChecked(true);
+		enableSetTrump();
+	}
+
+	/**
+	 * @return The suit chosen in pick trump mode or -1.
+	 */
+	public int getSelectedSuit() {
+		for (int suit = 0; suit < mSuits.length; suit++) {
+			if (mSuits[suit].isChecked() && suit != mTurnedDownSuit) {
+				return suit;
+			}
+		}
+		return -1;
+	}
 	
 	public void setToOrderUpMode() {
 		mPass.setEnabled(true);
@@ -67,6 +119,7 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 		mSetTrump.setText(R.string.button_order_up);
 		mAlone.setEnabled(true);
 		mAlone.setChecked(false);
+		mSuitGroup.setVisibility(View.GONE);
 	}
 	
 	public void setToPlayMode() {
@@ -74,6 +127,7 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 		mSetTrump.setEnabled(false);
 		mSetTrump.setText(R.string.button_order_up);
 		mAlone.setEnabled(false);
+		mSuitGroup.setVisibility(View.GONE);
 	}
 	
 	public void reset() {
@@ -90,5 +144,13 @@ public class TrumpDisplay extends Fragment implements View.OnClickListener {
 		mPass = (Button) mContent.findViewById(R.id.pass);
 		mPass.setOnClickListener(this);
 		mAlone = (CheckBox) mContent.findViewById(R.id.go_alone);
+		mSuitGroup = mContent.findViewById(R.id.suit_group);
+		mSuits[Card.SUIT_HEARTS] = (RadioButton) mContent.findViewById(R.id.suit_hearts);
+		mSuits[Card.SUIT_SPADES] = (RadioButton) mContent.findViewById(R.id.suit_spades);
+		mSuits[Card.SUIT_CLUBS] = (RadioButton) mContent.findViewById(R.id.suit_clubs);
+		mSuits[Card.SUIT_DIAMONDS] = (RadioButton) mContent.findViewById(R.id.suit_diamonds);
+		for (int suit = 0; suit < mSuits.length; suit++) {
+			mSuits[suit].setOnClickListener(this);
+		}
 	}
 }